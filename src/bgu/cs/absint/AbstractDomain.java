@@ -66,6 +66,26 @@ public abstract class AbstractDomain<StateType, ActionType> {
 		return ub(elem1, elem2);
 	}
 
+	/**
+	 * Returns an upper bound of all of the argument states. The default
+	 * implementation folds {@link ub} over the states. Override this method to
+	 * join the states at once, without creating intermediate states.
+	 * 
+	 * @param elems
+	 *            A non-empty list of abstract domain elements, usually a view
+	 *            of the argument array of an equation, which should not be
+	 *            modified.
+	 * @return An upper bound of the states in {@link elems}.
+	 */
+	public StateType ubAll(List<StateType> elems) {
+		assert !elems.isEmpty();
+		StateType result = elems.get(0);
+		for (int i = 1; i < elems.size(); ++i) {
+			result = ub(result, elems.get(i));
+		}
+		return result;
+	}
+
 	/**
 	 * Returns a lower bound of the argument states, ideally the greatest lower
 	 * bound (meet).
@@ -93,6 +113,23 @@ public abstract class AbstractDomain<StateType, ActionType> {
 	 */
 	public abstract boolean leq(StateType first, StateType second);
 
+	/**
+	 * Compares two elements in both directions of the order relation defined
+	 * for this domain. The default implementation checks the order relation
+	 * twice. Override this method to compare the elements in a single pass.
+	 * 
+	 * @param first
+	 *            An abstract state.
+	 * @param second
+	 *            An abstract state.
+	 * @return The ordering of {@link first} relative to {@link second}.
+	 */
+	public Ordering compare(StateType first, StateType second) {
+		if (first == second)
+			return Ordering.EQUAL;
+		return Ordering.of(leq(first, second), leq(second, first));
+	}
+
 	/**
 	 * Determines whether one abstract state is strictly lower than another with
 	 * respect to the order relation defined for this domain.
@@ -105,9 +142,7 @@ public abstract class AbstractDomain<StateType, ActionType> {
 	 *         to the order relation defined for the corresponding semantic domain.
 	 */
 	public boolean lt(StateType first, StateType second) {
-		boolean leq = leq(first, second);
-		boolean geq = leq(second, first);
-		return leq && !geq;
+		return compare(first, second) == Ordering.LESS;
 	}
 
 	/**
@@ -155,11 +190,7 @@ public abstract class AbstractDomain<StateType, ActionType> {
 	 *         semantic domain.
 	 */
 	public boolean eq(StateType first, StateType second) {
-		if (first == second)
-			return true;
-		boolean leq = leq(first, second);
-		boolean geq = leq(second, first);
-		return leq && geq;
+		return compare(first, second) == Ordering.EQUAL;
 	}
 
 	/**
@@ -320,12 +351,8 @@ public abstract class AbstractDomain<StateType, ActionType> {
 
 			@Override
 			public StateType apply(List<StateType> inputs) {
-				StateType result = inputs.get(0);
-				for (int i = 1; i < inputs.size(); ++i) {
-					StateType currState = inputs.get(i);
-					result = ub(result, currState);
-				}
-				return result;
+				assert inputs.size() == size;
+				return ubAll(inputs);
 			}
 
 			@Override
@@ -549,6 +576,20 @@ public abstract class AbstractDomain<StateType, ActionType> {
 		return lt((StateType) o1, (StateType) o2);
 	}
 
+	/**
+	 * A version of {@link compare} but without the type safety.
+	 * 
+	 * @param o1
+	 *            An object of type StateType.
+	 * @param o2
+	 *            An object of type StateType.
+	 * @return The result of compare.
+	 */
+	@SuppressWarnings("unchecked")
+	public final Ordering unsafeCompare(Object o1, Object o2) {
+		return compare((StateType) o1, (StateType) o2);
+	}
+
 	/**
 	 * A version of reduce without the type safet.
 	 * 
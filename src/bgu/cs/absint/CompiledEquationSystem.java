@@ -0,0 +1,317 @@
+package bgu.cs.absint;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A frozen, integer-indexed form of an {@link EquationSystem}. Variables and
+ * equations are numbered densely, the values of the variables are stored in
+ * an array, and the arguments of each equation and the dependent equations of
+ * each variable are stored in compressed-sparse-row arrays. Equations are
+ * numbered in the order of their priorities, so a lower number means that an
+ * equation should be processed earlier.<br>
+ * The values are copied from the {@link AnalysisVar}s on construction and
+ * copied back by {@link #writeBack()}, or by {@link #writeBack(int)} for the
+ * variables of a single equation.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class CompiledEquationSystem<StateType> {
+	/**
+	 * The variables of the system, indexed by variable number.
+	 */
+	protected final AnalysisVar<StateType>[] vars;
+
+	/**
+	 * The value of each variable, indexed by variable number.
+	 */
+	protected final Object[] values;
+
+	/**
+	 * The equations of the system, indexed by equation number.
+	 */
+	protected final Equation<StateType>[] equations;
+
+	/**
+	 * The operation of each equation.
+	 */
+	protected final Operation<StateType>[] ops;
+
+	/**
+	 * The left-hand side variable of each equation.
+	 */
+	protected final int[] lhs;
+
+	/**
+	 * The arguments of equation e are args[argsStart[e]..argsStart[e+1]).
+	 */
+	protected final int[] argsStart;
+	protected final int[] args;
+
+	/**
+	 * The equations depending on variable v are
+	 * dependents[dependentsStart[v]..dependentsStart[v+1]).
+	 */
+	protected final int[] dependentsStart;
+	protected final int[] dependents;
+
+	/**
+	 * A view used for passing arguments to operations with more than two
+	 * arguments.
+	 */
+	private final ArgValues multipleArgs = new ArgValues();
+
+	/**
+	 * Compiles the given system. Uninitialized variables are assigned the
+	 * given initial value.
+	 *
+	 * @param system
+	 *            A system of equations.
+	 * @param initialValue
+	 *            The value of uninitialized variables.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public CompiledEquationSystem(EquationSystem<StateType, ?> system,
+			StateType initialValue) {
+		List<Equation<StateType>> sortedEquations = new ArrayList<>(
+				system.getEquations());
+		Collections.sort(sortedEquations);
+		int numOfEquations = sortedEquations.size();
+		equations = sortedEquations.toArray(new Equation[numOfEquations]);
+		ops = new Operation[numOfEquations];
+		lhs = new int[numOfEquations];
+		argsStart = new int[numOfEquations + 1];
+
+		// Number the variables.
+		Map<AnalysisVar<StateType>, Integer> varToNumber = new HashMap<>();
+		List<AnalysisVar<StateType>> varList = new ArrayList<>();
+		int numOfArgs = 0;
+		for (Equation<StateType> equation : equations) {
+			numberVar(equation.lhs, varToNumber, varList);
+			for (AnalysisVar<StateType> arg : equation.args) {
+				numberVar(arg, varToNumber, varList);
+			}
+			numOfArgs += equation.args.size();
+		}
+		int numOfVars = varList.size();
+		vars = varList.toArray(new AnalysisVar[numOfVars]);
+		values = new Object[numOfVars];
+		for (int v = 0; v < numOfVars; ++v) {
+			values[v] = vars[v].value == null ? initialValue : vars[v].value;
+		}
+
+		// Build the argument arrays and count the dependents of each variable.
+		args = new int[numOfArgs];
+		dependentsStart = new int[numOfVars + 1];
+		int argIndex = 0;
+		for (int e = 0; e < numOfEquations; ++e) {
+			Equation<StateType> equation = equations[e];
+			ops[e] = equation.op;
+			lhs[e] = varToNumber.get(equation.lhs);
+			argsStart[e] = argIndex;
+			for (AnalysisVar<StateType> arg : equation.args) {
+				int v = varToNumber.get(arg);
+				args[argIndex++] = v;
+			}
+		}
+		argsStart[numOfEquations] = argIndex;
+
+		// Build the dependents arrays, dropping repeated arguments.
+		for (int e = 0; e < numOfEquations; ++e) {
+			for (int i = argsStart[e]; i < argsStart[e + 1]; ++i) {
+				if (!repeatsEarlierArg(e, i))
+					++dependentsStart[args[i] + 1];
+			}
+		}
+		for (int v = 0; v < numOfVars; ++v) {
+			dependentsStart[v + 1] += dependentsStart[v];
+		}
+		dependents = new int[dependentsStart[numOfVars]];
+		int[] fill = new int[numOfVars];
+		for (int e = 0; e < numOfEquations; ++e) {
+			for (int i = argsStart[e]; i < argsStart[e + 1]; ++i) {
+				if (!repeatsEarlierArg(e, i)) {
+					int v = args[i];
+					dependents[dependentsStart[v] + fill[v]++] = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of equations.
+	 */
+	public int getNumOfEquations() {
+		return equations.length;
+	}
+
+	/**
+	 * Returns the number of variables.
+	 */
+	public int getNumOfVars() {
+		return vars.length;
+	}
+
+	/**
+	 * Returns the equation with the given number.
+	 */
+	public Equation<StateType> getEquation(int e) {
+		return equations[e];
+	}
+
+	/**
+	 * Returns the number of the left-hand side variable of the given equation.
+	 */
+	public int getLhs(int e) {
+		return lhs[e];
+	}
+
+	/**
+	 * Returns the number of arguments of the given equation.
+	 */
+	public int getNumOfArgs(int e) {
+		return argsStart[e + 1] - argsStart[e];
+	}
+
+	/**
+	 * Returns the current value of the given variable.
+	 */
+	@SuppressWarnings("unchecked")
+	public StateType getValue(int v) {
+		return (StateType) values[v];
+	}
+
+	/**
+	 * Sets the value of the given variable.
+	 */
+	public void setValue(int v, StateType value) {
+		values[v] = value;
+	}
+
+	/**
+	 * Returns the index in {@link #getDependents()} of the first equation
+	 * depending on the given variable.
+	 */
+	public int dependentsBegin(int v) {
+		return dependentsStart[v];
+	}
+
+	/**
+	 * Returns the index in {@link #getDependents()} following the last
+	 * equation depending on the given variable.
+	 */
+	public int dependentsEnd(int v) {
+		return dependentsStart[v + 1];
+	}
+
+	/**
+	 * Returns the array of dependent equations of all variables. Use
+	 * {@link #dependentsBegin} and {@link #dependentsEnd} to find the
+	 * dependents of a given variable. The array should not be modified.
+	 */
+	public int[] getDependents() {
+		return dependents;
+	}
+
+	/**
+	 * Computes the right-hand side of the given equation for the current
+	 * values and assigns it to its left-hand side variable.
+	 *
+	 * @param e
+	 *            An equation number.
+	 */
+	@SuppressWarnings("unchecked")
+	public void update(int e) {
+		Operation<StateType> op = ops[e];
+		int start = argsStart[e];
+		StateType newValue;
+		switch (argsStart[e + 1] - start) {
+		case 0:
+			newValue = op.apply(Collections.<StateType> emptyList());
+			break;
+		case 1:
+			newValue = op.apply((StateType) values[args[start]]);
+			break;
+		case 2:
+			newValue = op.apply((StateType) values[args[start]],
+					(StateType) values[args[start + 1]]);
+			break;
+		default:
+			multipleArgs.start = start;
+			multipleArgs.size = argsStart[e + 1] - start;
+			newValue = op.apply(multipleArgs);
+		}
+		assert newValue != null;
+		values[lhs[e]] = newValue;
+	}
+
+	/**
+	 * Copies the values of the variables back to the {@link AnalysisVar}s.
+	 */
+	@SuppressWarnings("unchecked")
+	public void writeBack() {
+		for (int v = 0; v < vars.length; ++v) {
+			vars[v].value = (StateType) values[v];
+		}
+	}
+
+	/**
+	 * Copies the values of the left-hand side and the arguments of the given
+	 * equation back to their {@link AnalysisVar}s.
+	 *
+	 * @param e
+	 *            An equation number.
+	 */
+	@SuppressWarnings("unchecked")
+	public void writeBack(int e) {
+		vars[lhs[e]].value = (StateType) values[lhs[e]];
+		for (int i = argsStart[e], end = argsStart[e + 1]; i < end; ++i) {
+			vars[args[i]].value = (StateType) values[args[i]];
+		}
+	}
+
+	private void numberVar(AnalysisVar<StateType> var,
+			Map<AnalysisVar<StateType>, Integer> varToNumber,
+			List<AnalysisVar<StateType>> varList) {
+		if (!varToNumber.containsKey(var)) {
+			varToNumber.put(var, varList.size());
+			varList.add(var);
+		}
+	}
+
+	private boolean repeatsEarlierArg(int e, int i) {
+		for (int j = argsStart[e]; j < i; ++j) {
+			if (args[j] == args[i])
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A list view of the current values of the arguments of an equation,
+	 * which avoids copying the values.
+	 */
+	private class ArgValues extends AbstractList<StateType> {
+		private int start;
+		private int size;
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public StateType get(int i) {
+			assert i >= 0 && i < size;
+			return (StateType) values[args[start + i]];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
\ No newline at end of file
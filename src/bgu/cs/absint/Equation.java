@@ -1,6 +1,7 @@
 package bgu.cs.absint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -23,6 +24,12 @@ public class Equation<StateType> implements Comparable<Equation<StateType>> {
 	 */
 	public int priority;
 
+	/**
+	 * A dense index assigned by the {@link EquationSystem} that contains this
+	 * equation, or -1 if the equation has not been added to a system yet.
+	 */
+	public int index = -1;
+
 	/**
 	 * The left-hand side of the equation.
 	 */
@@ -38,6 +45,18 @@ public class Equation<StateType> implements Comparable<Equation<StateType>> {
 	 */
 	protected final ArrayList<AnalysisVar<StateType>> args;
 
+	/**
+	 * Holds the values of {@link args} while applying an operation with more
+	 * than two arguments, so that evaluating the equation does not allocate a
+	 * list of argument values. Allocated on the first evaluation.
+	 */
+	protected StateType[] argValues;
+
+	/**
+	 * A fixed-size list view of {@link argValues}.
+	 */
+	protected List<StateType> argValueList;
+
 	public Equation(AnalysisVar<StateType> lhs, Operation<StateType> op,
 			List<AnalysisVar<StateType>> args) {
 		assert lhs != null && op != null && args != null;
@@ -87,6 +106,7 @@ public class Equation<StateType> implements Comparable<Equation<StateType>> {
 	 * values of {@link args} and assigns it to {@link lhs} thereby providing a
 	 * local solution for this equation.
 	 */
+	@SuppressWarnings("unchecked")
 	public void update() {
 		StateType newValue;
 		switch (op.arity()) {
@@ -100,11 +120,14 @@ public class Equation<StateType> implements Comparable<Equation<StateType>> {
 			break;
 		default:
 			// Handle operations with more than two arguments.
-			ArrayList<StateType> argStates = new ArrayList<>();
-			for (int i = 0; i < op.arity(); ++i) {
-				argStates.add(args.get(i).value);
+			if (argValues == null) {
+				argValues = (StateType[]) new Object[op.arity()];
+				argValueList = Arrays.asList(argValues);
+			}
+			for (int i = 0; i < argValues.length; ++i) {
+				argValues[i] = args.get(i).value;
 			}
-			newValue = op.apply(argStates);
+			newValue = op.apply(argValueList);
 		}
 		assert newValue != null;
 		lhs.value = newValue;
@@ -118,6 +141,6 @@ public class Equation<StateType> implements Comparable<Equation<StateType>> {
 
 	@Override
 	public int compareTo(Equation<StateType> other) {
-		return other.priority - this.priority;
+		return Integer.compare(this.priority, other.priority);
 	}
 }
\ No newline at end of file
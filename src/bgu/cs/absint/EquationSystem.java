@@ -1,5 +1,6 @@
 package bgu.cs.absint;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,6 +30,11 @@ public class EquationSystem<StateType, ActionType> {
 	 */
 	protected HashMap<AnalysisVar<StateType>, Set<Equation<StateType>>> varToContainingEquations = new HashMap<>();
 
+	/**
+	 * Maps the index of each equation to the equation.
+	 */
+	protected ArrayList<Equation<StateType>> indexToEquation = new ArrayList<>();
+
 	/**
 	 * Sets the values of all variables to the given {@link value}.
 	 * 
@@ -123,6 +129,8 @@ public class EquationSystem<StateType, ActionType> {
 							var, varToEquation.get(var), equation));
 
 		}
+		equation.index = indexToEquation.size();
+		indexToEquation.add(equation);
 		varToEquation.put(var, equation);
 
 		// Update varToContainingEquations.
@@ -137,6 +145,52 @@ public class EquationSystem<StateType, ActionType> {
 		}
 	}
 
+	/**
+	 * Removes an equation from the system. The index of the equation is taken
+	 * by the equation with the highest index, to keep the indices dense.
+	 * 
+	 * @param equation
+	 *            An equation in the system.
+	 */
+	public void removeEquation(Equation<StateType> equation) {
+		AnalysisVar<StateType> var = equation.lhs;
+		if (varToEquation.get(var) != equation) {
+			throw new Error(String.format(
+					"Attempt to remove equation %s, which is not in the system!",
+					equation));
+		}
+		varToEquation.remove(var);
+
+		// Update varToContainingEquations.
+		for (AnalysisVar<StateType> argVar : equation.getArgs()) {
+			Set<Equation<StateType>> containingEquations = varToContainingEquations
+					.get(argVar);
+			containingEquations.remove(equation);
+			if (containingEquations.isEmpty())
+				varToContainingEquations.remove(argVar);
+		}
+
+		// Move the last equation to the vacated index.
+		Equation<StateType> last = indexToEquation.remove(indexToEquation
+				.size() - 1);
+		if (last != equation) {
+			indexToEquation.set(equation.index, last);
+			last.index = equation.index;
+		}
+		equation.index = -1;
+	}
+
+	/**
+	 * Returns the equation with the given index.
+	 * 
+	 * @param index
+	 *            A non-negative number smaller than the number of equations.
+	 * @return The equation whose index is {@link index}.
+	 */
+	public Equation<StateType> getEquation(int index) {
+		return indexToEquation.get(index);
+	}
+
 	/**
 	 * Returns the equation containing {@link var} on its left-hand side if one
 	 * exists.
@@ -190,6 +244,18 @@ public class EquationSystem<StateType, ActionType> {
 		return result;
 	}
 
+	/**
+	 * Creates a frozen, integer-indexed form of this system. Later changes to
+	 * this system are not reflected in the result.
+	 * 
+	 * @param initialValue
+	 *            The value assigned to uninitialized variables.
+	 * @return The compiled form of this system.
+	 */
+	public CompiledEquationSystem<StateType> compile(StateType initialValue) {
+		return new CompiledEquationSystem<>(this, initialValue);
+	}
+
 	/**
 	 * Checks whether this system is well-formed according to some structural
 	 * rules, e.g., every variable appears on the left-hand side of exactly one
@@ -1,6 +1,6 @@
 package bgu.cs.absint;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -13,8 +13,6 @@ import java.util.List;
  *            The implementation type of abstract states.
  */
 public abstract class Operation<StateType> {
-	protected ArrayList<StateType> multipleArgs = new ArrayList<>(3);
-
 	public Operation() {
 	}
 
@@ -66,15 +64,27 @@ public abstract class Operation<StateType> {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Applies the operation to the given input states. Operations with more
+	 * than two arguments should override this method to avoid wrapping the
+	 * array in a list.
+	 * 
+	 * @param inputs
+	 *            An array of states, which should not be modified.
+	 * @return The result of applying the operation to {@link inputs}.
+	 */
 	public StateType apply(StateType[] inputs) {
 		assert inputs != null && inputs.length == arity();
-		multipleArgs.clear();
-		for (int i = 0; i < inputs.length; ++i) {
-			StateType state = inputs[i];
-			assert state != null;
-			multipleArgs.set(i, state);
+		switch (inputs.length) {
+		case 0:
+			return apply();
+		case 1:
+			return apply(inputs[0]);
+		case 2:
+			return apply(inputs[0], inputs[1]);
+		default:
+			return apply(Arrays.asList(inputs));
 		}
-		return apply(multipleArgs);
 	}
 
 	@Override
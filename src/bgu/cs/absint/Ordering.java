@@ -0,0 +1,72 @@
+package bgu.cs.absint;
+
+/**
+ * The possible outcomes of comparing two abstract states (see
+ * {@link AbstractDomain#compare}).
+ *
+ * @author romanm
+ */
+public enum Ordering {
+	/**
+	 * Each state is lower than or equal to the other.
+	 */
+	EQUAL,
+
+	/**
+	 * The first state is strictly lower than the second.
+	 */
+	LESS,
+
+	/**
+	 * The first state is strictly greater than the second.
+	 */
+	GREATER,
+
+	/**
+	 * Neither state is lower than or equal to the other.
+	 */
+	INCOMPARABLE;
+
+	/**
+	 * Returns the ordering given by the results of the two order checks.
+	 *
+	 * @param leq
+	 *            Whether the first state is lower than or equal to the second.
+	 * @param geq
+	 *            Whether the first state is greater than or equal to the
+	 *            second.
+	 */
+	public static Ordering of(boolean leq, boolean geq) {
+		if (leq)
+			return geq ? EQUAL : LESS;
+		else
+			return geq ? GREATER : INCOMPARABLE;
+	}
+
+	/**
+	 * Returns the ordering of the second state relative to the first.
+	 */
+	public Ordering reverse() {
+		switch (this) {
+		case LESS:
+			return GREATER;
+		case GREATER:
+			return LESS;
+		default:
+			return this;
+		}
+	}
+
+	/**
+	 * Returns the ordering of two product states given the ordering of one
+	 * pair of their components and the ordering of the remaining components.
+	 */
+	public Ordering and(Ordering other) {
+		if (this == other || other == EQUAL)
+			return this;
+		else if (this == EQUAL)
+			return other;
+		else
+			return INCOMPARABLE;
+	}
+}
\ No newline at end of file
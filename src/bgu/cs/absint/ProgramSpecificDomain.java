@@ -0,0 +1,24 @@
+package bgu.cs.absint;
+
+import java.util.Collection;
+
+/**
+ * An interface for abstract domains whose representation of states depends
+ * on the analyzed program, e.g., on a numbering of its expressions.
+ * 
+ * @author romanm
+ * 
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public interface ProgramSpecificDomain<ActionType> {
+	/**
+	 * Prepares the domain for analyzing the given program. Called before the
+	 * transformers of the program are requested. States created for a
+	 * previously prepared program should no longer be used.
+	 * 
+	 * @param actions
+	 *            The statements of the program, typically a method body.
+	 */
+	public void prepare(Collection<ActionType> actions);
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package bgu.cs.absint;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Maps equal abstract states to a single canonical instance (hash-consing), so
+ * that equality of interned states can be tested by reference. The hash code
+ * of each canonical state is computed once and cached in the table.<br>
+ * The table refers to the canonical states through weak references, so states
+ * that are no longer used elsewhere are dropped from it. The table can also be
+ * bounded, in which case it is cleared whenever it grows beyond the bound.
+ * All methods are thread-safe.<br>
+ * Interned states are shared, and therefore must not be modified.
+ * 
+ * @author romanm
+ * 
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class StateInterner<StateType> {
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The maximal number of states kept in the table.
+	 */
+	protected final int maxSize;
+
+	private Entry<StateType>[] table;
+	private int size = 0;
+	private final ReferenceQueue<StateType> queue = new ReferenceQueue<>();
+
+	/**
+	 * Constructs an interner whose table is only bounded by the reachable
+	 * states.
+	 */
+	public StateInterner() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs an interner whose table holds at most the given number of
+	 * states.
+	 * 
+	 * @param maxSize
+	 *            The maximal number of states kept in the table.
+	 */
+	public StateInterner(int maxSize) {
+		assert maxSize > 0;
+		this.maxSize = maxSize;
+		this.table = newTable(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Returns the canonical state equal to the given state. If there is no
+	 * such state, the given state becomes the canonical one.
+	 * 
+	 * @param state
+	 *            An abstract state.
+	 * @return A state equal to the given one.
+	 */
+	public synchronized StateType intern(StateType state) {
+		if (state == null)
+			return null;
+		expungeStaleEntries();
+		int hash = hash(state.hashCode());
+		int index = hash & (table.length - 1);
+		for (Entry<StateType> e = table[index]; e != null; e = e.next) {
+			if (e.hash == hash) {
+				StateType canonical = e.get();
+				if (canonical == state
+						|| (canonical != null && canonical.equals(state)))
+					return canonical;
+			}
+		}
+
+		if (size >= maxSize) {
+			clear();
+			index = hash & (table.length - 1);
+		}
+		table[index] = new Entry<>(state, hash, table[index], queue);
+		++size;
+		if (size > table.length - (table.length >> 2))
+			resize();
+		return state;
+	}
+
+	/**
+	 * Returns the number of states in the table.
+	 */
+	public synchronized int size() {
+		expungeStaleEntries();
+		return size;
+	}
+
+	/**
+	 * Removes all states from the table.
+	 */
+	public synchronized void clear() {
+		while (queue.poll() != null)
+			;
+		table = newTable(INITIAL_CAPACITY);
+		size = 0;
+	}
+
+	private static int hash(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <StateType> Entry<StateType>[] newTable(int capacity) {
+		return new Entry[capacity];
+	}
+
+	private void resize() {
+		Entry<StateType>[] newTable = newTable(table.length * 2);
+		for (Entry<StateType> head : table) {
+			Entry<StateType> e = head;
+			while (e != null) {
+				Entry<StateType> next = e.next;
+				int index = e.hash & (newTable.length - 1);
+				e.next = newTable[index];
+				newTable[index] = e;
+				e = next;
+			}
+		}
+		table = newTable;
+	}
+
+	/**
+	 * Removes the entries of states that have been garbage-collected.
+	 */
+	private void expungeStaleEntries() {
+		for (Object x; (x = queue.poll()) != null;) {
+			@SuppressWarnings("unchecked")
+			Entry<StateType> stale = (Entry<StateType>) x;
+			int index = stale.hash & (table.length - 1);
+			Entry<StateType> prev = null;
+			for (Entry<StateType> e = table[index]; e != null; e = e.next) {
+				if (e == stale) {
+					if (prev == null)
+						table[index] = e.next;
+					else
+						prev.next = e.next;
+					--size;
+					break;
+				}
+				prev = e;
+			}
+		}
+	}
+
+	/**
+	 * A weak reference to a canonical state along with its hash code.
+	 */
+	private static class Entry<StateType> extends WeakReference<StateType> {
+		final int hash;
+		Entry<StateType> next;
+
+		Entry(StateType state, int hash, Entry<StateType> next,
+				ReferenceQueue<StateType> queue) {
+			super(state, queue);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package bgu.cs.absint;
+
+/**
+ * An interface for abstract domains whose widening snaps unstable bounds to
+ * the next threshold, rather than dropping them.
+ * 
+ * @author romanm
+ */
+public interface ThresholdWidening {
+	/**
+	 * Sets the thresholds used by subsequent widenings, typically the
+	 * constants of the analyzed method.
+	 * 
+	 * @param thresholds
+	 *            A set of thresholds, possibly {@link WideningThresholds#NONE}.
+	 */
+	public void setThresholds(WideningThresholds thresholds);
+}
\ No newline at end of file
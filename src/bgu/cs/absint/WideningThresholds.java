@@ -0,0 +1,84 @@
+package bgu.cs.absint;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A sorted set of constants that widened bounds snap to, instead of jumping
+ * straight to infinity (widening with thresholds).
+ * 
+ * @author romanm
+ */
+public final class WideningThresholds {
+	/**
+	 * The empty set of thresholds, under which widening drops every unstable
+	 * bound.
+	 */
+	public static final WideningThresholds NONE = new WideningThresholds(
+			new long[0]);
+
+	/**
+	 * The thresholds in increasing order, without repetitions.
+	 */
+	private final long[] thresholds;
+
+	/**
+	 * Constructs a set of thresholds from the given constants.
+	 */
+	public WideningThresholds(Collection<Long> constants) {
+		this(toSortedArray(constants));
+	}
+
+	/**
+	 * Returns the least threshold that is greater or equal to the given
+	 * value, or {@link Long#MAX_VALUE} if there is none.
+	 */
+	public long next(long value) {
+		int i = Arrays.binarySearch(thresholds, value);
+		if (i >= 0)
+			return thresholds[i];
+		i = -i - 1;
+		return i < thresholds.length ? thresholds[i] : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the greatest threshold that is less or equal to the given
+	 * value, or {@link Long#MIN_VALUE} if there is none.
+	 */
+	public long previous(long value) {
+		int i = Arrays.binarySearch(thresholds, value);
+		if (i >= 0)
+			return thresholds[i];
+		i = -i - 2;
+		return i >= 0 ? thresholds[i] : Long.MIN_VALUE;
+	}
+
+	public int size() {
+		return thresholds.length;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(thresholds);
+	}
+
+	private WideningThresholds(long[] thresholds) {
+		this.thresholds = thresholds;
+	}
+
+	private static long[] toSortedArray(Collection<Long> constants) {
+		long[] result = new long[constants.size()];
+		int size = 0;
+		for (long c : constants) {
+			result[size++] = c;
+		}
+		Arrays.sort(result);
+		// Remove repetitions.
+		int distinct = 0;
+		for (int i = 0; i < size; ++i) {
+			if (distinct == 0 || result[distinct - 1] != result[i])
+				result[distinct++] = result[i];
+		}
+		return Arrays.copyOf(result, distinct);
+	}
+}
\ No newline at end of file
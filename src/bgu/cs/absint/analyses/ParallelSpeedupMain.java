@@ -0,0 +1,34 @@
+package bgu.cs.absint.analyses;
+
+import soot.PackManager;
+import soot.Transform;
+import bgu.cs.absint.analyses.cp.CPMain.CPAnalysis;
+import bgu.cs.absint.analyses.interval.IntervalMain.IntervalAnalysis;
+import bgu.cs.absint.analyses.zone.ZoneMain.ZonesAnalysis;
+import bgu.cs.absint.soot.BaseAnalysis;
+
+/**
+ * Runs several analyses with both the sequential solver and the parallel
+ * solver and reports the speedup of the parallel solver for each analysis.
+ * 
+ * @author romanm
+ */
+public class ParallelSpeedupMain {
+	public static void main(String[] args) {
+		BaseAnalysis<?, ?>[] analyses = { new IntervalAnalysis(),
+				new ZonesAnalysis(), new CPAnalysis() };
+		for (BaseAnalysis<?, ?> analysis : analyses) {
+			analysis.setDebug(false);
+			analysis.measureParallelSpeedup(true);
+			PackManager
+					.v()
+					.getPack("jtp")
+					.add(new Transform("jtp."
+							+ analysis.getClass().getSimpleName(), analysis));
+		}
+		soot.Main.main(args);
+		for (BaseAnalysis<?, ?> analysis : analyses) {
+			analysis.reportParallelSpeedup();
+		}
+	}
+}
\ No newline at end of file
@@ -1,8 +1,10 @@
 package bgu.cs.absint.analyses.ae;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 
 import soot.Local;
 import soot.Unit;
@@ -14,23 +16,24 @@ import soot.jimple.ThisRef;
 import bgu.cs.absint.ComposedOperation;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.ProgramSpecificDomain;
 import bgu.cs.absint.UnaryOperation;
 import bgu.cs.absint.constructor.EqualityRefiner;
 import bgu.cs.absint.soot.ExprContainsLocal;
-import bgu.cs.absint.soot.ForgetVarTransformer;
 import bgu.cs.absint.soot.IsPureExpr;
 import bgu.cs.absint.soot.TransformerMatcher;
 import bgu.cs.util.Pair;
 
 /**
  * Implementation of abstract operations for a static analysis for tracking
- * equalities between variables.
+ * available expressions. States are bit-vectors over the factoids numbered
+ * per method by an {@link ExprNumbering}.
  * 
  * @author romanm
  * 
  */
 public class AEDomain extends AbstractDomain<AEState, Unit> implements
-		EqualityRefiner<Local> {
+		EqualityRefiner<Local>, ProgramSpecificDomain<Unit> {
 	/**
 	 * Singleton value.
 	 */
@@ -38,6 +41,11 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 
 	protected AEMatcher matcher = new AEMatcher();
 
+	/**
+	 * Numbers the factoids of the current method.
+	 */
+	protected ExprNumbering numbering;
+
 	public static final AEDomain v() {
 		return v;
 	}
@@ -52,6 +60,41 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 		return AEState.top;
 	}
 
+	/**
+	 * Prepares a numbering of the factoids generated by the assignments of
+	 * the given units.
+	 */
+	@Override
+	public void prepare(Collection<Unit> units) {
+		ExprNumbering newNumbering = new ExprNumbering();
+		for (Unit unit : units) {
+			if (unit instanceof AssignStmt) {
+				AssignStmt stmt = (AssignStmt) unit;
+				if (stmt.getLeftOp() instanceof Local
+						&& stmt.getRightOp() instanceof Expr) {
+					Local lhs = (Local) stmt.getLeftOp();
+					Expr rhs = (Expr) stmt.getRightOp();
+					if (generates(lhs, rhs))
+						newNumbering.getBit(lhs, rhs);
+				}
+			}
+		}
+		numbering = newNumbering;
+	}
+
+	/**
+	 * Returns the numbering of the current method, which is created on demand
+	 * if {@link #prepare} has not been called.
+	 */
+	public ExprNumbering getNumbering() {
+		if (numbering == null)
+			numbering = new ExprNumbering();
+		return numbering;
+	}
+
+	/**
+	 * Computes the intersection of the two sets of factoids.
+	 */
 	@Override
 	public AEState ub(AEState first, AEState second) {
 		if (first == AEState.bottom) {
@@ -59,25 +102,43 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 		} else if (second == AEState.bottom) {
 			return first;
 		} else {
-			// Compute the intersection of the two sets of varToFactoid.
-			AEState result = new AEState(first);
-			result.factoids.retainAll(second.factoids);
-			return result;
+			long[] bits1 = first.bits;
+			long[] bits2 = second.bits;
+			long[] bits = new long[Math.min(bits1.length, bits2.length)];
+			for (int i = 0; i < bits.length; ++i) {
+				bits[i] = bits1[i] & bits2[i];
+			}
+			return new AEState(AEState.numbering(first, second), bits);
 		}
 	}
 
+	/**
+	 * Computes the union of the two sets of factoids.
+	 */
 	@Override
 	public AEState lb(AEState first, AEState second) {
 		if (first == AEState.bottom || second == AEState.bottom) {
 			return AEState.bottom;
 		} else {
-			// Compute the union of the two sets of varToFactoid.
-			AEState result = new AEState(first);
-			result.factoids.addAll(second.factoids);
-			return result;
+			long[] bits1 = first.bits;
+			long[] bits2 = second.bits;
+			if (bits1.length < bits2.length) {
+				long[] tmp = bits1;
+				bits1 = bits2;
+				bits2 = tmp;
+			}
+			long[] bits = bits1.clone();
+			for (int i = 0; i < bits2.length; ++i) {
+				bits[i] |= bits2[i];
+			}
+			return new AEState(AEState.numbering(first, second), bits);
 		}
 	}
 
+	/**
+	 * Checks whether the factoids of the second state are contained in the
+	 * factoids of the first state.
+	 */
 	@Override
 	public boolean leq(AEState first, AEState second) {
 		if (first == AEState.bottom) {
@@ -86,7 +147,14 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 			// first != bottom
 			return false;
 		} else {
-			return first.factoids.containsAll(second.factoids);
+			long[] bits1 = first.bits;
+			long[] bits2 = second.bits;
+			for (int i = 0; i < bits2.length; ++i) {
+				long word1 = i < bits1.length ? bits1[i] : 0;
+				if ((bits2[i] & ~word1) != 0)
+					return false;
+			}
+			return true;
 		}
 	}
 
@@ -94,36 +162,29 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 	public AEState refineByEqualities(Object input,
 			Collection<Pair<Local, Local>> equalities) {
 		AEState state = (AEState) input;
-		if (state == getBottom())
+		if (state == getBottom() || state.numbering == null)
 			return null;
 
+		ExprNumbering stateNumbering = state.numbering;
 		AEState result = state.copy();
 		boolean change = false;
 		for (Pair<Local, Local> equality : equalities) {
-			for (AEFactoid factoid : state.factoids) {
-				if (factoid.hasVar(equality.first)) {
+			for (int i = 0; i < state.bits.length; ++i) {
+				long word = state.bits[i];
+				while (word != 0) {
+					int bit = (i << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					AEFactoid factoid = stateNumbering.getFactoid(bit);
+					// Substitute the left-hand side variable of the factoid
+					// with the other variable of the equality.
+					// TODO: substitute in the right-hand side expression.
 					if (factoid.lhs.equals(equality.first)) {
-						// Substitute the left-hand side variable of the factoid
-						// with equality.second.
-						AEFactoid newFactoid = new AEFactoid(equality.second,
-								factoid.rhs);
-						change |= result.add(newFactoid);
-
-						// TODO: substitute in the right-hand side expression.
-					}
-
-				}
-				if (factoid.hasVar(equality.second)) {
-					if (factoid.lhs.equals(equality.second)) {
-						// Substitute the left-hand side variable of the factoid
-						// with equality.first.
-						AEFactoid newFactoid = new AEFactoid(equality.first,
-								factoid.rhs);
-						change |= result.add(newFactoid);
-
-						// TODO: substitute in the right-hand side expression.
+						change |= result.set(stateNumbering, stateNumbering
+								.getBit(equality.second, factoid.rhs));
+					} else if (factoid.lhs.equals(equality.second)) {
+						change |= result.set(stateNumbering, stateNumbering
+								.getBit(equality.first, factoid.rhs));
 					}
-				} else {
 				}
 			}
 		}
@@ -134,18 +195,31 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 			return null;
 	}
 
+	/**
+	 * Relates the left-hand side variables of factoids with equivalent
+	 * expressions. Relating each variable to the first one found suffices,
+	 * since the reduction of the product applies equalities transitively.
+	 */
 	@Override
 	public Collection<Pair<Local, Local>> inferEqualities(Object input) {
 		AEState state = (AEState) input;
-		if (state == getBottom())
+		if (state == getBottom() || state.numbering == null)
 			return Collections.emptyList();
 
-		HashSet<Pair<Local, Local>> result = new HashSet<>();
-		for (AEFactoid factoid1 : state.factoids) {
-			for (AEFactoid factoid2 : state.factoids) {
-				if (factoid1 != factoid2 && factoid1.rhs.equivTo(factoid2.rhs)) {
-					result.add(new Pair<>(factoid1.lhs, factoid2.lhs));
-				}
+		ExprNumbering stateNumbering = state.numbering;
+		HashMap<Integer, Local> exprToLhs = new HashMap<>();
+		ArrayList<Pair<Local, Local>> result = new ArrayList<>();
+		for (int i = 0; i < state.bits.length; ++i) {
+			long word = state.bits[i];
+			while (word != 0) {
+				int bit = (i << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				Local lhs = stateNumbering.getFactoid(bit).lhs;
+				Local first = exprToLhs.get(stateNumbering.getExprId(bit));
+				if (first == null)
+					exprToLhs.put(stateNumbering.getExprId(bit), lhs);
+				else if (!first.equals(lhs))
+					result.add(new Pair<>(first, lhs));
 			}
 		}
 		return result;
@@ -167,6 +241,14 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 		return IdOperation.v();
 	}
 
+	/**
+	 * Checks whether the assignment {@code lhs=rhs} makes the factoid
+	 * {@code lhs=rhs} hold.
+	 */
+	protected static boolean generates(Local lhs, Expr rhs) {
+		return IsPureExpr.v.check(rhs) && !ExprContainsLocal.v.check(rhs, lhs);
+	}
+
 	/**
 	 * Singleton pattern.
 	 */
@@ -183,18 +265,18 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 		public void matchAssignToLocal(AssignStmt stmt, Local lhs) {
 			super.matchAssignToLocal(stmt, lhs);
 			if (transformer == null)
-				transformer = new ForgetVarTransformer<AEFactoid, AEState>(lhs);
+				transformer = new KillTransformer(lhs);
 		}
 
 		@Override
 		public void matchIdentityStmt(IdentityStmt stmt, Local lhs,
 				ParameterRef rhs) {
-			transformer = new ForgetVarTransformer<AEFactoid, AEState>(lhs);
+			transformer = new KillTransformer(lhs);
 		}
 
 		@Override
 		public void matchIdentityStmt(IdentityStmt stmt, Local lhs, ThisRef rhs) {
-			transformer = new ForgetVarTransformer<AEFactoid, AEState>(lhs);
+			transformer = new KillTransformer(lhs);
 		}
 
 		/**
@@ -203,44 +285,100 @@ public class AEDomain extends AbstractDomain<AEState, Unit> implements
 		 */
 		@Override
 		public void matchAssignExprToLocal(AssignStmt stmt, Local lhs, Expr rhs) {
-			if (IsPureExpr.v.check(rhs) && !ExprContainsLocal.v.check(rhs, lhs)) {
-				transformer = new AssignExprToVarTransformer(lhs, rhs);
+			if (generates(lhs, rhs)) {
+				ExprNumbering currentNumbering = getNumbering();
+				transformer = new AssignExprToVarTransformer(currentNumbering,
+						lhs, currentNumbering.getBit(lhs, rhs));
 			} else {
-				transformer = new ForgetVarTransformer<AEFactoid, AEState>(lhs);
+				transformer = new KillTransformer(lhs);
 			}
 		}
 	}
 
+	/**
+	 * A transformer for an assignment of a pure expression to a variable,
+	 * which kills the factoids containing the variable and generates the
+	 * factoid of the assignment.
+	 * 
+	 * @author romanm
+	 */
 	protected static class AssignExprToVarTransformer extends
 			UnaryOperation<AEState> {
+		protected final ExprNumbering numbering;
+
 		/**
 		 * The variable being modified by the concrete semantics.
 		 */
-		protected Local lhs;
-		protected Expr rhs;
+		protected final Local lhs;
 
-		protected final AEFactoid newFactoid;
+		/**
+		 * The bit of the generated factoid.
+		 */
+		protected final int bit;
 
-		public AssignExprToVarTransformer(Local lhs, Expr rhs) {
+		public AssignExprToVarTransformer(ExprNumbering numbering, Local lhs,
+				int bit) {
+			this.numbering = numbering;
 			this.lhs = lhs;
-			newFactoid = new AEFactoid(lhs, rhs);
+			this.bit = bit;
 		}
 
 		@Override
 		public AEState apply(AEState input) {
 			// Special treatment for bottom.
-			if (input.equals(AEState.bottom))
+			if (input == AEState.bottom)
 				return AEState.bottom;
 
-			AEState result = new AEState();
-			for (AEFactoid factoid : input.factoids) {
-				if (!factoid.hasVar(lhs)) {
-					result.factoids.add(factoid);
+			AEState result = new AEState(numbering, Arrays.copyOf(input.bits,
+					Math.max(input.bits.length, (bit >>> 6) + 1)));
+			result.clear(numbering.getKillMask(lhs));
+			result.set(numbering, bit);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "AssignExprToVar(" + numbering.getFactoid(bit) + ")";
+		}
+	}
+
+	/**
+	 * A transformer that removes all factoids containing a given variable.
+	 * 
+	 * @author romanm
+	 */
+	protected static class KillTransformer extends UnaryOperation<AEState> {
+		/**
+		 * The variable being modified by the concrete semantics.
+		 */
+		protected final Local lhs;
+
+		public KillTransformer(Local lhs) {
+			this.lhs = lhs;
+		}
+
+		@Override
+		public AEState apply(AEState input) {
+			// Special treatment for bottom.
+			if (input == AEState.bottom || input.numbering == null)
+				return input;
+
+			long[] mask = input.numbering.getKillMask(lhs);
+			long[] bits = input.bits;
+			int length = Math.min(bits.length, mask.length);
+			for (int i = 0; i < length; ++i) {
+				if ((bits[i] & mask[i]) != 0) {
+					AEState result = input.copy();
+					result.clear(mask);
+					return result;
 				}
 			}
-			if (newFactoid != null)
-				result.factoids.add(newFactoid);
-			return result;
+			return input;
+		}
+
+		@Override
+		public String toString() {
+			return "Kill(" + lhs + ")";
 		}
 	}
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package bgu.cs.absint.analyses.ae;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import soot.Local;
 import soot.jimple.Expr;
-import bgu.cs.absint.soot.ExprVisitor;
+import bgu.cs.absint.soot.ExprContainsLocal;
 import bgu.cs.absint.soot.LocalsInExpr;
 import bgu.cs.absint.soot.SootFactoid;
 
@@ -30,17 +32,14 @@ public class AEFactoid extends SootFactoid {
 	@Override
 	public boolean hasVar(final Local var) {
 		assert var != null;
-		boolean result = false;
-		result |= lhs.equivTo(var);
-		final ArrayList<Local> exprLocals = new ArrayList<>();
-		rhs.apply(new ExprVisitor() {
-			@Override
-			public void caseLocal(Local v) {
-				exprLocals.add(v);
-			}
-		});
-		result |= exprLocals.contains(var);
-		return result;
+		return lhs.equivTo(var) || ExprContainsLocal.v.check(rhs, var);
+	}
+
+	@Override
+	public List<Local> getVars() {
+		Set<Local> result = new LinkedHashSet<>();
+		addVarsTo(result);
+		return new ArrayList<>(result);
 	}
 
 	@Override
@@ -1,27 +1,37 @@
 package bgu.cs.absint.analyses.ae;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
 import soot.Local;
 import soot.jimple.Expr;
 import bgu.cs.absint.constructor.ConjunctiveState;
 
 /**
  * A conjunctive set of factoids of the form {@code x=y+z} for three local
- * variables.
- * 
+ * variables.<br>
+ * The set is kept as a bit-vector over the factoids numbered by an
+ * {@link ExprNumbering}, so that joins and order checks are word-wise
+ * operations. Bits beyond the end of the vector are 0. The factoids of a
+ * state are created on demand.
+ *
  * @author romanm
  */
 public class AEState extends ConjunctiveState<Local, AEFactoid> {
+	private static final long[] noBits = new long[0];
+
 	/**
 	 * An immutable bottom element.
 	 */
 	public static final AEState bottom = new AEState(false) {
 		@Override
-		public boolean addFactoid(Local lhs, Expr rhs) {
+		public boolean set(ExprNumbering numbering, int bit) {
 			throw new Error("Attempt to modify " + toString());
 		}
 
 		@Override
-		public boolean add(AEFactoid factoid) {
+		public boolean clear(long[] mask) {
 			throw new Error("Attempt to modify " + toString());
 		}
 
@@ -36,12 +46,12 @@ public class AEState extends ConjunctiveState<Local, AEFactoid> {
 	 */
 	public static final AEState top = new AEState() {
 		@Override
-		public boolean addFactoid(Local lhs, Expr rhs) {
+		public boolean set(ExprNumbering numbering, int bit) {
 			throw new Error("Attempt to modify " + toString());
 		}
 
 		@Override
-		public boolean add(AEFactoid factoid) {
+		public boolean clear(long[] mask) {
 			throw new Error("Attempt to modify " + toString());
 		}
 
@@ -51,8 +61,17 @@ public class AEState extends ConjunctiveState<Local, AEFactoid> {
 		}
 	};
 
+	/**
+	 * Numbers the factoids of the bits, or null if no bit has been set.
+	 */
+	protected ExprNumbering numbering;
+
+	protected long[] bits;
+
 	public AEState() {
-		super();
+		// The factoid set of the base class is not used.
+		super(false);
+		this.bits = noBits;
 	}
 
 	@Override
@@ -63,12 +82,179 @@ public class AEState extends ConjunctiveState<Local, AEFactoid> {
 			return new AEState(this);
 	}
 
+	/**
+	 * Checks whether the factoid of the given bit is in the set.
+	 */
+	public boolean get(int bit) {
+		int word = bit >>> 6;
+		return word < bits.length && (bits[word] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Adds the factoid of the given bit of the given numbering.
+	 *
+	 * @return true if the factoid was not already in the set.
+	 */
+	public boolean set(ExprNumbering numbering, int bit) {
+		assert this.numbering == null || this.numbering == numbering : "Mixing numberings!";
+		this.numbering = numbering;
+		int word = bit >>> 6;
+		if (word >= bits.length)
+			bits = Arrays.copyOf(bits, word + 1);
+		long mask = 1L << bit;
+		if ((bits[word] & mask) != 0)
+			return false;
+		bits[word] |= mask;
+		return true;
+	}
+
+	/**
+	 * Removes the factoids of the bits of the given mask.
+	 *
+	 * @return true if any factoid was removed.
+	 */
+	public boolean clear(long[] mask) {
+		boolean result = false;
+		int length = Math.min(bits.length, mask.length);
+		for (int i = 0; i < length; ++i) {
+			if ((bits[i] & mask[i]) != 0) {
+				bits[i] &= ~mask[i];
+				result = true;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a factoid, which requires the state to have a numbering.
+	 */
 	public boolean addFactoid(Local lhs, Expr rhs) {
-		return factoids.add(new AEFactoid(lhs, rhs));
+		assert numbering != null : "No numbering for " + lhs + "=" + rhs;
+		return set(numbering, numbering.getBit(lhs, rhs));
+	}
+
+	@Override
+	public boolean add(AEFactoid factoid) {
+		return addFactoid(factoid.lhs, factoid.rhs);
+	}
+
+	/**
+	 * Checks whether any factoid of the set contains the given variable.
+	 */
+	@Override
+	public boolean hasVar(Local var) {
+		if (numbering == null)
+			return false;
+		long[] mask = numbering.getKillMask(var);
+		int length = Math.min(bits.length, mask.length);
+		for (int i = 0; i < length; ++i) {
+			if ((bits[i] & mask[i]) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes any factoid containing the given variable.
+	 */
+	@Override
+	public boolean removeVar(Local lhs) {
+		if (numbering == null)
+			return false;
+		return clear(numbering.getKillMask(lhs));
+	}
+
+	@Override
+	public Collection<AEFactoid> getFactoids() {
+		if (this == bottom)
+			return null;
+
+		HashSet<AEFactoid> result = new HashSet<>();
+		for (int i = 0; i < bits.length; ++i) {
+			long word = bits[i];
+			while (word != 0) {
+				int bit = (i << 6) + Long.numberOfTrailingZeros(word);
+				result.add(numbering.getFactoid(bit));
+				word &= word - 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compares the bit-vectors of the states, ignoring trailing zero words.
+	 * States over the numberings of different method bodies are equal only if
+	 * both are empty.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof AEState))
+			return false;
+		AEState other = (AEState) obj;
+		if (this == bottom || other == bottom)
+			return false;
+		if (numbering != null && other.numbering != null
+				&& numbering != other.numbering)
+			return isEmpty(bits) && isEmpty(other.bits);
+		int length = Math.min(bits.length, other.bits.length);
+		for (int i = 0; i < length; ++i) {
+			if (bits[i] != other.bits[i])
+				return false;
+		}
+		for (int i = length; i < bits.length; ++i) {
+			if (bits[i] != 0)
+				return false;
+		}
+		for (int i = length; i < other.bits.length; ++i) {
+			if (other.bits[i] != 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isEmpty(long[] bits) {
+		for (long word : bits) {
+			if (word != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes the words of the bit-vector up to the last non-zero one.
+	 */
+	@Override
+	public int hashCode() {
+		if (this == bottom)
+			return 0;
+		int length = bits.length;
+		while (length > 0 && bits[length - 1] == 0)
+			--length;
+		int result = 1;
+		for (int i = 0; i < length; ++i)
+			result = 31 * result + (int) (bits[i] ^ (bits[i] >>> 32));
+		return result;
+	}
+
+	/**
+	 * Returns the numbering of whichever of the given states has one.
+	 */
+	protected static ExprNumbering numbering(AEState first, AEState second) {
+		return first.numbering != null ? first.numbering : second.numbering;
+	}
+
+	protected AEState(ExprNumbering numbering, long[] bits) {
+		super(false);
+		this.numbering = numbering;
+		this.bits = bits;
 	}
 
 	protected AEState(AEState copyFrom) {
-		super(copyFrom.factoids);
+		super(false);
+		this.numbering = copyFrom.numbering;
+		this.bits = copyFrom.bits.clone();
 	}
 
 	/**
@@ -77,5 +263,6 @@ public class AEState extends ConjunctiveState<Local, AEFactoid> {
 	 */
 	protected AEState(boolean dummy) {
 		super(false);
+		this.bits = noBits;
 	}
 }
\ No newline at end of file
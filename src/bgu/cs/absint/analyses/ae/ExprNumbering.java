@@ -0,0 +1,145 @@
+package bgu.cs.absint.analyses.ae;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import soot.EquivalentValue;
+import soot.Local;
+import soot.jimple.Expr;
+import bgu.cs.absint.soot.LocalsInExpr;
+
+/**
+ * Numbers the expressions of a method body, identifying expressions that are
+ * equivalent (see {@link Expr#equivTo}), and the factoids of the form
+ * {@code x=expr} over them, which index the bits of {@link AEState}s.<br>
+ * For each local, the numbering maintains a kill mask with the bits of the
+ * factoids that mention the local. New factoids may be numbered during the
+ * analysis, e.g., when refining by equalities, and extend the kill masks.
+ * The methods are synchronized, since states may be transformed by
+ * concurrent solvers.
+ *
+ * @author romanm
+ */
+public class ExprNumbering {
+	private static final long[] noBits = new long[0];
+
+	/**
+	 * Maps each expression, modulo equivalence, to its number.
+	 */
+	protected final HashMap<EquivalentValue, Integer> exprToId = new HashMap<>();
+
+	/**
+	 * The locals of each expression, indexed by expression number.
+	 */
+	protected final ArrayList<Local[]> exprLocals = new ArrayList<>();
+
+	/**
+	 * Maps each factoid, given by the number of its left-hand side local and
+	 * the number of its expression, to its bit.
+	 */
+	protected final HashMap<Long, Integer> factoidToBit = new HashMap<>();
+
+	/**
+	 * The factoid of each bit.
+	 */
+	protected final ArrayList<AEFactoid> factoids = new ArrayList<>();
+
+	/**
+	 * The expression number of each bit.
+	 */
+	protected int[] bitToExpr = new int[16];
+
+	/**
+	 * Maps each local to the bits of the factoids containing it.
+	 */
+	protected final HashMap<Local, long[]> killMasks = new HashMap<>();
+
+	/**
+	 * Returns the bit of the factoid {@code lhs=expr}, numbering the factoid
+	 * if needed.
+	 */
+	public synchronized int getBit(Local lhs, Expr expr) {
+		int exprId = getExprId(expr);
+		Long key = ((long) lhs.getNumber() << 32) | exprId;
+		Integer bit = factoidToBit.get(key);
+		if (bit != null)
+			return bit;
+
+		bit = factoids.size();
+		factoidToBit.put(key, bit);
+		factoids.add(new AEFactoid(lhs, expr));
+		if (bit == bitToExpr.length)
+			bitToExpr = Arrays.copyOf(bitToExpr, 2 * bit);
+		bitToExpr[bit] = exprId;
+		addToKillMask(lhs, bit);
+		for (Local local : exprLocals.get(exprId)) {
+			if (local != lhs)
+				addToKillMask(local, bit);
+		}
+		return bit;
+	}
+
+	/**
+	 * Returns the bits of the factoids containing the given local. The result
+	 * should not be modified.
+	 */
+	public synchronized long[] getKillMask(Local local) {
+		long[] result = killMasks.get(local);
+		return result == null ? noBits : result;
+	}
+
+	/**
+	 * Returns the factoid of the given bit.
+	 */
+	public synchronized AEFactoid getFactoid(int bit) {
+		return factoids.get(bit);
+	}
+
+	/**
+	 * Returns the number of the expression of the factoid of the given bit.
+	 */
+	public synchronized int getExprId(int bit) {
+		return bitToExpr[bit];
+	}
+
+	/**
+	 * Returns the number of factoids.
+	 */
+	public synchronized int size() {
+		return factoids.size();
+	}
+
+	/**
+	 * Returns the number of the given expression, numbering it if needed.
+	 */
+	protected int getExprId(Expr expr) {
+		EquivalentValue key = new EquivalentValue(expr);
+		Integer result = exprToId.get(key);
+		if (result == null) {
+			result = exprLocals.size();
+			exprToId.put(key, result);
+			Set<Local> locals = new HashSet<>();
+			LocalsInExpr.v.get(expr, locals);
+			exprLocals.add(locals.toArray(new Local[locals.size()]));
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the given bit to the kill mask of the given local. Kill masks are
+	 * replaced rather than modified, so masks returned earlier stay intact.
+	 */
+	private void addToKillMask(Local local, int bit) {
+		long[] mask = killMasks.get(local);
+		int word = bit >>> 6;
+		if (mask == null)
+			mask = new long[word + 1];
+		else
+			mask = Arrays.copyOf(mask, Math.max(mask.length, word + 1));
+		mask[word] |= 1L << bit;
+		killMasks.put(local, mask);
+	}
+}
\ No newline at end of file
@@ -95,6 +95,16 @@ public class APDomain extends
 		return result;
 	}
 
+	/**
+	 * Decides the order via the upper bound, which generalizes the factoids
+	 * of each variable to a common progression, rather than keeping the
+	 * implied ones.
+	 */
+	@Override
+	public boolean leq(APState elem1, APState elem2) {
+		return leqByJoin(elem1, elem2);
+	}
+
 	@Override
 	public APState lb(APState elem1, APState elem2) {
 		// /////////////////////////////////
@@ -1,5 +1,7 @@
 package bgu.cs.absint.analyses.ap;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import soot.Local;
@@ -91,6 +93,11 @@ public class APFactoid extends SootFactoid {
 		return this.var.equivTo(var);
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Collections.singletonList(var);
+	}
+
 	@Override
 	public void addVarsTo(Set<Local> c) {
 		c.add(var);
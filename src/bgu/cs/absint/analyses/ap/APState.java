@@ -164,6 +164,20 @@ public class APState extends ConjunctiveState<Local, APFactoid> {
 		return varToFactoid.get(var);
 	}
 
+	/**
+	 * Returns the factoid of the given variable, if there is one.
+	 */
+	@Override
+	public Collection<APFactoid> getFactoidsWithVar(Local var) {
+		if (varToFactoid == null)
+			return Collections.emptySet();
+		APFactoid factoid = varToFactoid.get(var);
+		if (factoid == null)
+			return Collections.emptySet();
+		else
+			return Collections.singleton(factoid);
+	}
+
 	/**
 	 * Returns all the factoids that amount to a constant equality.
 	 */
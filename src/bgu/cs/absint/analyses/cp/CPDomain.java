@@ -2,7 +2,9 @@ package bgu.cs.absint.analyses.cp;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 import soot.Immediate;
 import soot.Local;
@@ -12,9 +14,9 @@ import soot.ValueBox;
 import soot.jimple.AssignStmt;
 import soot.jimple.Constant;
 import soot.jimple.Expr;
-import soot.jimple.IntConstant;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.Ordering;
 import bgu.cs.absint.UnaryOperation;
 import bgu.cs.absint.constructor.EqualityRefiner;
 import bgu.cs.absint.soot.Assume;
@@ -59,34 +61,109 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 		} else if (second == CPState.bottom) {
 			return first;
 		} else {
-			// Compute the intersection of the two sets of varToFactoid.
-			CPState result = new CPState(first);
-			result.factoids.retainAll(second.factoids);
+			// Compute the intersection of the two sets of varToFactoid by
+			// walking the smaller table and looking up the larger one.
+			CPState smaller = first.size <= second.size ? first : second;
+			CPState larger = smaller == first ? second : first;
+			CPState result = new CPState(smaller.size);
+			for (int i = 0; i < smaller.locals.length; ++i) {
+				Local var = smaller.locals[i];
+				if (var == null)
+					continue;
+				Constant c = larger.getConstantForVar(var);
+				if (c != null && c.equivTo(smaller.constants[i]))
+					result.addFactoid(var, c);
+			}
 			return result;
 		}
 	}
 
+	/**
+	 * Computes the intersection of the sets of factoids of all non-bottom
+	 * states by walking the smallest table and looking up the others.
+	 */
+	@Override
+	public CPState ubAll(List<CPState> elems) {
+		CPState smallest = null;
+		for (int k = 0; k < elems.size(); ++k) {
+			CPState elem = elems.get(k);
+			if (elem != CPState.bottom
+					&& (smallest == null || elem.size < smallest.size))
+				smallest = elem;
+		}
+		if (smallest == null)
+			return CPState.bottom;
+
+		CPState result = new CPState(smallest.size);
+		for (int i = 0; i < smallest.locals.length; ++i) {
+			Local var = smallest.locals[i];
+			if (var == null)
+				continue;
+			Constant c = smallest.constants[i];
+			boolean common = true;
+			for (int k = 0; k < elems.size() && common; ++k) {
+				CPState elem = elems.get(k);
+				if (elem != CPState.bottom && elem != smallest) {
+					Constant other = elem.getConstantForVar(var);
+					common = other != null && other.equivTo(c);
+				}
+			}
+			if (common)
+				result.addFactoid(var, c);
+		}
+		return result;
+	}
+
 	@Override
 	public CPState lb(CPState first, CPState second) {
 		if (first == CPState.bottom || second == CPState.bottom) {
 			return CPState.bottom;
 		} else {
-			// Compute the union of the two sets of varToFactoid.
+			// Compute the union of the two sets of varToFactoid. A variable
+			// with two different constants makes the union unsatisfiable.
 			CPState result = new CPState(first);
-			result.factoids.addAll(second.factoids);
+			for (int i = 0; i < second.locals.length; ++i) {
+				Local var = second.locals[i];
+				if (var == null)
+					continue;
+				Constant c = first.getConstantForVar(var);
+				if (c == null)
+					result.addFactoid(var, second.constants[i]);
+				else if (!c.equivTo(second.constants[i]))
+					return CPState.bottom;
+			}
 			return result;
 		}
 	}
 
 	@Override
 	public boolean leq(CPState first, CPState second) {
-		if (first == CPState.bottom) {
+		if (first == second || first == CPState.bottom) {
 			return true;
 		} else if (second == CPState.bottom) {
 			// first != bottom
 			return false;
 		} else {
-			return first.factoids.containsAll(second.factoids);
+			return first.containsAll(second);
+		}
+	}
+
+	/**
+	 * Compares the states by counting their common factoids in a single pass.
+	 */
+	@Override
+	public Ordering compare(CPState first, CPState second) {
+		if (first == second) {
+			return Ordering.EQUAL;
+		} else if (first == CPState.bottom) {
+			return Ordering.LESS;
+		} else if (second == CPState.bottom) {
+			return Ordering.GREATER;
+		} else {
+			int common = first.countCommon(second);
+			if (common < 0)
+				return Ordering.INCOMPARABLE;
+			return Ordering.of(common == second.size(), common == first.size());
 		}
 	}
 
@@ -129,12 +206,19 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 		if (state == getBottom())
 			return Collections.emptyList();
 
+		// Relate each variable to the first variable found with the same
+		// constant, rather than relating all pairs.
+		HashMap<Constant, Local> constantToVar = new HashMap<>();
 		HashSet<Pair<Local, Local>> result = new HashSet<>();
-		for (CPFactoid factoid1 : state.factoids) {
-			for (CPFactoid factoid2 : state.factoids) {
-				if (factoid1 != factoid2 && factoid1.rhs.equals(factoid2.rhs))
-					result.add(new Pair<>(factoid1.lhs, factoid2.lhs));
-			}
+		for (int i = 0; i < state.locals.length; ++i) {
+			Local var = state.locals[i];
+			if (var == null)
+				continue;
+			Local first = constantToVar.get(state.constants[i]);
+			if (first == null)
+				constantToVar.put(state.constants[i], var);
+			else
+				result.add(new Pair<>(first, var));
 		}
 		return result;
 	}
@@ -154,25 +238,6 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 		return vanillaTransformer;
 	}
 
-	protected static boolean isConcreteExpr(CPState state, Expr expr) {
-		boolean result = true;
-		for (Object o : expr.getUseBoxes()) {
-			ValueBox b = (ValueBox) o;
-			Value v = b.getValue();
-			if (v instanceof Constant) {
-			} else if (v instanceof Local) {
-				Local l = (Local) v;
-				if (state.getConstantForVar(l) == null)
-					result = false;
-			} else {
-				result = false;
-			}
-			if (!result)
-				break;
-		}
-		return result;
-	}
-
 	/**
 	 * Singleton pattern.
 	 */
@@ -269,18 +334,13 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 			if (input.equals(CPState.bottom))
 				return CPState.bottom;
 
-			if (isConcreteExpr(input, rhs)) {
-				Constant resultVal = CPExprEval.v.eval(input, rhs);
-				if (resultVal != null) {
-					CPState result = new CPState(input);
-					result.removeVar(lhs);
-					result.addFactoid(lhs, resultVal);
-					return result;
-				}
-			}
-
 			CPState result = new CPState(input);
 			result.removeVar(lhs);
+			// The value is evaluated on primitive values and only turned into a
+			// constant when it is stored.
+			CPExprEval eval = CPExprEval.v();
+			if (eval.evaluate(input, rhs))
+				result.addFactoid(lhs, eval.toConstant());
 			return result;
 		}
 	}
@@ -318,10 +378,8 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 			CPState result = new CPState(input);
 			result.removeVar(lhs);
 			Constant value = input.getConstantForVar(rhs);
-			if (value != null) {
-				CPFactoid newFactoid = new CPFactoid(lhs, value);
-				result.factoids.add(newFactoid);
-			}
+			if (value != null)
+				result.addFactoid(lhs, value);
 			return result;
 		}
 	}
@@ -336,13 +394,11 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 			UnaryOperation<CPState> {
 		protected final Local lhs;
 		protected final Constant rhs;
-		protected final CPFactoid checkedFactoid;
 
 		public AssumeVarNeqConstantTransformer(Local lhs, Constant rhs) {
 			this.lhs = lhs;
 			this.rhs = rhs;
 			assert !lhs.equals(rhs);
-			checkedFactoid = new CPFactoid(lhs, rhs);
 		}
 
 		/**
@@ -356,7 +412,7 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 			if (input.equals(CPState.bottom))
 				return CPState.bottom;
 
-			if (input.factoids.contains(checkedFactoid)) {
+			if (rhs.equals(input.getConstantForVar(lhs))) {
 				return CPState.bottom;
 			} else {
 				return input;
@@ -385,15 +441,13 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 			if (input.equals(CPState.bottom))
 				return CPState.bottom;
 
-			if (isConcreteExpr(input, expr)) {
-				Constant resultVal = CPExprEval.v.eval(input, expr);
-				if (resultVal != null) {
-					boolean conditionHolds = resultVal.equals(IntConstant.v(1));
-					if (conditionHolds == polarity)
-						return input;
-					else
-						return CPState.bottom;
-				}
+			CPExprEval eval = CPExprEval.v();
+			if (eval.evaluate(input, expr)) {
+				boolean conditionHolds = eval.isTrue();
+				if (conditionHolds == polarity)
+					return input;
+				else
+					return CPState.bottom;
 			}
 
 			return input;
@@ -412,13 +466,11 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 			UnaryOperation<CPState> {
 		protected final Local lhs;
 		protected final Constant rhs;
-		protected final CPFactoid newFactoid;
 
 		public AssignConstantToVarTransformer(Local lhs, Constant rhs) {
 			this.lhs = lhs;
 			this.rhs = rhs;
 			assert !lhs.equals(rhs);
-			newFactoid = new CPFactoid(lhs, rhs);
 		}
 
 		/**
@@ -432,15 +484,10 @@ public class CPDomain extends AbstractDomain<CPState, Unit> implements
 			if (input.equals(CPState.bottom))
 				return CPState.bottom;
 
-			CPState result = new CPState();
-			// Apply the preservation rule to each factoid.
-			for (CPFactoid factoid : input.factoids) {
-				if (!factoid.hasVar(this.lhs)) {
-					result.factoids.add(factoid);
-				}
-			}
-			// Apply the new factoid rule.
-			result.factoids.add(newFactoid);
+			// Apply the preservation rule to each factoid and the new factoid
+			// rule, which replaces the constant of lhs.
+			CPState result = new CPState(input);
+			result.addFactoid(lhs, rhs);
 			return result;
 		}
 	}
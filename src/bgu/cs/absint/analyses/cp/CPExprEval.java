@@ -2,512 +2,606 @@ package bgu.cs.absint.analyses.cp;
 
 import bgu.cs.absint.soot.ExprVisitor;
 import soot.Local;
+import soot.Value;
 import soot.jimple.*;
 
 /**
- * A class for evaluating expressions over a given state.
+ * A class for evaluating expressions over a given state.<br>
+ * Numeric values are evaluated on primitive values: the kind of the value of
+ * the last evaluated expression is kept in {@link #kind}, and the value itself
+ * in {@link #longValue} for int and long values and in {@link #doubleValue}
+ * for float and double values. Float values are computed in float precision.
+ * A constant object is only created by {@link #toConstant()}, when the value
+ * is stored back into a state.<br>
+ * Since an evaluator keeps the value of the last evaluated expression, each
+ * thread uses its own instance (see {@link #v()}), so that transformers may be
+ * applied concurrently.
  * 
  * @author romanm
  * 
  */
 public class CPExprEval extends ExprVisitor {
 	/**
-	 * The one and only instance of this this class (singleton pattern).
+	 * The instance of this class for each thread.
 	 */
-	public static final CPExprEval v = new CPExprEval();
+	private static final ThreadLocal<CPExprEval> v = new ThreadLocal<CPExprEval>() {
+		@Override
+		protected CPExprEval initialValue() {
+			return new CPExprEval();
+		}
+	};
+
+	/**
+	 * Returns the evaluator of the current thread.
+	 */
+	public static CPExprEval v() {
+		return v.get();
+	}
+
+	/**
+	 * The kind of a value that could not be determined.
+	 */
+	public static final int UNKNOWN = 0;
+	public static final int INT = 1;
+	public static final int LONG = 2;
+	public static final int FLOAT = 3;
+	public static final int DOUBLE = 4;
+
+	/**
+	 * The kind of a non-numeric constant, e.g., null or a string.
+	 */
+	public static final int OTHER = 5;
+
+	private static final int MIN_CACHED_INT = -128;
+	private static final int MAX_CACHED_INT = 1023;
+	private static final IntConstant[] intConstants = new IntConstant[MAX_CACHED_INT
+			- MIN_CACHED_INT + 1];
 
 	public boolean divByZero;
 
 	protected CPState input;
-	protected Constant result;
 
-	public Constant eval(CPState input, Expr rhs) {
+	protected int kind;
+	protected long longValue;
+	protected double doubleValue;
+	protected Constant otherValue;
+
+	/**
+	 * Evaluates the given expression, which can be read by {@link #getKind()},
+	 * {@link #isTrue()} and {@link #toConstant()}.
+	 * 
+	 * @return true if the value of the expression was determined.
+	 */
+	public boolean evaluate(CPState input, Value expr) {
 		this.input = input;
 		this.divByZero = false;
-		this.result = null;
-		rhs.apply(this);
-		return this.result;
+		this.otherValue = null;
+		expr.apply(this);
+		return kind != UNKNOWN;
+	}
+
+	public Constant eval(CPState input, Expr rhs) {
+		evaluate(input, rhs);
+		return toConstant();
+	}
+
+	/**
+	 * Returns the kind of the value of the last evaluated expression.
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * Checks whether the last evaluated expression is a condition that holds,
+	 * i.e., whether its value is the int 1.
+	 */
+	public boolean isTrue() {
+		return kind == INT && longValue == 1;
+	}
+
+	/**
+	 * Returns the value of the last evaluated expression as a constant, or
+	 * null if it could not be determined.
+	 */
+	public Constant toConstant() {
+		switch (kind) {
+		case INT:
+			return intConstant((int) longValue);
+		case LONG:
+			return LongConstant.v(longValue);
+		case FLOAT:
+			return FloatConstant.v((float) doubleValue);
+		case DOUBLE:
+			return DoubleConstant.v(doubleValue);
+		case OTHER:
+			return otherValue;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns an int constant, sharing the constants for small values.
+	 */
+	public static IntConstant intConstant(int value) {
+		if (value < MIN_CACHED_INT || value > MAX_CACHED_INT)
+			return IntConstant.v(value);
+		IntConstant result = intConstants[value - MIN_CACHED_INT];
+		if (result == null) {
+			result = IntConstant.v(value);
+			intConstants[value - MIN_CACHED_INT] = result;
+		}
+		return result;
 	}
 
 	// /////////////////////////////////////////////////////////
 	// Expressions
 	// /////////////////////////////////////////////////////////
 
-	@Override
-	public void caseAddExpr(AddExpr v) {
+	private static final int ADD = 0;
+	private static final int SUB = 1;
+	private static final int MUL = 2;
+	private static final int DIV = 3;
+	private static final int REM = 4;
+	private static final int AND = 5;
+	private static final int OR = 6;
+	private static final int XOR = 7;
+	private static final int SHL = 8;
+	private static final int SHR = 9;
+	private static final int USHR = 10;
+	private static final int EQ = 11;
+	private static final int NE = 12;
+	private static final int LT = 13;
+	private static final int LE = 14;
+	private static final int GT = 15;
+	private static final int GE = 16;
+	private static final int CMPG = 17;
+	private static final int CMPL = 18;
+	private static final int CMP = 19;
+
+	/**
+	 * Evaluates a binary expression with the given operator.
+	 */
+	protected void binop(BinopExpr v, int op) {
 		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
+		int kind1 = kind;
+		long long1 = longValue;
+		double double1 = doubleValue;
+		if (kind1 == UNKNOWN)
+			return;
 		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
+		int kind2 = kind;
+		long long2 = longValue;
+		double double2 = doubleValue;
+		kind = UNKNOWN;
+		if (kind2 == UNKNOWN || kind1 == OTHER || kind2 == OTHER)
+			return;
+
+		if (op == SHL || op == SHR || op == USHR) {
+			if (kind2 != INT)
+				return;
+			int shift = (int) long2;
+			if (kind1 == INT) {
+				int i1 = (int) long1;
+				setInt(op == SHL ? i1 << shift : op == SHR ? i1 >> shift
+						: i1 >>> shift);
+			} else if (kind1 == LONG) {
+				setLong(op == SHL ? long1 << shift : op == SHR ? long1 >> shift
+						: long1 >>> shift);
+			}
 			return;
 		}
+		if (kind1 != kind2)
+			return;
 
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		result = i1.add(i2);
+		switch (kind1) {
+		case INT:
+			intOp(op, (int) long1, (int) long2);
+			break;
+		case LONG:
+			longOp(op, long1, long2);
+			break;
+		case FLOAT:
+			floatOp(op, (float) double1, (float) double2);
+			break;
+		case DOUBLE:
+			doubleOp(op, double1, double2);
+			break;
+		}
 	}
 
-	@Override
-	public void caseAndExpr(AndExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
+	private void intOp(int op, int i1, int i2) {
+		switch (op) {
+		case ADD:
+			setInt(i1 + i2);
+			break;
+		case SUB:
+			setInt(i1 - i2);
+			break;
+		case MUL:
+			setInt(i1 * i2);
+			break;
+		case DIV:
+			if (i2 == 0)
+				divByZero = true;
+			else
+				setInt(i1 / i2);
+			break;
+		case REM:
+			if (i2 == 0)
+				divByZero = true;
+			else
+				setInt(i1 % i2);
+			break;
+		case AND:
+			setInt(i1 & i2);
+			break;
+		case OR:
+			setInt(i1 | i2);
+			break;
+		case XOR:
+			setInt(i1 ^ i2);
+			break;
+		default:
+			compare(op, i1 < i2 ? -1 : i1 == i2 ? 0 : 1);
+		}
+	}
+
+	private void longOp(int op, long l1, long l2) {
+		switch (op) {
+		case ADD:
+			setLong(l1 + l2);
+			break;
+		case SUB:
+			setLong(l1 - l2);
+			break;
+		case MUL:
+			setLong(l1 * l2);
+			break;
+		case DIV:
+			if (l2 == 0)
+				divByZero = true;
+			else
+				setLong(l1 / l2);
+			break;
+		case REM:
+			if (l2 == 0)
+				divByZero = true;
+			else
+				setLong(l1 % l2);
+			break;
+		case AND:
+			setLong(l1 & l2);
+			break;
+		case OR:
+			setLong(l1 | l2);
+			break;
+		case XOR:
+			setLong(l1 ^ l2);
+			break;
+		default:
+			compare(op, l1 < l2 ? -1 : l1 == l2 ? 0 : 1);
+		}
+	}
+
+	private void floatOp(int op, float f1, float f2) {
+		switch (op) {
+		case ADD:
+			setReal(FLOAT, f1 + f2);
+			break;
+		case SUB:
+			setReal(FLOAT, f1 - f2);
+			break;
+		case MUL:
+			setReal(FLOAT, f1 * f2);
+			break;
+		case DIV:
+			setReal(FLOAT, f1 / f2);
+			break;
+		case REM:
+			setReal(FLOAT, f1 % f2);
+			break;
+		default:
+			realCompare(op, f1, f2);
+		}
+	}
+
+	private void doubleOp(int op, double d1, double d2) {
+		switch (op) {
+		case ADD:
+			setReal(DOUBLE, d1 + d2);
+			break;
+		case SUB:
+			setReal(DOUBLE, d1 - d2);
+			break;
+		case MUL:
+			setReal(DOUBLE, d1 * d2);
+			break;
+		case DIV:
+			setReal(DOUBLE, d1 / d2);
+			break;
+		case REM:
+			setReal(DOUBLE, d1 % d2);
+			break;
+		default:
+			realCompare(op, d1, d2);
+		}
+	}
+
+	/**
+	 * Sets the value of a comparison of integral values, given the sign of
+	 * their difference.
+	 */
+	private void compare(int op, int sign) {
+		switch (op) {
+		case CMP:
+			setInt(sign);
+			break;
+		case EQ:
+			setBoolean(sign == 0);
+			break;
+		case NE:
+			setBoolean(sign != 0);
+			break;
+		case LT:
+			setBoolean(sign < 0);
+			break;
+		case LE:
+			setBoolean(sign <= 0);
+			break;
+		case GT:
+			setBoolean(sign > 0);
+			break;
+		case GE:
+			setBoolean(sign >= 0);
+			break;
 		}
+	}
+
+	/**
+	 * Sets the value of a comparison of real values. The comparisons cmpg and
+	 * cmpl differ in the result for NaN operands.
+	 */
+	private void realCompare(int op, double d1, double d2) {
+		switch (op) {
+		case EQ:
+			setBoolean(d1 == d2);
+			break;
+		case NE:
+			setBoolean(d1 != d2);
+			break;
+		case LT:
+			setBoolean(d1 < d2);
+			break;
+		case LE:
+			setBoolean(d1 <= d2);
+			break;
+		case GT:
+			setBoolean(d1 > d2);
+			break;
+		case GE:
+			setBoolean(d1 >= d2);
+			break;
+		case CMPG:
+			setInt(d1 < d2 ? -1 : d1 == d2 ? 0 : 1);
+			break;
+		case CMPL:
+			setInt(d1 > d2 ? 1 : d1 == d2 ? 0 : -1);
+			break;
+		}
+	}
 
-		assert c1 instanceof ArithmeticConstant;
-		assert c2 instanceof ArithmeticConstant;
-		ArithmeticConstant i1 = (ArithmeticConstant) c1;
-		ArithmeticConstant i2 = (ArithmeticConstant) c2;
-		result = i1.and(i2);
+	private void setInt(int value) {
+		kind = INT;
+		longValue = value;
+	}
+
+	private void setLong(long value) {
+		kind = LONG;
+		longValue = value;
+	}
+
+	private void setReal(int kind, double value) {
+		this.kind = kind;
+		doubleValue = value;
+	}
+
+	private void setBoolean(boolean value) {
+		kind = INT;
+		longValue = value ? 1 : 0;
+	}
+
+	/**
+	 * Conservatively ignores an expression.
+	 */
+	private void unknown() {
+		kind = UNKNOWN;
+	}
+
+	@Override
+	public void caseAddExpr(AddExpr v) {
+		binop(v, ADD);
+	}
+
+	@Override
+	public void caseAndExpr(AndExpr v) {
+		binop(v, AND);
 	}
 
 	@Override
 	public void caseCastExpr(CastExpr v) {
 		// Conservatively ignore this case.
-		this.result = null;
+		unknown();
 	}
 
 	@Override
 	public void caseCmpExpr(CmpExpr v) {
-		// TODO: find out what this expression corresponds to.
-		// Conservatively ignore this case.
-		this.result = null;
+		binop(v, CMP);
 	}
 
 	@Override
 	public void caseCmpgExpr(CmpgExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof RealConstant;
-		assert c2 instanceof RealConstant;
-		RealConstant r1 = (RealConstant) c1;
-		RealConstant r2 = (RealConstant) c2;
-		result = r1.cmpg(r2);
+		binop(v, CMPG);
 	}
 
 	@Override
 	public void caseCmplExpr(CmplExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof RealConstant;
-		assert c2 instanceof RealConstant;
-		RealConstant r1 = (RealConstant) c1;
-		RealConstant r2 = (RealConstant) c2;
-		result = r1.cmpl(r2);
+		binop(v, CMPL);
 	}
 
 	@Override
 	public void caseDivExpr(DivExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		if (i2.equivTo(IntConstant.v(0))) {
-			divByZero = true;
-			this.result = null;
-		} else {
-			result = i1.divide(i2);
-		}
+		binop(v, DIV);
 	}
 
 	@Override
 	public void caseDynamicInvokeExpr(DynamicInvokeExpr v) {
 		// Conservatively ignore this case.
-		this.result = null;
+		unknown();
 	}
 
 	@Override
 	public void caseEqExpr(EqExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		if (c1 instanceof NumericConstant && c2 instanceof NumericConstant) {
-			NumericConstant i1 = (NumericConstant) c1;
-			NumericConstant i2 = (NumericConstant) c2;
-			result = i1.equalEqual(i2);
-		}
+		binop(v, EQ);
 	}
 
 	@Override
 	public void caseGeExpr(GeExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		result = i1.greaterThanOrEqual(i2);
+		binop(v, GE);
 	}
 
 	@Override
 	public void caseGtExpr(GtExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		result = i1.greaterThan(i2);
+		binop(v, GT);
 	}
 
 	@Override
 	public void caseInstanceOfExpr(InstanceOfExpr v) {
 		// Conservatively ignore this case.
-		this.result = null;
+		unknown();
 	}
 
 	@Override
 	public void caseInterfaceInvokeExpr(InterfaceInvokeExpr v) {
 		// Conservatively ignore this case.
-		this.result = null;
+		unknown();
 	}
 
 	@Override
 	public void caseLeExpr(LeExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		result = i1.lessThanOrEqual(i2);
+		binop(v, LE);
 	}
 
 	@Override
 	public void caseLengthExpr(LengthExpr v) {
 		// Conservatively ignore this case.
-		this.result = null;
+		unknown();
 	}
 
 	@Override
 	public void caseLtExpr(LtExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		result = i1.lessThan(i2);
+		binop(v, LT);
 	}
 
 	@Override
 	public void caseMulExpr(MulExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		result = i1.multiply(i2);
+		binop(v, MUL);
 	}
 
 	@Override
 	public void caseNeExpr(NeExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		if (c1 instanceof NumericConstant && c2 instanceof NumericConstant) {
-			NumericConstant i1 = (NumericConstant) c1;
-			NumericConstant i2 = (NumericConstant) c2;
-			result = i1.notEqual(i2);
-		}
+		binop(v, NE);
 	}
 
 	@Override
 	public void caseNegExpr(NegExpr v) {
 		v.getOp().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		if (c1 == null) {
-			this.result = null;
-			return;
+		switch (kind) {
+		case INT:
+			setInt(-(int) longValue);
+			break;
+		case LONG:
+			setLong(-longValue);
+			break;
+		case FLOAT:
+		case DOUBLE:
+			doubleValue = -doubleValue;
+			break;
+		default:
+			unknown();
 		}
-
-		assert c1 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		result = i1.negate();
 	}
 
 	@Override
 	public void caseNewArrayExpr(NewArrayExpr v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		// Conservatively ignore this case.
+		unknown();
 	}
 
 	@Override
 	public void caseNewExpr(NewExpr v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		// Conservatively ignore this case.
+		unknown();
 	}
 
 	@Override
 	public void caseNewMultiArrayExpr(NewMultiArrayExpr v) {
-		throw new UnsupportedOperationException();
+		// Conservatively ignore this case.
+		unknown();
 	}
 
 	@Override
 	public void caseOrExpr(OrExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof ArithmeticConstant;
-		assert c2 instanceof ArithmeticConstant;
-		ArithmeticConstant i1 = (ArithmeticConstant) c1;
-		ArithmeticConstant i2 = (ArithmeticConstant) c2;
-		result = i1.or(i2);
+		binop(v, OR);
 	}
 
 	@Override
 	public void caseRemExpr(RemExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		if (i2.equivTo(IntConstant.v(0))) {
-			divByZero = true;
-			this.result = null;
-		} else {
-			result = i1.remainder(i2);
-		}
+		binop(v, REM);
 	}
 
 	@Override
 	public void caseShlExpr(ShlExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof ArithmeticConstant;
-		assert c2 instanceof ArithmeticConstant;
-		ArithmeticConstant i1 = (ArithmeticConstant) c1;
-		ArithmeticConstant i2 = (ArithmeticConstant) c2;
-		result = i1.shiftLeft(i2);
+		binop(v, SHL);
 	}
 
 	@Override
 	public void caseShrExpr(ShrExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof ArithmeticConstant;
-		assert c2 instanceof ArithmeticConstant;
-		ArithmeticConstant i1 = (ArithmeticConstant) c1;
-		ArithmeticConstant i2 = (ArithmeticConstant) c2;
-		result = i1.shiftRight(i2);
+		binop(v, SHR);
 	}
 
 	@Override
 	public void caseSpecialInvokeExpr(SpecialInvokeExpr v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		// Conservatively ignore this case.
+		unknown();
 	}
 
 	@Override
 	public void caseStaticInvokeExpr(StaticInvokeExpr v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		// Conservatively ignore this case.
+		unknown();
 	}
 
 	@Override
 	public void caseSubExpr(SubExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof NumericConstant;
-		assert c2 instanceof NumericConstant;
-		NumericConstant i1 = (NumericConstant) c1;
-		NumericConstant i2 = (NumericConstant) c2;
-		result = i1.subtract(i2);
+		binop(v, SUB);
 	}
 
 	@Override
 	public void caseUshrExpr(UshrExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof ArithmeticConstant;
-		assert c2 instanceof ArithmeticConstant;
-		ArithmeticConstant i1 = (ArithmeticConstant) c1;
-		ArithmeticConstant i2 = (ArithmeticConstant) c2;
-		result = i1.unsignedShiftRight(i2);
+		binop(v, USHR);
 	}
 
 	@Override
 	public void caseVirtualInvokeExpr(VirtualInvokeExpr v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		// Conservatively ignore this case.
+		unknown();
 	}
 
 	@Override
 	public void caseXorExpr(XorExpr v) {
-		v.getOp1().apply(this);
-		Constant c1 = this.result;
-		this.result = null;
-		v.getOp2().apply(this);
-		Constant c2 = this.result;
-		this.result = null;
-		if (c1 == null || c2 == null) {
-			this.result = null;
-			return;
-		}
-
-		assert c1 instanceof ArithmeticConstant;
-		assert c2 instanceof ArithmeticConstant;
-		ArithmeticConstant i1 = (ArithmeticConstant) c1;
-		ArithmeticConstant i2 = (ArithmeticConstant) c2;
-		result = i1.xor(i2);
+		binop(v, XOR);
 	}
 
 	// ////////////////////////////////////
@@ -516,84 +610,98 @@ public class CPExprEval extends ExprVisitor {
 
 	@Override
 	public void caseDoubleConstant(DoubleConstant v) {
-		this.result = v;
+		setReal(DOUBLE, v.value);
 	}
 
 	@Override
 	public void caseFloatConstant(FloatConstant v) {
-		this.result = v;
+		setReal(FLOAT, v.value);
 	}
 
 	@Override
 	public void caseIntConstant(IntConstant v) {
-		this.result = v;
+		setInt(v.value);
 	}
 
 	@Override
 	public void caseLongConstant(LongConstant v) {
-		this.result = v;
+		setLong(v.value);
 	}
 
 	@Override
 	public void caseNullConstant(NullConstant v) {
-		this.result = v;
+		setOther(v);
 	}
 
 	@Override
 	public void caseStringConstant(StringConstant v) {
-		this.result = v;
+		setOther(v);
 	}
 
 	@Override
 	public void caseClassConstant(ClassConstant v) {
-		this.result = v;
+		setOther(v);
 	}
 
 	@Override
 	public void defaultCase(Object object) {
-		this.result = null;
+		unknown();
 	}
 
 	@Override
 	public void caseArrayRef(ArrayRef v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		unknown();
 	}
 
 	@Override
 	public void caseStaticFieldRef(StaticFieldRef v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		unknown();
 	}
 
 	@Override
 	public void caseInstanceFieldRef(InstanceFieldRef v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		unknown();
 	}
 
 	@Override
 	public void caseParameterRef(ParameterRef v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		unknown();
 	}
 
 	@Override
 	public void caseCaughtExceptionRef(CaughtExceptionRef v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		unknown();
 	}
 
 	@Override
 	public void caseThisRef(ThisRef v) {
-		throw new Error("Unexpected value type: "
-				+ v.getClass().getSimpleName());
+		unknown();
 	}
 
+	/**
+	 * Reads the constant of the given local from the state, without
+	 * dispatching on the constant.
+	 */
 	@Override
 	public void caseLocal(Local l) {
-		this.result = input.getConstantForVar(l);
-		assert this.result != null;
+		Constant c = input.getConstantForVar(l);
+		if (c instanceof IntConstant)
+			setInt(((IntConstant) c).value);
+		else if (c instanceof LongConstant)
+			setLong(((LongConstant) c).value);
+		else if (c instanceof FloatConstant)
+			setReal(FLOAT, ((FloatConstant) c).value);
+		else if (c instanceof DoubleConstant)
+			setReal(DOUBLE, ((DoubleConstant) c).value);
+		else if (c != null)
+			setOther(c);
+		else
+			unknown();
+	}
+
+	private void setOther(Constant c) {
+		kind = OTHER;
+		otherValue = c;
 	}
 
 	// ///////////////////////////////////
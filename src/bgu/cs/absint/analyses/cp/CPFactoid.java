@@ -1,5 +1,7 @@
 package bgu.cs.absint.analyses.cp;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import soot.Local;
@@ -29,6 +31,14 @@ public class CPFactoid extends SootFactoid {
 
 	@Override
 	public int hashCode() {
+		return hashCode(lhs, rhs);
+	}
+
+	/**
+	 * Returns the hash code of the factoid {@code lhs=rhs} without creating
+	 * it.
+	 */
+	public static int hashCode(Local lhs, Constant rhs) {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + lhs.hashCode();
@@ -47,6 +57,11 @@ public class CPFactoid extends SootFactoid {
 		return lhs + "=" + rhs;
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Collections.singletonList(lhs);
+	}
+
 	@Override
 	public void addVarsTo(Set<Local> c) {
 		c.add(lhs);
@@ -1,9 +1,9 @@
 package bgu.cs.absint.analyses.cp;
 
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.NoSuchElementException;
 
 import soot.Local;
 import soot.jimple.Constant;
@@ -13,12 +13,27 @@ import bgu.cs.absint.constructor.ConjunctiveState;
  * A set of varToFactoid of the form {@code x=c} for a local variable 'x' and a
  * constant 'c'. There is at most one factoid for any given variable. The
  * (symbolic) meaning of a state is given by the conjunction of the
- * varToFactoid.
+ * varToFactoid.<br>
+ * The factoids are kept in an open-addressing hash table with linear probing,
+ * keyed by the numbers of the locals (see {@link Local#getNumber()}), so that
+ * looking up, adding and removing the constant of a variable take constant
+ * time. The hash code of the factoid set is maintained along with the table.
+ * The factoids themselves are created on demand by the view returned from
+ * {@link #getFactoids()}.
  * 
  * @author romanm
  * 
  */
 public class CPState extends ConjunctiveState<Local, CPFactoid> {
+	private static final Local[] noLocals = new Local[0];
+	private static final int[] noNumbers = new int[0];
+	private static final Constant[] noConstants = new Constant[0];
+
+	/**
+	 * The number of slots of a table when the first factoid is added.
+	 */
+	private static final int INITIAL_CAPACITY = 8;
+
 	/**
 	 * An immutable bottom element.
 	 */
@@ -28,11 +43,6 @@ public class CPState extends ConjunctiveState<Local, CPFactoid> {
 			throw new Error("Attempt to modify " + toString());
 		}
 
-		@Override
-		public boolean add(CPFactoid factoid) {
-			throw new Error("Attempt to modify " + toString());
-		}
-
 		@Override
 		public boolean removeVar(Local lhs) {
 			throw new Error("Attempt to modify " + toString());
@@ -48,11 +58,6 @@ public class CPState extends ConjunctiveState<Local, CPFactoid> {
 			throw new Error("Attempt to modify " + toString());
 		}
 
-		@Override
-		public boolean add(CPFactoid factoid) {
-			throw new Error("Attempt to modify " + toString());
-		}
-
 		@Override
 		public boolean removeVar(Local lhs) {
 			throw new Error("Attempt to modify " + toString());
@@ -60,12 +65,42 @@ public class CPState extends ConjunctiveState<Local, CPFactoid> {
 	};
 
 	/**
-	 * An element is a set of varToFactoid.
+	 * The local of each slot, or null for an empty slot. The number of slots
+	 * is a power of 2.
+	 */
+	protected Local[] locals;
+
+	/**
+	 * The number of the local of each slot.
+	 */
+	protected int[] numbers;
+
+	/**
+	 * The constant of the local of each slot.
+	 */
+	protected Constant[] constants;
+
+	/**
+	 * The number of factoids.
+	 */
+	protected int size;
+
+	/**
+	 * The hash code of the set of factoids.
+	 */
+	protected int hash;
+
+	/**
+	 * Created on demand by {@link #getFactoids()}.
 	 */
-	protected final Set<CPFactoid> factoids;
+	private FactoidView view;
 
 	public CPState() {
-		factoids = new HashSet<>();
+		// The factoid set of the base class is not used.
+		super(false);
+		this.locals = noLocals;
+		this.numbers = noNumbers;
+		this.constants = noConstants;
 	}
 
 	@Override
@@ -76,20 +111,58 @@ public class CPState extends ConjunctiveState<Local, CPFactoid> {
 			return new CPState(this);
 	}
 
+	/**
+	 * Returns a view of the factoids, or null for the bottom element.
+	 */
 	@Override
 	public Collection<CPFactoid> getFactoids() {
-		return factoids;
+		if (this == bottom)
+			return null;
+		if (view == null)
+			view = new FactoidView();
+		return view;
+	}
+
+	/**
+	 * Returns the number of factoids.
+	 */
+	public int size() {
+		return size;
 	}
 
+	/**
+	 * Associates the given constant with the given variable, replacing the
+	 * constant previously associated with it, if any.
+	 * 
+	 * @return true if the state has changed.
+	 */
 	public boolean addFactoid(Local lhs, Constant rhs) {
-		assert getConstantForVar(lhs) == null;
-		return factoids.add(new CPFactoid(lhs, rhs));
+		int slot = find(lhs.getNumber());
+		if (slot >= 0) {
+			if (constants[slot].equivTo(rhs))
+				return false;
+			hash += CPFactoid.hashCode(lhs, rhs)
+					- CPFactoid.hashCode(lhs, constants[slot]);
+			constants[slot] = rhs;
+			return true;
+		}
+
+		if (2 * (size + 1) > locals.length) {
+			resize(locals.length == 0 ? INITIAL_CAPACITY : 2 * locals.length);
+			slot = find(lhs.getNumber());
+		}
+		slot = -1 - slot;
+		locals[slot] = lhs;
+		numbers[slot] = lhs.getNumber();
+		constants[slot] = rhs;
+		++size;
+		hash += CPFactoid.hashCode(lhs, rhs);
+		return true;
 	}
 
 	@Override
 	public boolean add(CPFactoid factoid) {
-		assert getConstantForVar(factoid.lhs) == null;
-		return factoids.add(factoid);
+		return addFactoid(factoid.lhs, factoid.rhs);
 	}
 
 	/**
@@ -102,11 +175,16 @@ public class CPState extends ConjunctiveState<Local, CPFactoid> {
 	 *         is none.
 	 */
 	public Constant getConstantForVar(Local lhs) {
-		for (CPFactoid factoid : factoids) {
-			if (factoid.lhs.equals(lhs))
-				return factoid.rhs;
-		}
-		return null;
+		int slot = find(lhs.getNumber());
+		return slot >= 0 ? constants[slot] : null;
+	}
+
+	/**
+	 * Checks whether a constant is associated with the given variable.
+	 */
+	@Override
+	public boolean hasVar(Local var) {
+		return find(var.getNumber()) >= 0;
 	}
 
 	/**
@@ -117,44 +195,226 @@ public class CPState extends ConjunctiveState<Local, CPFactoid> {
 	 */
 	@Override
 	public boolean removeVar(Local lhs) {
-		for (Iterator<CPFactoid> iter = factoids.iterator(); iter.hasNext();) {
-			CPFactoid factoid = iter.next();
-			if (factoid.hasVar(lhs)) {
-				iter.remove();
-				return true;
+		int slot = find(lhs.getNumber());
+		if (slot < 0)
+			return false;
+		hash -= CPFactoid.hashCode(lhs, constants[slot]);
+		--size;
+
+		// Shift back the following entries of the probe sequence, so that no
+		// entry becomes unreachable from its home slot.
+		int mask = locals.length - 1;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (locals[next] == null)
+				break;
+			int home = home(numbers[next], mask);
+			// Move the entry unless its home lies cyclically in (slot, next].
+			if (slot <= next ? (home <= slot || home > next)
+					: (home <= slot && home > next)) {
+				locals[slot] = locals[next];
+				numbers[slot] = numbers[next];
+				constants[slot] = constants[next];
+				slot = next;
 			}
 		}
-		return false;
+		locals[slot] = null;
+		constants[slot] = null;
+		return true;
 	}
 
 	/**
 	 * Checks whether this state is equivalent to bottom. That is, if it
 	 * contains two facts 'x=a' and 'x=b' where 'a' and 'b' are different
-	 * constants.
+	 * constants. Since a state holds at most one constant for each variable,
+	 * this is never the case.
 	 */
 	public boolean equivToBottom() {
-		if (this == bottom)
+		return false;
+	}
+
+	/**
+	 * Checks whether each factoid of the given state is in this state.
+	 */
+	public boolean containsAll(CPState other) {
+		if (other.size > size)
 			return false;
-		boolean result = true;
-		for (CPFactoid factoid1 : this) {
-			for (CPFactoid factoid2 : this) {
-				if (factoid1 != factoid2 && factoid1.lhs.equivTo(factoid2.lhs)) {
-					result = false;
-					break;
+		for (int i = 0; i < other.locals.length; ++i) {
+			Local var = other.locals[i];
+			if (var != null) {
+				Constant c = getConstantForVar(var);
+				if (c == null || !c.equivTo(other.constants[i]))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of factoids common to this state and the given one,
+	 * or -1 if the states associate some variable with different constants.
+	 */
+	public int countCommon(CPState other) {
+		CPState smaller = size <= other.size ? this : other;
+		CPState larger = smaller == this ? other : this;
+		int result = 0;
+		for (int i = 0; i < smaller.locals.length; ++i) {
+			Local var = smaller.locals[i];
+			if (var != null) {
+				Constant c = larger.getConstantForVar(var);
+				if (c != null) {
+					if (!c.equivTo(smaller.constants[i]))
+						return -1;
+					++result;
 				}
 			}
 		}
 		return result;
 	}
 
+	/**
+	 * Constructs an empty state with room for the given number of factoids.
+	 */
+	protected CPState(int expectedSize) {
+		super(false);
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < 2 * expectedSize)
+			capacity *= 2;
+		this.locals = new Local[capacity];
+		this.numbers = new int[capacity];
+		this.constants = new Constant[capacity];
+	}
+
 	protected CPState(CPState copyFrom) {
-		factoids = new HashSet<>(copyFrom.factoids);
+		super(false);
+		this.locals = copyFrom.locals.clone();
+		this.numbers = copyFrom.numbers.clone();
+		this.constants = copyFrom.constants.clone();
+		this.size = copyFrom.size;
+		this.hash = copyFrom.hash;
 	}
 
 	/**
 	 * A constructor just for initializing varToFactoid to null.
 	 */
 	protected CPState(boolean dummy) {
-		this.factoids = null;
+		super(false);
+		this.locals = noLocals;
+		this.numbers = noNumbers;
+		this.constants = noConstants;
+	}
+
+	/**
+	 * Returns the slot of the local with the given number if it is in the
+	 * table, and otherwise {@code -1-s} for the empty slot s where it would be
+	 * added.
+	 */
+	protected final int find(int number) {
+		if (locals.length == 0)
+			return -1;
+		int mask = locals.length - 1;
+		int slot = home(number, mask);
+		while (locals[slot] != null) {
+			if (numbers[slot] == number)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1 - slot;
+	}
+
+	private static int home(int number, int mask) {
+		int h = number * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void resize(int capacity) {
+		Local[] oldLocals = locals;
+		int[] oldNumbers = numbers;
+		Constant[] oldConstants = constants;
+		locals = new Local[capacity];
+		numbers = new int[capacity];
+		constants = new Constant[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldLocals.length; ++i) {
+			if (oldLocals[i] != null) {
+				int slot = home(oldNumbers[i], mask);
+				while (locals[slot] != null)
+					slot = (slot + 1) & mask;
+				locals[slot] = oldLocals[i];
+				numbers[slot] = oldNumbers[i];
+				constants[slot] = oldConstants[i];
+			}
+		}
+	}
+
+	/**
+	 * A read-only set view of the factoids of the state.
+	 * 
+	 * @author romanm
+	 */
+	protected class FactoidView extends AbstractSet<CPFactoid> {
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof CPFactoid))
+				return false;
+			CPFactoid factoid = (CPFactoid) o;
+			Constant c = getConstantForVar(factoid.lhs);
+			return c != null && c.equivTo(factoid.rhs);
+		}
+
+		@Override
+		public boolean containsAll(Collection<?> c) {
+			if (c instanceof CPState.FactoidView)
+				return CPState.this.containsAll(((FactoidView) c).getState());
+			return super.containsAll(c);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public Iterator<CPFactoid> iterator() {
+			return new Iterator<CPFactoid>() {
+				private int slot = advance(0);
+
+				@Override
+				public boolean hasNext() {
+					return slot < locals.length;
+				}
+
+				@Override
+				public CPFactoid next() {
+					if (slot >= locals.length)
+						throw new NoSuchElementException();
+					CPFactoid result = new CPFactoid(locals[slot],
+							constants[slot]);
+					slot = advance(slot + 1);
+					return result;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+				private int advance(int from) {
+					while (from < locals.length && locals[from] == null)
+						++from;
+					return from;
+				}
+			};
+		}
+
+		private CPState getState() {
+			return CPState.this;
+		}
 	}
 }
\ No newline at end of file
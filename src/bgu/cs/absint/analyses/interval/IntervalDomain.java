@@ -2,7 +2,7 @@ package bgu.cs.absint.analyses.interval;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
+import java.util.List;
 
 import soot.Local;
 import soot.Unit;
@@ -13,7 +13,6 @@ import soot.jimple.Constant;
 import soot.jimple.Expr;
 import soot.jimple.IdentityStmt;
 import soot.jimple.IfStmt;
-import soot.jimple.IntConstant;
 import soot.jimple.NumericConstant;
 import soot.jimple.ParameterRef;
 import soot.jimple.ThisRef;
@@ -21,7 +20,10 @@ import bgu.cs.absint.AssumeTransformer;
 import bgu.cs.absint.ComposedOperation;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.Ordering;
+import bgu.cs.absint.ThresholdWidening;
 import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.WideningThresholds;
 import bgu.cs.absint.constructor.EqualityRefiner;
 import bgu.cs.absint.soot.TransformerMatcher;
 import bgu.cs.util.Pair;
@@ -34,7 +36,7 @@ import bgu.cs.util.Pair;
  * @author romanm
  */
 public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implements
-		EqualityRefiner<Local> {
+		EqualityRefiner<Local>, ThresholdWidening {
 	/**
 	 * Singleton value.
 	 */
@@ -42,10 +44,20 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 
 	protected IntervalMatcher matcher = new IntervalMatcher();
 
+	/**
+	 * The constants that unstable bounds are widened to.
+	 */
+	protected WideningThresholds thresholds = WideningThresholds.NONE;
+
 	public static final IntervalDomain v() {
 		return v;
 	}
 
+	@Override
+	public void setThresholds(WideningThresholds thresholds) {
+		this.thresholds = thresholds;
+	}
+
 	@Override
 	public IntervalState getBottom() {
 		return IntervalState.bottom;
@@ -56,133 +68,174 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		return IntervalState.top;
 	}
 
+	/**
+	 * Takes the weaker bound of each variable. Variables bounded in only one
+	 * of the states are unbounded in the result.
+	 */
 	@Override
 	public IntervalState ub(IntervalState first, IntervalState second) {
-		if (first == IntervalState.bottom) {
+		if (first == second || first == IntervalState.bottom) {
 			return second;
 		} else if (second == IntervalState.bottom) {
 			return first;
 		} else {
-			IntervalState result = new IntervalState();
-			Set<Local> vars = first.getVars();
-			vars.addAll(second.getVars());
-
-			for (Local var : vars) {
-				NumericConstant lb1 = first.getLB(var);
-				NumericConstant lb2 = second.getLB(var);
-				NumericConstant jointLB;
-				if (lb1 == null || lb2 == null)
-					jointLB = null;
-				else if (lb1.lessThanOrEqual(lb2).equivTo(IntConstant.v(1)))
-					jointLB = lb1;
-				else
-					jointLB = lb2;
-				if (jointLB != null)
-					result.addLBFactoid(var, jointLB);
-
-				NumericConstant ub1 = first.getUB(var);
-				NumericConstant ub2 = second.getUB(var);
-				NumericConstant jointUB;
-				if (ub1 == null || ub2 == null)
-					jointUB = null;
-				else if (ub1.lessThanOrEqual(ub2).equivTo(IntConstant.v(1)))
-					jointUB = ub2;
-				else
-					jointUB = ub1;
-				if (jointUB != null)
-					result.addUBFactoid(var, jointUB);
+			int base = Math.max(first.base, second.base);
+			int end = Math.min(first.base + first.lo.length, second.base
+					+ second.lo.length);
+			IntervalState result = new IntervalState(base, Math.max(end - base,
+					0));
+			for (int i = 0, i1 = base - first.base, i2 = base - second.base; i < result.lo.length; ++i, ++i1, ++i2) {
+				result.lo[i] = Math.min(first.lo[i1], second.lo[i2]);
+				result.hi[i] = Math.max(first.hi[i1], second.hi[i2]);
+				result.locals[i] = first.locals[i1] != null ? first.locals[i1]
+						: second.locals[i2];
 			}
 			return result;
 		}
 	}
 
+	/**
+	 * Takes the weakest bounds of each variable over all states in a single
+	 * pass. Only the variables bounded in every non-bottom state remain
+	 * bounded.
+	 */
+	@Override
+	public IntervalState ubAll(List<IntervalState> elems) {
+		IntervalState first = null;
+		boolean distinct = false;
+		int base = Integer.MIN_VALUE;
+		int end = Integer.MAX_VALUE;
+		for (int k = 0; k < elems.size(); ++k) {
+			IntervalState elem = elems.get(k);
+			if (elem == IntervalState.bottom)
+				continue;
+			if (first == null)
+				first = elem;
+			else if (elem != first)
+				distinct = true;
+			base = Math.max(base, elem.base);
+			end = Math.min(end, elem.base + elem.lo.length);
+		}
+		if (first == null)
+			return IntervalState.bottom;
+		else if (!distinct)
+			return first;
+
+		if (end <= base)
+			return new IntervalState();
+		int length = end - base;
+		IntervalState result = new IntervalState(base, length);
+		System.arraycopy(first.lo, base - first.base, result.lo, 0, length);
+		System.arraycopy(first.hi, base - first.base, result.hi, 0, length);
+		System.arraycopy(first.locals, base - first.base, result.locals, 0,
+				length);
+		for (int k = 0; k < elems.size(); ++k) {
+			IntervalState elem = elems.get(k);
+			if (elem == IntervalState.bottom || elem == first)
+				continue;
+			for (int i = 0, i1 = base - elem.base; i < length; ++i, ++i1) {
+				if (elem.lo[i1] < result.lo[i])
+					result.lo[i] = elem.lo[i1];
+				if (elem.hi[i1] > result.hi[i])
+					result.hi[i] = elem.hi[i1];
+				if (result.locals[i] == null)
+					result.locals[i] = elem.locals[i1];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Takes the stronger bound of each variable.
+	 */
 	@Override
 	public IntervalState lb(IntervalState first, IntervalState second) {
 		if (first == IntervalState.bottom || second == IntervalState.bottom) {
 			return IntervalState.bottom;
 		} else {
-			IntervalState result = new IntervalState();
-			Set<Local> vars = first.getVars();
-			vars.addAll(second.getVars());
-
-			for (Local var : vars) {
-				// Handle the lower-bound.
-				NumericConstant lb1 = first.getLB(var);
-				NumericConstant lb2 = second.getLB(var);
-				NumericConstant jointLB;
-				if (lb1 == null) {
-					jointLB = lb2;
-				} else if (lb2 == null) {
-					jointLB = lb1;
-				} else {
-					if (lb1.lessThanOrEqual(lb2).equivTo(IntConstant.v(1)))
-						jointLB = lb2;
-					else
-						jointLB = lb1;
-				}
-				if (jointLB != null)
-					result.addLBFactoid(var, jointLB);
-
-				// Handle the upper-bound.
-				NumericConstant ub1 = first.getUB(var);
-				NumericConstant ub2 = second.getUB(var);
-				NumericConstant jointUB;
-
-				if (ub1 == null) {
-					jointUB = ub2;
-				} else if (ub2 == null) {
-					jointUB = ub1;
-				} else {
-					if (ub1.lessThanOrEqual(ub2).equivTo(IntConstant.v(1)))
-						jointUB = ub1;
-					else
-						jointUB = ub2;
-				}
-
-				if (jointUB != null)
-					result.addUBFactoid(var, jointUB);
+			IntervalState result = union(first, second);
+			for (int i = 0, i2 = second.base - result.base; i < second.lo.length; ++i, ++i2) {
+				if (second.lo[i] > result.lo[i2])
+					result.lo[i2] = second.lo[i];
+				if (second.hi[i] < result.hi[i2])
+					result.hi[i2] = second.hi[i];
+				if (result.lo[i2] > result.hi[i2])
+					return getBottom();
 			}
-			if (!result.isConsistent())
-				return getBottom();
-			else
-				return result;
+			return result;
 		}
 	}
 
 	@Override
 	public boolean leq(IntervalState first, IntervalState second) {
-		if (first == IntervalState.bottom) {
+		if (first == second || first == IntervalState.bottom) {
 			return true;
 		} else if (second == IntervalState.bottom) {
 			// first != bottom
 			return false;
 		} else {
-			Set<Local> vars = first.getVars();
-			vars.addAll(second.getVars());
-			for (Local var : vars) {
-				// Handle the lower-bounds.
-				NumericConstant lb1 = first.getLB(var);
-				NumericConstant lb2 = second.getLB(var);
-				if (lb2 == null || lb1 != null
-						&& lb2.lessThanOrEqual(lb1).equivTo(IntConstant.v(1))) {
-				} else {
+			// Only the variables bounded in the second state can violate the
+			// order.
+			int firstEnd = first.base + first.lo.length;
+			for (int i = 0, number = second.base; i < second.lo.length; ++i, ++number) {
+				long lo2 = second.lo[i];
+				long hi2 = second.hi[i];
+				if (lo2 == IntervalState.NEG_INF && hi2 == IntervalState.POS_INF)
+					continue;
+				if (number < first.base || number >= firstEnd)
 					return false;
-				}
-
-				// Handle the upper-bounds.
-				NumericConstant ub1 = first.getUB(var);
-				NumericConstant ub2 = second.getUB(var);
-				if (ub2 == null || ub1 != null
-						&& ub1.lessThanOrEqual(ub2).equivTo(IntConstant.v(1))) {
-				} else {
+				int i1 = number - first.base;
+				if (first.lo[i1] < lo2 || first.hi[i1] > hi2)
 					return false;
-				}
-
 			}
 			return true;
 		}
 	}
 
+	/**
+	 * Compares the bounds of the variables bounded in either state in a single
+	 * pass, where a variable outside the range of a state is unbounded.
+	 */
+	@Override
+	public Ordering compare(IntervalState first, IntervalState second) {
+		if (first == second) {
+			return Ordering.EQUAL;
+		} else if (first == IntervalState.bottom) {
+			return second == IntervalState.bottom ? Ordering.EQUAL
+					: Ordering.LESS;
+		} else if (second == IntervalState.bottom) {
+			return Ordering.GREATER;
+		} else {
+			boolean leq = true;
+			boolean geq = true;
+			int firstEnd = first.base + first.lo.length;
+			int secondEnd = second.base + second.lo.length;
+			int end = Math.max(firstEnd, secondEnd);
+			for (int number = Math.min(first.base, second.base); number < end
+					&& (leq || geq); ++number) {
+				long lo1 = IntervalState.NEG_INF, hi1 = IntervalState.POS_INF;
+				if (number >= first.base && number < firstEnd) {
+					lo1 = first.lo[number - first.base];
+					hi1 = first.hi[number - first.base];
+				}
+				long lo2 = IntervalState.NEG_INF, hi2 = IntervalState.POS_INF;
+				if (number >= second.base && number < secondEnd) {
+					lo2 = second.lo[number - second.base];
+					hi2 = second.hi[number - second.base];
+				}
+				if (lo1 < lo2 || hi1 > hi2)
+					leq = false;
+				if (lo2 < lo1 || hi2 > hi1)
+					geq = false;
+			}
+			return Ordering.of(leq, geq);
+		}
+	}
+
+	/**
+	 * Relaxes the bounds that grow from the first state to the second one to
+	 * the next threshold, or drops them if there is none.
+	 */
 	@Override
 	public IntervalState widen(IntervalState first, IntervalState second) {
 		if (first == IntervalState.bottom) {
@@ -190,47 +243,40 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		} else if (second == IntervalState.bottom) {
 			return first;
 		} else {
-			IntervalState result = new IntervalState();
-			Set<Local> vars = first.getVars();
-			vars.addAll(second.getVars());
-
-			for (Local var : vars) {
-				// Handle the lower-bound.
-				NumericConstant lb1 = first.getLB(var);
-				NumericConstant lb2 = second.getLB(var);
-				NumericConstant jointLB;
-				if (lb1 == null || lb2 == null)
-					jointLB = null;
-				else if (lb1.lessThanOrEqual(lb2).equivTo(IntConstant.v(1))) {
-					jointLB = lb1;
+			int base = Math.max(first.base, second.base);
+			int end = Math.min(first.base + first.lo.length, second.base
+					+ second.lo.length);
+			IntervalState result = new IntervalState(base, Math.max(end - base,
+					0));
+			for (int i = 0, i1 = base - first.base, i2 = base - second.base; i < result.lo.length; ++i, ++i1, ++i2) {
+				Local var = first.locals[i1] != null ? first.locals[i1]
+						: second.locals[i2];
+				result.locals[i] = var;
+				// A bound without a threshold, or with a threshold outside the
+				// range of the type, is dropped.
+				if (first.lo[i1] <= second.lo[i2]) {
+					result.lo[i] = first.lo[i1];
 				} else {
-					// widen the lower-bound to -infinity by
-					// dropping the lower-bound constraint.
-					jointLB = null;
+					long lo = thresholds.previous(second.lo[i2]);
+					if (var != null && lo >= IntervalState.minValue(var))
+						result.lo[i] = lo;
 				}
-				if (jointLB != null)
-					result.addLBFactoid(var, jointLB);
-
-				// Handle the upper-bound.
-				NumericConstant ub1 = first.getUB(var);
-				NumericConstant ub2 = second.getUB(var);
-				NumericConstant jointUB;
-				if (ub1 == null || ub2 == null)
-					jointUB = null;
-				else if (ub2.lessThanOrEqual(ub1).equivTo(IntConstant.v(1))) {
-					jointUB = ub1;
+				if (second.hi[i2] <= first.hi[i1]) {
+					result.hi[i] = first.hi[i1];
 				} else {
-					// widen the upper-bound to infinity by
-					// dropping the upper-bound constraint.
-					jointUB = null;
+					long hi = thresholds.next(second.hi[i2]);
+					if (var != null && hi <= IntervalState.maxValue(var))
+						result.hi[i] = hi;
 				}
-				if (jointUB != null)
-					result.addUBFactoid(var, jointUB);
 			}
 			return result;
 		}
 	}
 
+	/**
+	 * Refines only the missing bounds of the first state by the bounds of the
+	 * second state.
+	 */
 	@Override
 	public IntervalState narrow(IntervalState first, IntervalState second) {
 		if (first == IntervalState.bottom) {
@@ -238,37 +284,69 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		} else if (second == IntervalState.bottom) {
 			return first;
 		} else {
-			IntervalState result = new IntervalState();
-			Set<Local> vars = first.getVars();
-			vars.addAll(second.getVars());
-
-			for (Local var : vars) {
-				// Handle the lower-bound.
-				NumericConstant lb1 = first.getLB(var);
-				NumericConstant lb2 = second.getLB(var);
-				NumericConstant jointLB;
-				if (lb1 == null)
-					jointLB = lb2;
-				else
-					jointLB = lb1;
-				if (jointLB != null)
-					result.addLBFactoid(var, jointLB);
-
-				// Handle the upper-bound.
-				NumericConstant ub1 = first.getUB(var);
-				NumericConstant ub2 = second.getUB(var);
-				NumericConstant jointUB;
-				if (ub1 == null)
-					jointUB = ub2;
-				else
-					jointUB = ub1;
-				if (jointUB != null)
-					result.addUBFactoid(var, jointUB);
+			IntervalState result = union(first, second);
+			for (int i = 0, i2 = second.base - result.base; i < second.lo.length; ++i, ++i2) {
+				if (result.lo[i2] == IntervalState.NEG_INF)
+					result.lo[i2] = second.lo[i];
+				if (result.hi[i2] == IntervalState.POS_INF)
+					result.hi[i2] = second.hi[i];
 			}
 			return result;
 		}
 	}
 
+	/**
+	 * Returns a copy of the first state whose arrays also cover the locals of
+	 * the second state.
+	 */
+	protected static IntervalState union(IntervalState first,
+			IntervalState second) {
+		if (second.lo.length == 0)
+			return first.copy();
+		if (first.lo.length == 0) {
+			IntervalState result = new IntervalState(second.base,
+					second.lo.length);
+			System.arraycopy(second.locals, 0, result.locals, 0,
+					second.locals.length);
+			return result;
+		}
+		int base = Math.min(first.base, second.base);
+		int end = Math.max(first.base + first.lo.length, second.base
+				+ second.lo.length);
+		IntervalState result = new IntervalState(base, end - base);
+		int offset = first.base - base;
+		System.arraycopy(first.lo, 0, result.lo, offset, first.lo.length);
+		System.arraycopy(first.hi, 0, result.hi, offset, first.hi.length);
+		System.arraycopy(first.locals, 0, result.locals, offset,
+				first.locals.length);
+		for (int i = 0, i2 = second.base - base; i < second.locals.length; ++i, ++i2) {
+			if (result.locals[i2] == null)
+				result.locals[i2] = second.locals[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Conjoins the bounds {@code lo<=var<=hi} to the given state.
+	 *
+	 * @return The conjunction or bottom if it is unsatisfiable.
+	 */
+	protected static IntervalState assume(IntervalState input, Local var,
+			long lo, long hi) {
+		if (input == IntervalState.bottom)
+			return IntervalState.bottom;
+		lo = Math.max(lo, input.getLo(var));
+		hi = Math.min(hi, input.getHi(var));
+		if (lo > hi || lo > IntervalState.maxValue(var)
+				|| hi < IntervalState.minValue(var))
+			return IntervalState.bottom;
+		if (lo == input.getLo(var) && hi == input.getHi(var))
+			return input;
+		IntervalState result = input.copy();
+		result.setInterval(var, lo, hi);
+		return result;
+	}
+
 	@Override
 	public UnaryOperation<IntervalState> getTransformer(Unit stmt) {
 		UnaryOperation<IntervalState> vanillaTransformer = matcher
@@ -296,29 +374,12 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		// Apply the following rule: {x=a} and {x=y} implies {y=a}.
 		IntervalState result = istate.copy();
 		for (Pair<Local, Local> pair : equalities) {
-			LBFactoid firstLb = result.getLBFactoid(pair.first);
-			UBFactoid firstUb = result.getUBFactoid(pair.first);
-			LBFactoid secondLb = result.getLBFactoid(pair.second);
-			UBFactoid secondUb = result.getUBFactoid(pair.second);
-
-			IntervalState meetState = new IntervalState();
-			if (secondLb != null) {
-				LBFactoid newFirstLB = new LBFactoid(pair.first, secondLb.rhs);
-				meetState.add(newFirstLB);
-			}
-			if (secondUb != null) {
-				UBFactoid newFirstUB = new UBFactoid(pair.first, secondUb.rhs);
-				meetState.add(newFirstUB);
-			}
-			if (firstLb != null) {
-				LBFactoid newSecondLB = new LBFactoid(pair.second, firstLb.rhs);
-				meetState.add(newSecondLB);
-			}
-			if (firstUb != null) {
-				UBFactoid newSecondUB = new UBFactoid(pair.second, firstUb.rhs);
-				meetState.add(newSecondUB);
-			}
-			result = lb(result, meetState);
+			long lo = Math.max(result.getLo(pair.first),
+					result.getLo(pair.second));
+			long hi = Math.min(result.getHi(pair.first),
+					result.getHi(pair.second));
+			result = assume(result, pair.first, lo, hi);
+			result = assume(result, pair.second, lo, hi);
 		}
 		if (eq(istate, result))
 			return null;
@@ -466,71 +527,71 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		@Override
 		public IntervalState apply(IntervalState input) {
 			// Special treatment for bottom.
-			if (input.equals(IntervalState.bottom))
+			if (input == IntervalState.bottom)
 				return IntervalState.bottom;
 
-			IntervalState result = input.copy();
-			result.removeVar(lhs);
-
-			// Compute the lower and upper bounds of the addition expression,
-			// create the corresponding varToFactoid, and add them to the output
-			// state.
-			NumericConstant lbLhs = null;
-			NumericConstant ubLhs = null;
-
+			// Compute the bounds of the addition expression. Overflowing
+			// bounds are dropped.
 			Value op1 = rhs.getOp1();
 			Value op2 = rhs.getOp2();
+			long lo = add(getLo(input, op1), getLo(input, op2),
+					IntervalState.NEG_INF);
+			long hi = add(getHi(input, op1), getHi(input, op2),
+					IntervalState.POS_INF);
+			if (lo < IntervalState.minValue(lhs)
+					|| lo > IntervalState.maxValue(lhs))
+				lo = IntervalState.NEG_INF;
+			if (hi < IntervalState.minValue(lhs)
+					|| hi > IntervalState.maxValue(lhs))
+				hi = IntervalState.POS_INF;
 
-			// Handle the lower bound
-			NumericConstant c1, c2;
-			if (op1 instanceof Local) {
-				Local op1Local = (Local) op1;
-				c1 = input.getLB(op1Local);
-			} else if (op1 instanceof NumericConstant) {
-				c1 = (NumericConstant) op1;
-			} else {
-				c1 = null;
-			}
-
-			if (op2 instanceof Local) {
-				Local op2Local = (Local) op2;
-				c2 = input.getLB(op2Local);
-			} else if (op2 instanceof NumericConstant) {
-				c2 = (NumericConstant) op2;
-			} else {
-				c2 = null;
-			}
-
-			if (c1 != null && c2 != null) {
-				lbLhs = c1.add(c2);
-				result.addLBFactoid(lhs, lbLhs);
-			}
-
-			// Handle the upper bound
-			if (op1 instanceof Local) {
-				Local op1Local = (Local) op1;
-				c1 = input.getUB(op1Local);
-			} else if (op1 instanceof NumericConstant) {
-				c1 = (NumericConstant) op1;
-			} else {
-				c1 = null;
-			}
+			IntervalState result = input.copy();
+			result.setInterval(lhs, lo, hi);
+			return result;
+		}
 
-			if (op2 instanceof Local) {
-				Local op2Local = (Local) op2;
-				c2 = input.getUB(op2Local);
-			} else if (op2 instanceof NumericConstant) {
-				c2 = (NumericConstant) op2;
-			} else {
-				c2 = null;
-			}
+		/**
+		 * Returns the lower bound of a local or an integral constant operand,
+		 * and {@link IntervalState#NEG_INF} for other operands.
+		 */
+		protected static long getLo(IntervalState input, Value op) {
+			if (op instanceof Local)
+				return input.getLo((Local) op);
+			else if (op instanceof NumericConstant
+					&& IntervalState.isIntegral((NumericConstant) op))
+				return IntervalState.toLong((NumericConstant) op);
+			else
+				return IntervalState.NEG_INF;
+		}
 
-			if (c1 != null && c2 != null) {
-				ubLhs = c1.add(c2);
-				result.addUBFactoid(lhs, ubLhs);
-			}
+		/**
+		 * Returns the upper bound of a local or an integral constant operand,
+		 * and {@link IntervalState#POS_INF} for other operands.
+		 */
+		protected static long getHi(IntervalState input, Value op) {
+			if (op instanceof Local)
+				return input.getHi((Local) op);
+			else if (op instanceof NumericConstant
+					&& IntervalState.isIntegral((NumericConstant) op))
+				return IntervalState.toLong((NumericConstant) op);
+			else
+				return IntervalState.POS_INF;
+		}
 
-			return result;
+		/**
+		 * Adds two bounds, returning the given infinity if either bound is
+		 * infinite or the sum overflows.
+		 */
+		protected static long add(long c1, long c2, long inf) {
+			if (c1 == IntervalState.NEG_INF || c1 == IntervalState.POS_INF
+					|| c2 == IntervalState.NEG_INF
+					|| c2 == IntervalState.POS_INF)
+				return inf;
+			long sum = c1 + c2;
+			// Overflow iff both operands have the sign opposite to the sum.
+			if (((c1 ^ sum) & (c2 ^ sum)) < 0)
+				return inf;
+			return sum;
 		}
 	}
 
@@ -556,19 +617,11 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		@Override
 		public IntervalState apply(IntervalState input) {
 			// Special treatment for bottom.
-			if (input.equals(IntervalState.bottom))
+			if (input == IntervalState.bottom)
 				return IntervalState.bottom;
 
 			IntervalState result = input.copy();
-			result.removeVar(lhs);
-
-			NumericConstant lbRhs = input.getLB(rhs);
-			NumericConstant ubRhs = input.getUB(rhs);
-			if (lbRhs != null)
-				result.addLBFactoid(lhs, lbRhs);
-			if (ubRhs != null)
-				result.addUBFactoid(lhs, ubRhs);
-
+			result.setInterval(lhs, input.getLo(rhs), input.getHi(rhs));
 			return result;
 		}
 	}
@@ -593,14 +646,16 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		@Override
 		public IntervalState apply(IntervalState input) {
 			// Special treatment for bottom.
-			if (input.equals(IntervalState.bottom))
+			if (input == IntervalState.bottom)
 				return IntervalState.bottom;
 
-			IntervalState result = new IntervalState(input);
-			result.removeVar(lhs);
-			result.addLBFactoid(lhs, rhs);
-			result.addUBFactoid(lhs, rhs);
-
+			IntervalState result = input.copy();
+			if (IntervalState.isIntegral(rhs)) {
+				long c = IntervalState.toLong(rhs);
+				result.setInterval(lhs, c, c);
+			} else {
+				result.removeVar(lhs);
+			}
 			return result;
 		}
 	}
@@ -632,20 +687,14 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 		@Override
 		public IntervalState apply(IntervalState input) {
 			// Special treatment for bottom.
-			if (input.equals(IntervalState.bottom))
+			if (input == IntervalState.bottom)
 				return IntervalState.bottom;
 
-			IntervalState result = new IntervalState();
-			for (LBFactoid factoid : input.lbFactoids) {
-				if (!factoid.hasVar(lhs)) {
-					result.lbFactoids.add(factoid);
-				}
-			}
-			for (UBFactoid factoid : input.ubFactoids) {
-				if (!factoid.hasVar(lhs)) {
-					result.ubFactoids.add(factoid);
-				}
-			}
+			if (input.getLo(lhs) == IntervalState.NEG_INF
+					&& input.getHi(lhs) == IntervalState.POS_INF)
+				return input;
+			IntervalState result = input.copy();
+			result.removeVar(lhs);
 			return result;
 		}
 	}
@@ -664,19 +713,24 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 			AssumeTransformer<IntervalState> {
 		protected final Local lhs;
 		protected final NumericConstant rhs;
-		protected final IntervalState conditionInterval;
+		protected final long lo;
+		protected final long hi;
 
 		public AssumeLocalLtConstantTransformer(boolean polarity, Local lhs,
 				NumericConstant rhs) {
 			super(polarity);
 			this.lhs = lhs;
 			this.rhs = rhs;
-			conditionInterval = new IntervalState();
-			if (polarity)
-				conditionInterval.addUBFactoid(lhs,
-						rhs.subtract(IntConstant.v(1)));
-			else
-				conditionInterval.addLBFactoid(lhs, rhs);
+			if (!IntervalState.isIntegral(rhs)) {
+				lo = IntervalState.NEG_INF;
+				hi = IntervalState.POS_INF;
+			} else if (polarity) {
+				lo = IntervalState.NEG_INF;
+				hi = IntervalState.toLong(rhs) - 1;
+			} else {
+				lo = IntervalState.toLong(rhs);
+				hi = IntervalState.POS_INF;
+			}
 			assert !lhs.equals(rhs);
 		}
 
@@ -692,8 +746,7 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 
 		@Override
 		public IntervalState apply(IntervalState input) {
-			IntervalState result = lb(conditionInterval, input);
-			return result;
+			return assume(input, lhs, lo, hi);
 		}
 	}
 
@@ -707,19 +760,24 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 			AssumeTransformer<IntervalState> {
 		protected final Local lhs;
 		protected final NumericConstant rhs;
-		protected final IntervalState conditionInterval;
+		protected final long lo;
+		protected final long hi;
 
 		public AssumeLocalGtConstantTransformer(boolean polarity, Local lhs,
 				NumericConstant rhs) {
 			super(polarity);
 			this.lhs = lhs;
 			this.rhs = rhs;
-			conditionInterval = new IntervalState();
-
-			if (polarity)
-				conditionInterval.addLBFactoid(lhs, rhs.add(IntConstant.v(1)));
-			else
-				conditionInterval.addUBFactoid(lhs, rhs);
+			if (!IntervalState.isIntegral(rhs)) {
+				lo = IntervalState.NEG_INF;
+				hi = IntervalState.POS_INF;
+			} else if (polarity) {
+				lo = IntervalState.toLong(rhs) + 1;
+				hi = IntervalState.POS_INF;
+			} else {
+				lo = IntervalState.NEG_INF;
+				hi = IntervalState.toLong(rhs);
+			}
 
 			assert !lhs.equals(rhs);
 		}
@@ -736,8 +794,7 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 
 		@Override
 		public IntervalState apply(IntervalState input) {
-			IntervalState result = lb(conditionInterval, input);
-			return result;
+			return assume(input, lhs, lo, hi);
 		}
 	}
 
@@ -751,16 +808,11 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 			AssumeTransformer<IntervalState> {
 		protected final Local lhs;
 		protected final NumericConstant rhs;
-		protected final IntervalState conditionInterval;
-
 		public AssumeLocalEqConstantTransformer(boolean polarity, Local lhs,
 				NumericConstant rhs) {
 			super(polarity);
 			this.lhs = lhs;
 			this.rhs = rhs;
-			conditionInterval = new IntervalState();
-			conditionInterval.addLBFactoid(lhs, rhs);
-			conditionInterval.addUBFactoid(lhs, rhs);
 		}
 
 		@Override
@@ -775,25 +827,20 @@ public class IntervalDomain extends AbstractDomain<IntervalState, Unit> implemen
 
 		@Override
 		public IntervalState apply(IntervalState input) {
+			if (!IntervalState.isIntegral(rhs))
+				return input;
+			long c = IntervalState.toLong(rhs);
 			if (polarity) {
-				IntervalState result = lb(conditionInterval, input);
-				return result;
+				return assume(input, lhs, c, c);
 			} else {
-				IntervalState result = input.copy();
-				if (input.getLB(lhs) != null && input.getLB(lhs).equivTo(rhs)) {
-					// Update the lower bound by incrementing it by one.
-					IntervalState newLBInterval = new IntervalState();
-					newLBInterval.addLBFactoid(lhs, rhs.add(IntConstant.v(1)));
-					result = lb(newLBInterval, result);
-				}
-				if (input.getUB(lhs) != null && input.getUB(lhs).equivTo(rhs)) {
-					// Update the upper bound by decrementing it by one.
-					IntervalState newUBInterval = new IntervalState();
-					newUBInterval.addUBFactoid(lhs,
-							rhs.subtract(IntConstant.v(1)));
-					result = lb(newUBInterval, result);
-				}
-				return result;
+				// Exclude the constant if it is one of the bounds.
+				long lo = input.getLo(lhs);
+				long hi = input.getHi(lhs);
+				if (lo == c)
+					lo = c + 1;
+				if (hi == c)
+					hi = c - 1;
+				return assume(input, lhs, lo, hi);
 			}
 		}
 	}
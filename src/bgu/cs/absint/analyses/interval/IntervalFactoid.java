@@ -1,5 +1,7 @@
 package bgu.cs.absint.analyses.interval;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import soot.Local;
@@ -46,6 +48,11 @@ public abstract class IntervalFactoid extends SootFactoid implements
 		}
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Collections.singletonList(lhs);
+	}
+
 	@Override
 	public void addVarsTo(Set<Local> c) {
 		c.add(lhs);
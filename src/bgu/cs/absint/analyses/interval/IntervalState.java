@@ -1,26 +1,46 @@
 package bgu.cs.absint.analyses.interval;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 import soot.Local;
+import soot.LongType;
 import soot.jimple.IntConstant;
+import soot.jimple.LongConstant;
 import soot.jimple.NumericConstant;
 import bgu.cs.absint.constructor.ConjunctiveState;
 
 /**
- * A set of varToFactoid of the form {@code x=c} for a local variable 'x' and a
- * constant 'c'. There is at most one factoid for any given variable. The
- * (symbolic) meaning of a state is given by the conjunction of the
- * varToFactoid.
- * 
+ * A conjunction of lower bounds of the form {@code x>=c} and upper bounds of
+ * the form {@code x<=c} for local variables 'x' and integral constants 'c'.
+ * There is at most one bound of each kind for any given variable.<br>
+ * The bounds are kept in two arrays of longs indexed by the numbers of the
+ * locals (see {@link Local#getNumber()}) relative to a base number, where
+ * {@link #NEG_INF} and {@link #POS_INF} stand for missing bounds. The arrays
+ * span the numbers of the bounded locals, so states of the same method body
+ * may have different bases and lengths. The factoids of a state are created
+ * on demand, for printing and tagging.
+ *
  * @author romanm
- * 
+ *
  */
 public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
+	/**
+	 * Stands for a missing lower bound.
+	 */
+	public static final long NEG_INF = Long.MIN_VALUE;
+
+	/**
+	 * Stands for a missing upper bound.
+	 */
+	public static final long POS_INF = Long.MAX_VALUE;
+
+	private static final long[] noBounds = new long[0];
+	private static final Local[] noLocals = new Local[0];
+
 	/**
 	 * An immutable bottom element.
 	 */
@@ -30,6 +50,11 @@ public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
 			return true;
 		}
 
+		@Override
+		public void setInterval(Local var, long lo, long hi) {
+			throw new Error("Attempt to modify " + toString());
+		}
+
 		@Override
 		public boolean addLBFactoid(Local lhs, NumericConstant rhs) {
 			throw new Error("Attempt to modify " + toString());
@@ -60,6 +85,11 @@ public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
 	 * An immutable top element.
 	 */
 	public static final IntervalState top = new IntervalState() {
+		@Override
+		public void setInterval(Local var, long lo, long hi) {
+			throw new Error("Attempt to modify " + toString());
+		}
+
 		@Override
 		public boolean addLBFactoid(Local lhs, NumericConstant rhs) {
 			throw new Error("Attempt to modify " + toString());
@@ -87,14 +117,32 @@ public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
 	};
 
 	/**
-	 * An element is a set of varToFactoid.
+	 * The number of the local corresponding to index 0 of the arrays.
 	 */
-	protected final Set<LBFactoid> lbFactoids;
-	protected final Set<UBFactoid> ubFactoids;
+	protected int base;
+
+	/**
+	 * The lower bound of each local.
+	 */
+	protected long[] lo;
+
+	/**
+	 * The upper bound of each local.
+	 */
+	protected long[] hi;
+
+	/**
+	 * The local at each index, or null if no local with that number has been
+	 * bounded.
+	 */
+	protected Local[] locals;
 
 	public IntervalState() {
-		lbFactoids = new TreeSet<>();
-		ubFactoids = new TreeSet<>();
+		// The factoid set of the base class is not used.
+		super(false);
+		this.lo = noBounds;
+		this.hi = noBounds;
+		this.locals = noLocals;
 	}
 
 	@Override
@@ -105,100 +153,141 @@ public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
 			return new IntervalState(this);
 	}
 
+	/**
+	 * Returns the lower bound of the given variable, or {@link #NEG_INF} if
+	 * there is none.
+	 */
+	public long getLo(Local var) {
+		int i = var.getNumber() - base;
+		return i >= 0 && i < lo.length ? lo[i] : NEG_INF;
+	}
+
+	/**
+	 * Returns the upper bound of the given variable, or {@link #POS_INF} if
+	 * there is none.
+	 */
+	public long getHi(Local var) {
+		int i = var.getNumber() - base;
+		return i >= 0 && i < hi.length ? hi[i] : POS_INF;
+	}
+
+	/**
+	 * Checks whether the given variable has a bound.
+	 */
+	@Override
+	public boolean hasVar(Local var) {
+		int i = var.getNumber() - base;
+		return i >= 0 && i < lo.length
+				&& (lo[i] != NEG_INF || hi[i] != POS_INF);
+	}
+
+	/**
+	 * Replaces the bounds of the given variable.
+	 *
+	 * @param var
+	 *            A local variable.
+	 * @param lo
+	 *            The new lower bound or {@link #NEG_INF}.
+	 * @param hi
+	 *            The new upper bound or {@link #POS_INF}.
+	 */
+	public void setInterval(Local var, long lo, long hi) {
+		int i = var.getNumber() - base;
+		if (i < 0 || i >= this.lo.length) {
+			if (lo == NEG_INF && hi == POS_INF)
+				return;
+			i = makeSlot(var.getNumber());
+		}
+		this.lo[i] = lo;
+		this.hi[i] = hi;
+		this.locals[i] = var;
+	}
+
 	public Collection<LBFactoid> getLBFactoids() {
-		return lbFactoids;
+		ArrayList<LBFactoid> result = new ArrayList<>();
+		for (int i = 0; i < lo.length; ++i) {
+			if (lo[i] != NEG_INF)
+				result.add(new LBFactoid(locals[i], toConstant(locals[i], lo[i])));
+		}
+		return result;
 	}
 
 	public Collection<UBFactoid> getUBFactoids() {
-		return ubFactoids;
+		ArrayList<UBFactoid> result = new ArrayList<>();
+		for (int i = 0; i < hi.length; ++i) {
+			if (hi[i] != POS_INF)
+				result.add(new UBFactoid(locals[i], toConstant(locals[i], hi[i])));
+		}
+		return result;
 	}
 
+	/**
+	 * Conjoins the bound {@code lhs>=rhs}. Bounds that are not integral are
+	 * ignored.
+	 */
 	public boolean addLBFactoid(Local lhs, NumericConstant rhs) {
-		return lbFactoids.add(new LBFactoid(lhs, rhs));
+		if (!isIntegral(rhs))
+			return false;
+		long c = toLong(rhs);
+		if (c <= getLo(lhs))
+			return false;
+		setInterval(lhs, c, getHi(lhs));
+		return true;
 	}
 
 	public boolean addLBFactoid(LBFactoid factoid) {
-		return lbFactoids.add(factoid);
+		return addLBFactoid(factoid.lhs, factoid.rhs);
 	}
 
+	/**
+	 * Conjoins the bound {@code lhs<=rhs}. Bounds that are not integral are
+	 * ignored.
+	 */
 	public boolean addUBFactoid(Local lhs, NumericConstant rhs) {
-		return ubFactoids.add(new UBFactoid(lhs, rhs));
+		if (!isIntegral(rhs))
+			return false;
+		long c = toLong(rhs);
+		if (c >= getHi(lhs))
+			return false;
+		setInterval(lhs, getLo(lhs), c);
+		return true;
 	}
 
 	public boolean addUBFactoid(UBFactoid factoid) {
-		return ubFactoids.add(factoid);
+		return addUBFactoid(factoid.lhs, factoid.rhs);
 	}
 
 	public NumericConstant getUB(Local lhs) {
-		NumericConstant result = null;
-		for (Iterator<UBFactoid> iter = ubFactoids.iterator(); iter.hasNext();) {
-			UBFactoid factoid = iter.next();
-			if (factoid.lhs.equals(lhs)) {
-				return factoid.rhs;
-			}
-		}
-		return result;
+		long c = getHi(lhs);
+		return c == POS_INF ? null : toConstant(lhs, c);
 	}
 
 	public NumericConstant getLB(Local lhs) {
-		NumericConstant result = null;
-		for (Iterator<LBFactoid> iter = lbFactoids.iterator(); iter.hasNext();) {
-			LBFactoid factoid = iter.next();
-			if (factoid.lhs.equals(lhs)) {
-				return factoid.rhs;
-			}
-		}
-		return result;
+		long c = getLo(lhs);
+		return c == NEG_INF ? null : toConstant(lhs, c);
 	}
 
 	public LBFactoid getLBFactoid(Local lhs) {
-		LBFactoid result = null;
-		for (Iterator<LBFactoid> iter = lbFactoids.iterator(); iter.hasNext();) {
-			LBFactoid factoid = iter.next();
-			if (factoid.lhs.equals(lhs)) {
-				return factoid;
-			}
-		}
-		return result;
+		NumericConstant c = getLB(lhs);
+		return c == null ? null : new LBFactoid(lhs, c);
 	}
 
 	public UBFactoid getUBFactoid(Local lhs) {
-		UBFactoid result = null;
-		for (Iterator<UBFactoid> iter = ubFactoids.iterator(); iter.hasNext();) {
-			UBFactoid factoid = iter.next();
-			if (factoid.lhs.equals(lhs)) {
-				return factoid;
-			}
-		}
-		return result;
+		NumericConstant c = getUB(lhs);
+		return c == null ? null : new UBFactoid(lhs, c);
 	}
 
 	/**
 	 * Removes any factoid containing the given variable.
-	 * 
+	 *
 	 * @param lhs
 	 *            The variable to be removed out of the state.
 	 */
 	@Override
 	public boolean removeVar(Local lhs) {
-		boolean result = false;
-		for (Iterator<LBFactoid> iter = lbFactoids.iterator(); iter.hasNext();) {
-			LBFactoid factoid = iter.next();
-			if (factoid.lhs.equals(lhs)) {
-				iter.remove();
-				result = true;
-				break;
-			}
-		}
-
-		for (Iterator<UBFactoid> iter = ubFactoids.iterator(); iter.hasNext();) {
-			UBFactoid factoid = iter.next();
-			if (factoid.lhs.equals(lhs)) {
-				iter.remove();
-				result = true;
-				break;
-			}
-		}
+		boolean result = getLo(lhs) != NEG_INF || getHi(lhs) != POS_INF;
+		if (result)
+			setInterval(lhs, NEG_INF, POS_INF);
 		return result;
 	}
 
@@ -217,11 +306,66 @@ public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
 			return null;
 
 		ArrayList<IntervalFactoid> result = new ArrayList<>();
-		result.addAll(lbFactoids);
-		result.addAll(ubFactoids);
+		result.addAll(getLBFactoids());
+		result.addAll(getUBFactoids());
 		return result;
 	}
 
+	/**
+	 * Compares the bounds of each local, regardless of the extents of the
+	 * arrays.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof IntervalState))
+			return false;
+		IntervalState other = (IntervalState) obj;
+		if (this == bottom || other == bottom)
+			return false;
+		for (int i = 0; i < lo.length; ++i) {
+			int j = i + base - other.base;
+			boolean inOther = j >= 0 && j < other.lo.length;
+			if (lo[i] != (inOther ? other.lo[j] : NEG_INF)
+					|| hi[i] != (inOther ? other.hi[j] : POS_INF))
+				return false;
+		}
+		for (int j = 0; j < other.lo.length; ++j) {
+			int i = j + other.base - base;
+			if ((i < 0 || i >= lo.length)
+					&& (other.lo[j] != NEG_INF || other.hi[j] != POS_INF))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sums the hash codes of the bounds of the bounded locals, so that the
+	 * result does not depend on the extents of the arrays.
+	 */
+	@Override
+	public int hashCode() {
+		if (this == bottom)
+			return 0;
+		int result = 1;
+		for (int i = 0; i < lo.length; ++i) {
+			if (lo[i] != NEG_INF || hi[i] != POS_INF)
+				result += ((base + i) * 31 + hash(lo[i])) * 31 + hash(hi[i]);
+		}
+		return result;
+	}
+
+	@Override
+	public Set<Local> getVars() {
+		HashSet<Local> vars = new HashSet<>();
+		for (int i = 0; i < lo.length; ++i) {
+			if (lo[i] != NEG_INF || hi[i] != POS_INF)
+				vars.add(locals[i]);
+		}
+		return vars;
+	}
+
 	/**
 	 * Returns the set of (lower-bound) varToFactoid such that both lower-bound
 	 * and upper-bound match for the corresponding variable.
@@ -231,23 +375,16 @@ public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
 			return null;
 
 		ArrayList<IntervalFactoid> result = new ArrayList<>();
-		for (LBFactoid lbFactoid : lbFactoids) {
-			for (UBFactoid ubFactoid : ubFactoids) {
-				if (!lbFactoid.lhs.equivTo(ubFactoid.lhs))
-					continue;
-				if (ubFactoid.rhs.equivTo(lbFactoid.rhs))
-					result.add(lbFactoid);
-			}
+		for (int i = 0; i < lo.length; ++i) {
+			if (lo[i] != NEG_INF && lo[i] == hi[i])
+				result.add(new LBFactoid(locals[i], toConstant(locals[i], lo[i])));
 		}
 		return result;
 	}
 
 	public boolean isConsistent() {
-		for (Local var : getVars()) {
-			NumericConstant lb = getLB(var);
-			NumericConstant ub = getUB(var);
-			if (lb != null && ub != null
-					&& ub.lessThan(lb).equivTo(IntConstant.v(1)))
+		for (int i = 0; i < lo.length; ++i) {
+			if (lo[i] > hi[i])
 				return false;
 		}
 		return true;
@@ -255,47 +392,139 @@ public class IntervalState extends ConjunctiveState<Local, IntervalFactoid> {
 
 	@Override
 	public String toString() {
-		if (lbFactoids.isEmpty() && ubFactoids.isEmpty())
-			return "true";
-
 		StringBuilder result = new StringBuilder("and(");
-		Set<Local> vars = getVars();
-		int size = vars.size();
-		for (Local var : vars) {
-			NumericConstant lb = getLB(var);
-			NumericConstant ub = getUB(var);
-			if (lb == null) {
-				result.append(var + "<=" + ub.toString());
-			} else if (ub == null) {
-				result.append(var + ">=" + lb.toString());
+		boolean first = true;
+		for (int i = 0; i < lo.length; ++i) {
+			if (lo[i] == NEG_INF && hi[i] == POS_INF)
+				continue;
+			if (!first)
+				result.append(", ");
+			first = false;
+			Local var = locals[i];
+			if (lo[i] == NEG_INF) {
+				result.append(var + "<=" + hi[i]);
+			} else if (hi[i] == POS_INF) {
+				result.append(var + ">=" + lo[i]);
+			} else if (lo[i] == hi[i]) {
+				result.append(var + "=" + lo[i]);
 			} else {
-				if (lb.equivTo(ub)) {
-					result.append(var.toString() + "=" + lb);
-				} else {
-					result.append(lb.toString() + "<=" + var + "<="
-							+ ub.toString());
-				}
+				result.append(lo[i] + "<=" + var + "<=" + hi[i]);
 			}
-			--size;
-			if (size > 0)
-				result.append(", ");
 		}
+		if (first)
+			return "true";
 		result.append(")");
 		return result.toString();
 	}
 
+	private static int hash(long value) {
+		return (int) (value ^ (value >>> 32));
+	}
+
+	/**
+	 * Checks whether the given constant is an int or a long constant.
+	 */
+	public static boolean isIntegral(NumericConstant c) {
+		return c instanceof IntConstant || c instanceof LongConstant;
+	}
+
+	/**
+	 * Returns the value of an integral constant.
+	 */
+	public static long toLong(NumericConstant c) {
+		if (c instanceof IntConstant)
+			return ((IntConstant) c).value;
+		else
+			return ((LongConstant) c).value;
+	}
+
+	/**
+	 * Returns a constant of the type of the given variable for a (finite)
+	 * bound.
+	 */
+	public static NumericConstant toConstant(Local var, long value) {
+		if (var.getType() instanceof LongType)
+			return LongConstant.v(value);
+		else
+			return IntConstant.v((int) value);
+	}
+
+	/**
+	 * Returns the least value of the type of the given variable.
+	 */
+	public static long minValue(Local var) {
+		return var.getType() instanceof LongType ? Long.MIN_VALUE
+				: Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Returns the greatest value of the type of the given variable.
+	 */
+	public static long maxValue(Local var) {
+		return var.getType() instanceof LongType ? Long.MAX_VALUE
+				: Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Constructs a state without bounds whose arrays cover the locals
+	 * numbered from base to {@code base+length-1}.
+	 */
+	protected IntervalState(int base, int length) {
+		super(false);
+		this.base = base;
+		this.lo = new long[length];
+		this.hi = new long[length];
+		this.locals = new Local[length];
+		Arrays.fill(lo, NEG_INF);
+		Arrays.fill(hi, POS_INF);
+	}
+
 	protected IntervalState(IntervalState copyFrom) {
-		lbFactoids = new TreeSet<>();
-		ubFactoids = new TreeSet<>();
-		this.lbFactoids.addAll(copyFrom.lbFactoids);
-		this.ubFactoids.addAll(copyFrom.ubFactoids);
+		super(false);
+		this.base = copyFrom.base;
+		this.lo = copyFrom.lo.clone();
+		this.hi = copyFrom.hi.clone();
+		this.locals = copyFrom.locals.clone();
 	}
 
 	/**
 	 * A constructor just for initializing varToFactoid to null.
 	 */
 	protected IntervalState(boolean dummy) {
-		this.lbFactoids = null;
-		this.ubFactoids = null;
+		super(false);
+		this.lo = noBounds;
+		this.hi = noBounds;
+		this.locals = noLocals;
+	}
+
+	/**
+	 * Extends the arrays to cover the given local number and returns its
+	 * index.
+	 */
+	private int makeSlot(int number) {
+		int length = lo.length;
+		if (length == 0) {
+			base = number;
+			lo = new long[] { NEG_INF };
+			hi = new long[] { POS_INF };
+			locals = new Local[1];
+			return 0;
+		}
+		int newBase = Math.min(base, number);
+		int newLength = Math.max(base + length, number + 1) - newBase;
+		int offset = base - newBase;
+		long[] newLo = new long[newLength];
+		long[] newHi = new long[newLength];
+		Local[] newLocals = new Local[newLength];
+		Arrays.fill(newLo, NEG_INF);
+		Arrays.fill(newHi, POS_INF);
+		System.arraycopy(lo, 0, newLo, offset, length);
+		System.arraycopy(hi, 0, newHi, offset, length);
+		System.arraycopy(locals, 0, newLocals, offset, length);
+		base = newBase;
+		lo = newLo;
+		hi = newHi;
+		locals = newLocals;
+		return number - base;
 	}
 }
\ No newline at end of file
@@ -18,7 +18,7 @@ public class LBFactoid extends IntervalFactoid {
 	public boolean equals(Object obj) {
 		if (obj instanceof LBFactoid) {
 			LBFactoid other = (LBFactoid) obj;
-			return this.lhs == other.lhs && this.rhs == other.rhs;
+			return this.lhs == other.lhs && this.rhs.equals(other.rhs);
 		} else {
 			return false;
 		}
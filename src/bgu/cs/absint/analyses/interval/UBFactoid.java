@@ -18,7 +18,7 @@ public class UBFactoid extends IntervalFactoid {
 	public boolean equals(Object obj) {
 		if (obj instanceof UBFactoid) {
 			UBFactoid other = (UBFactoid) obj;
-			return this.lhs == other.lhs && this.rhs == other.rhs;
+			return this.lhs == other.lhs && this.rhs.equals(other.rhs);
 		} else {
 			return false;
 		}
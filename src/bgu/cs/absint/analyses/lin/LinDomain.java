@@ -142,6 +142,15 @@ public class LinDomain extends
 		return result;
 	}
 
+	/**
+	 * Decides the order via the upper bound, which derives linear factoids
+	 * from pairs of constant factoids.
+	 */
+	@Override
+	public boolean leq(LinState elem1, LinState elem2) {
+		return leqByJoin(elem1, elem2);
+	}
+
 	@Override
 	public LinState createEmpty() {
 		return new LinState();
@@ -1,5 +1,7 @@
 package bgu.cs.absint.analyses.lin;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import soot.Local;
@@ -81,6 +83,11 @@ public class LinFactoid extends SootFactoid {
 		return lvar.equivTo(var) || rvar.equivTo(var);
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Arrays.asList(lvar, rvar);
+	}
+
 	@Override
 	public void addVarsTo(Set<Local> c) {
 		c.add(lvar);
@@ -2,6 +2,9 @@ package bgu.cs.absint.analyses.lin;
 
 import soot.PackManager;
 import soot.Transform;
+import soot.Unit;
+import bgu.cs.absint.constructor.PackedDomain;
+import bgu.cs.absint.constructor.ProductState;
 import bgu.cs.absint.soot.BaseAnalysis;
 
 /**
@@ -21,4 +24,15 @@ public class LinMain {
 			super(LinDomain.v());
 		}
 	}
+
+	/**
+	 * Tracks relations only between locals of the same pack (see
+	 * {@link bgu.cs.absint.soot.LocalPacking}).
+	 */
+	public static class PackedLinAnalysis extends
+			BaseAnalysis<ProductState, PackedDomain<LinState, Unit>> {
+		public PackedLinAnalysis() {
+			super(new PackedDomain<LinState, Unit>(LinDomain.v()));
+		}
+	}
 }
\ No newline at end of file
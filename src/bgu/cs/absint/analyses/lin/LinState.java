@@ -3,7 +3,6 @@ package bgu.cs.absint.analyses.lin;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 import soot.Local;
@@ -13,7 +12,8 @@ import bgu.cs.absint.constructor.ConjunctiveState;
 /**
  * A set of varToFactoid of the form {@code x=a*y+b} for local variables 'x' and
  * 'y' and a integer constants 'a' and 'b'. The (symbolic) meaning of a state is
- * given by the conjunction of the varToFactoid.
+ * given by the conjunction of the varToFactoid.<br>
+ * The varToFactoid are indexed by their variables.
  * 
  * @author romanm
  * 
@@ -59,23 +59,19 @@ public class LinState extends ConjunctiveState<Local, LinFactoid> {
 		}
 	};
 
-	/**
-	 * An element is a set of varToFactoid.
-	 */
-	protected final Set<LinFactoid> factoids;
-
 	/**
 	 * Constructs a state with an empty set of varToFactoid (top).
 	 */
 	public LinState() {
-		this.factoids = new HashSet<>();
+		indexVars();
 	}
 
 	/**
 	 * Constructs a state containing the given set of varToFactoid.
 	 */
 	public LinState(Collection<LinFactoid> factoids) {
-		this.factoids = new HashSet<>(factoids);
+		super(factoids);
+		indexVars();
 	}
 
 	@Override
@@ -115,7 +111,7 @@ public class LinState extends ConjunctiveState<Local, LinFactoid> {
 	 * variable and right-hand side variable.
 	 */
 	public LinFactoid getLinFactoid(Local lhs, Local rhs) {
-		for (LinFactoid f : this) {
+		for (LinFactoid f : getFactoidsWithVar(lhs)) {
 			if (f.lvar.equivTo(lhs) && f.rvar.equivTo(rhs) && f.isLinear())
 				return f;
 		}
@@ -128,7 +124,7 @@ public class LinState extends ConjunctiveState<Local, LinFactoid> {
 	 */
 	public Set<LinFactoid> getLinFactoids(Local lhs) {
 		HashSet<LinFactoid> result = new HashSet<>();
-		for (LinFactoid f : this) {
+		for (LinFactoid f : getFactoidsWithVar(lhs)) {
 			if (f.lvar.equivTo(lhs) && f.isLinear())
 				result.add(f);
 		}
@@ -143,27 +139,10 @@ public class LinState extends ConjunctiveState<Local, LinFactoid> {
 			assert factoid.additive.equivTo(IntConstant.v(0));
 			return false;
 		} else {
-			return factoids.add(factoid);
+			return super.add(factoid);
 		}
 	}
 
-	public boolean remove(LinFactoid f) {
-		return factoids.remove(f);
-	}
-
-	@Override
-	public boolean removeVar(Local lhs) {
-		boolean result = false;
-		for (Iterator<LinFactoid> iter = factoids.iterator(); iter.hasNext();) {
-			LinFactoid factoid = iter.next();
-			if (factoid.hasVar(lhs)) {
-				iter.remove();
-				result = true;
-			}
-		}
-		return result;
-	}
-
 	/**
 	 * Returns the set of varToFactoid defining the given variable.
 	 * 
@@ -174,7 +153,7 @@ public class LinState extends ConjunctiveState<Local, LinFactoid> {
 	 */
 	public Set<LinFactoid> getFactoids(Local var) {
 		HashSet<LinFactoid> result = new HashSet<>();
-		for (LinFactoid f : this) {
+		for (LinFactoid f : getFactoidsWithVar(var)) {
 			if (f.lvar.equivTo(var))
 				result.add(f);
 		}
@@ -200,9 +179,9 @@ public class LinState extends ConjunctiveState<Local, LinFactoid> {
 	 * state.
 	 */
 	public LinFactoid getConstantFactoid(Local var) {
-		for (LinFactoid constantF : getConstantFactoids()) {
-			if (constantF.hasVar(var))
-				return constantF;
+		for (LinFactoid f : getFactoidsWithVar(var)) {
+			if (f.isConstant())
+				return f;
 		}
 		return null;
 	}
@@ -212,13 +191,13 @@ public class LinState extends ConjunctiveState<Local, LinFactoid> {
 	 * state.
 	 */
 	protected LinState(LinState copyFrom) {
-		factoids = new HashSet<>(copyFrom.factoids);
+		super(copyFrom);
 	}
 
 	/**
 	 * A constructor just for initializing varToFactoid to null.
 	 */
 	protected LinState(boolean dummy) {
-		this.factoids = null;
+		super(false);
 	}
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package bgu.cs.absint.analyses.set;
 
+import java.util.Arrays;
+import java.util.List;
+
 import soot.Local;
 
 /**
@@ -19,6 +22,11 @@ public class EqualSetsFactoid extends SetFactoid {
 		assert setLhs != null && setRhs != null : "Sets must not be null";
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Arrays.asList(setLhs, setRhs);
+	}
+
 	@Override
 	public String toString() {
 		return setLhs.toString() + "~" + setRhs.toString();
@@ -1,5 +1,8 @@
 package bgu.cs.absint.analyses.set;
 
+import java.util.Collections;
+import java.util.List;
+
 import soot.Local;
 
 /**
@@ -16,6 +19,11 @@ public class NotNullFactoid extends SetFactoid {
 		assert var != null : "Set must not be null";
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Collections.singletonList(var);
+	}
+
 	@Override
 	public String toString() {
 		return var + "!=null";
@@ -1,5 +1,8 @@
 package bgu.cs.absint.analyses.set;
 
+import java.util.Arrays;
+import java.util.List;
+
 import soot.Local;
 
 /**
@@ -36,6 +39,11 @@ public class UnionFactoid extends SetFactoid {
 		return this.setLhs.equivTo(var) || this.setRhs.equivTo(var) || this.data.equivTo(var);
 	}
 	
+	@Override
+	public List<Local> getVars() {
+		return Arrays.asList(setLhs, setRhs, data);
+	}
+
 	@Override
 	public String toString() {
 		//Union(s,t,d)
@@ -3,6 +3,8 @@ package bgu.cs.absint.analyses.ve;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import soot.Local;
 import soot.Unit;
@@ -12,7 +14,6 @@ import soot.jimple.IdentityStmt;
 import soot.jimple.IfStmt;
 import soot.jimple.ParameterRef;
 import soot.jimple.ThisRef;
-import bgu.cs.absint.ComposedOperation;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.IdOperation;
 import bgu.cs.absint.UnaryOperation;
@@ -50,6 +51,11 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 		return VEState.top;
 	}
 
+	/**
+	 * Computes the intersection of the partitions of the two states: two
+	 * locals are in the same class of the result if they are in the same
+	 * class in both states.
+	 */
 	@Override
 	public VEState ub(VEState first, VEState second) {
 		if (first == VEState.bottom) {
@@ -57,25 +63,64 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 		} else if (second == VEState.bottom) {
 			return first;
 		} else {
-			// Compute the intersection of the two sets of {@link VEFactois}.
-			VEState result = new VEState(first);
-			result.factoids.retainAll(second.factoids);
+			// Group the locals that are stored in both states by the pair of
+			// their representatives, and find the least local of each group.
+			HashMap<Pair<Local, Local>, Local> groupToRep = new HashMap<>();
+			HashMap<Pair<Local, Local>, Integer> groupToSize = new HashMap<>();
+			for (Map.Entry<Local, Local> entry : first.rep.entrySet()) {
+				Local var = entry.getKey();
+				Local secondRep = second.rep.get(var);
+				if (secondRep == null)
+					continue;
+				Pair<Local, Local> group = new Pair<>(entry.getValue(),
+						secondRep);
+				Local groupRep = groupToRep.get(group);
+				if (groupRep == null) {
+					groupToRep.put(group, var);
+					groupToSize.put(group, 1);
+				} else {
+					if (VEState.precedes(var, groupRep))
+						groupToRep.put(group, var);
+					groupToSize.put(group, groupToSize.get(group) + 1);
+				}
+			}
+
+			VEState result = new VEState();
+			for (Map.Entry<Local, Local> entry : first.rep.entrySet()) {
+				Local var = entry.getKey();
+				Local secondRep = second.rep.get(var);
+				if (secondRep == null)
+					continue;
+				Pair<Local, Local> group = new Pair<>(entry.getValue(),
+						secondRep);
+				if (groupToSize.get(group) > 1)
+					result.put(var, groupToRep.get(group));
+			}
 			return result;
 		}
 	}
 
+	/**
+	 * Computes the finest partition that is coarser than the partitions of
+	 * both states.
+	 */
 	@Override
 	public VEState lb(VEState first, VEState second) {
 		if (first == VEState.bottom || second == VEState.bottom) {
 			return VEState.bottom;
 		} else {
-			// Compute the union of the two sets of varToFactoid.
-			VEState result = new VEState(first);
-			result.factoids.addAll(second.factoids);
+			VEState result = first.copy();
+			for (Map.Entry<Local, Local> entry : second.rep.entrySet()) {
+				result.union(entry.getKey(), entry.getValue());
+			}
 			return result;
 		}
 	}
 
+	/**
+	 * Checks that every class of the second state is contained in a class of
+	 * the first state.
+	 */
 	@Override
 	public boolean leq(VEState first, VEState second) {
 		if (first == VEState.bottom) {
@@ -84,84 +129,30 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 			// first != bottom
 			return false;
 		} else {
-			return first.factoids.containsAll(second.factoids);
+			for (Map.Entry<Local, Local> entry : second.rep.entrySet()) {
+				if (!first.areEqual(entry.getKey(), entry.getValue()))
+					return false;
+			}
+			return true;
 		}
 	}
 
+	/**
+	 * Returns the transformer for the given statement. No reduction is
+	 * needed, since the transformers maintain the partition.
+	 */
 	@Override
 	public UnaryOperation<VEState> getTransformer(Unit stmt) {
-		UnaryOperation<VEState> vanillaTransformer = matcher
-				.getTransformer(stmt);
-		if (vanillaTransformer.equals(IdOperation.v())) {
-			// An optimization - no need to run a reduction after an identity
-			// transformer.
-			return vanillaTransformer;
-		} else {
-			return ComposedOperation.compose(vanillaTransformer,
-					getReductionOperation());
-		}
+		return matcher.getTransformer(stmt);
 	}
 
 	/**
-	 * A reduction operator (we called it Explicate in class) for the variable
-	 * equalities abstract domain. The operator adds varToFactoid by computing
-	 * the transitive closure of the equality relation.
+	 * The equality relation of a state is closed under transitivity by
+	 * construction, so the reduction returns its input.
 	 */
 	@Override
 	public VEState reduce(VEState input) {
-		// Special treatment for bottom.
-		if (input.equals(VEState.bottom))
-			return VEState.bottom;
-		if (input.equals(VEState.top))
-			return VEState.top;
-
-		VEState result = new VEState(input);
-		boolean change = true;
-		while (change) {
-			change = false;
-			for (VEFactoid factoid1 : result.factoids) {
-				for (VEFactoid factoid2 : result.factoids) {
-					if (factoid1.equals(factoid2))
-						continue;
-
-					// Check whether there is a common variable, which means
-					// we may apply the transitive closure rule and get a
-					// new factoid.
-					if (factoid2.hasVar(factoid1.lhs)
-							|| factoid2.hasVar(factoid1.rhs)) {
-						Local lhs = null;
-						Local rhs = null;
-						if (factoid1.lhs != factoid2.lhs) {
-							lhs = factoid1.lhs;
-							rhs = factoid2.lhs;
-						} else if (factoid1.lhs != factoid2.rhs) {
-							lhs = factoid1.lhs;
-							rhs = factoid2.rhs;
-						} else if (factoid1.rhs != factoid2.lhs) {
-							lhs = factoid1.rhs;
-							rhs = factoid2.lhs;
-						} else if (factoid1.rhs != factoid2.rhs) {
-							lhs = factoid1.rhs;
-							rhs = factoid2.rhs;
-						}
-
-						if (lhs != rhs) {
-							VEFactoid newFactoid = new VEFactoid(lhs, rhs);
-							if (!result.factoids.contains(newFactoid)) {
-								result.factoids.add(newFactoid);
-								change = true;
-							}
-						}
-					}
-					if (change) // Avoids concurrent modification
-								// exceptions.
-						break;
-				}
-				if (change) // Avoids concurrent modification exceptions.
-					break;
-			}
-		}
-		return result;
+		return input;
 	}
 
 	@Override
@@ -174,7 +165,7 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 		VEState result = state.copy();
 		boolean change = false;
 		for (Pair<Local, Local> equality : equalities) {
-			change |= result.addFactoid(equality.first, equality.second);
+			change |= result.union(equality.first, equality.second);
 		}
 		if (change)
 			return result;
@@ -188,9 +179,12 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 		if (state == getBottom())
 			return Collections.emptyList();
 
-		ArrayList<Pair<Local, Local>> result = new ArrayList<>();
-		for (VEFactoid factoid : state.factoids) {
-			result.add(new Pair<>(factoid.lhs, factoid.rhs));
+		// Relating each local to the representative of its class suffices,
+		// since the reduction of the product applies equalities transitively.
+		ArrayList<Pair<Local, Local>> result = new ArrayList<>(state.rep.size());
+		for (Map.Entry<Local, Local> entry : state.rep.entrySet()) {
+			if (entry.getKey() != entry.getValue())
+				result.add(new Pair<>(entry.getKey(), entry.getValue()));
 		}
 		return result;
 	}
@@ -263,27 +257,25 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 			UnaryOperation<VEState> {
 		protected final Local lhs;
 		protected final Local rhs;
-		protected final VEFactoid checkedFactoid;
 
 		public AssumeVarNeqVarTransformer(Local lhs, Local rhs) {
 			this.lhs = lhs;
 			this.rhs = rhs;
 			assert !lhs.equals(rhs);
-			checkedFactoid = new VEFactoid(lhs, rhs);
 		}
 
 		/**
-		 * Check whether the set of varToFactoid contains lhs=c, which negates
-		 * the assumed expression. If so, return bottom, otherwise return the
-		 * input state.
+		 * Check whether lhs and rhs are in the same class, which negates the
+		 * assumed expression. If so, return bottom, otherwise return the input
+		 * state.
 		 */
 		@Override
 		public VEState apply(VEState input) {
 			// Special treatment for bottom.
-			if (input.equals(VEState.bottom))
+			if (input == VEState.bottom)
 				return VEState.bottom;
 
-			if (input.factoids.contains(checkedFactoid))
+			if (input.areEqual(lhs, rhs))
 				return VEState.bottom;
 			else
 				return input;
@@ -301,13 +293,11 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 			UnaryOperation<VEState> {
 		protected final Local lhs;
 		protected final Local rhs;
-		protected final VEFactoid newFactoid;
 
 		public AssignVarToVarTransformer(Local lhs, Local rhs) {
 			this.lhs = lhs;
 			this.rhs = rhs;
 			assert !lhs.equals(rhs);
-			newFactoid = new VEFactoid(lhs, rhs);
 		}
 
 		/**
@@ -318,18 +308,14 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 		@Override
 		public VEState apply(VEState input) {
 			// Special treatment for bottom.
-			if (input.equals(VEState.bottom))
+			if (input == VEState.bottom)
 				return VEState.bottom;
 
-			VEState result = new VEState();
-			// Apply the preservation rule to each factoid.
-			for (VEFactoid factoid : input.factoids) {
-				if (!factoid.hasVar(lhs)) {
-					result.factoids.add(factoid);
-				}
-			}
+			VEState result = input.copy();
+			// Apply the preservation rule by removing lhs from its class.
+			result.removeVar(lhs);
 			// Apply the new factoid rule.
-			result.factoids.add(newFactoid);
+			result.union(lhs, rhs);
 
 			return result;
 		}
@@ -344,13 +330,11 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 			UnaryOperation<VEState> {
 		protected final Local lhs;
 		protected final Local rhs;
-		protected final VEFactoid newFactoid;
 
 		public AssignAssumeVarEqualVarTransformer(Local lhs, Local rhs) {
 			this.lhs = lhs;
 			this.rhs = rhs;
 			assert !lhs.equals(rhs);
-			newFactoid = new VEFactoid(lhs, rhs);
 		}
 
 		/**
@@ -360,12 +344,14 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 		@Override
 		public VEState apply(VEState input) {
 			// Special treatment for bottom.
-			if (input.equals(VEState.bottom))
+			if (input == VEState.bottom)
 				return VEState.bottom;
 
+			if (input.areEqual(lhs, rhs))
+				return input;
 			VEState result = input.copy();
 			// Apply the new factoid rule.
-			result.factoids.add(newFactoid);
+			result.union(lhs, rhs);
 
 			return result;
 		}
@@ -398,15 +384,13 @@ public class VEDomain extends AbstractDomain<VEState, Unit> implements
 		@Override
 		public VEState apply(VEState input) {
 			// Special treatment for bottom.
-			if (input.equals(VEState.bottom))
+			if (input == VEState.bottom)
 				return VEState.bottom;
 
-			VEState result = new VEState();
-			for (VEFactoid factoid : input.factoids) {
-				if (!factoid.hasVar(lhs)) {
-					result.factoids.add(factoid);
-				}
-			}
+			if (!input.rep.containsKey(lhs))
+				return input;
+			VEState result = input.copy();
+			result.removeVar(lhs);
 			return result;
 		}
 	}
@@ -1,5 +1,7 @@
 package bgu.cs.absint.analyses.ve;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import soot.Local;
@@ -36,6 +38,14 @@ public class VEFactoid extends SootFactoid {
 
 	@Override
 	public int hashCode() {
+		return hashCode(lhs, rhs);
+	}
+
+	/**
+	 * Returns the hash code of the factoid {@code lhs=rhs} without creating
+	 * it.
+	 */
+	public static int hashCode(Local lhs, Local rhs) {
 		// Since we consider (lhs,c) equal to (c,lhs), we need to compute
 		// the same hash code for both. To achieve this, we first sort lhs and
 		// c lexicographically and then compute the hash code for the
@@ -64,6 +74,11 @@ public class VEFactoid extends SootFactoid {
 		return lhs + "=" + rhs;
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Arrays.asList(lhs, rhs);
+	}
+
 	@Override
 	public void addVarsTo(Set<Local> c) {
 		c.add(lhs);
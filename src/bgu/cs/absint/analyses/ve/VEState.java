@@ -1,17 +1,35 @@
 package bgu.cs.absint.analyses.ve;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
 import soot.Local;
 import bgu.cs.absint.constructor.ConjunctiveState;
 
 /**
- * A set of {@link VEFactoid}s of the form {@code x=y} for two local variables.
- * The (symbolic) meaning of a state is given by the conjunction of the
- * {@link VEFactoid}s. The set does not contain symmetric {@link VEFactoid}s
- * (i.e., if {@code x=y} is in the set then {@code y=x} is not in the set) and
- * trivial {@link VEFactoid}s (i.e., {@code x=x}).
- * 
+ * A conjunction of equalities of the form {@code x=y} for two local variables,
+ * represented by the partition of the locals into equivalence classes.<br>
+ * The partition is kept as a union-find structure in which every local points
+ * directly to the canonical representative of its class, which is the member
+ * with the least number (see {@link Local#getNumber()}). Locals that are not
+ * equal to any other local form singleton classes and are not stored. Since
+ * the partition is closed under transitivity by construction, states never
+ * need to be reduced.<br>
+ * The factoids of a state are created on demand, by the view returned from
+ * {@link #getFactoids()}: one {@link VEFactoid} {@code x=r} for each local x
+ * that is not the representative r of its class. The number of factoids and
+ * the hash code of the factoid set are maintained along with the partition.
+ *
  * @author romanm
- * 
+ *
  */
 public class VEState extends ConjunctiveState<Local, VEFactoid> {
 	/**
@@ -19,12 +37,7 @@ public class VEState extends ConjunctiveState<Local, VEFactoid> {
 	 */
 	public static final VEState bottom = new VEState(false) {
 		@Override
-		public boolean addFactoid(Local lhs, Local rhs) {
-			throw new Error("Attempt to modify " + toString());
-		}
-
-		@Override
-		public boolean add(VEFactoid factoid) {
+		public boolean union(Local lhs, Local rhs) {
 			throw new Error("Attempt to modify " + toString());
 		}
 
@@ -39,12 +52,7 @@ public class VEState extends ConjunctiveState<Local, VEFactoid> {
 	 */
 	public static final VEState top = new VEState() {
 		@Override
-		public boolean addFactoid(Local lhs, Local rhs) {
-			throw new Error("Attempt to modify " + toString());
-		}
-
-		@Override
-		public boolean add(VEFactoid factoid) {
+		public boolean union(Local lhs, Local rhs) {
 			throw new Error("Attempt to modify " + toString());
 		}
 
@@ -54,8 +62,31 @@ public class VEState extends ConjunctiveState<Local, VEFactoid> {
 		}
 	};
 
+	/**
+	 * Maps each local of a non-singleton class to the representative of its
+	 * class.
+	 */
+	protected final HashMap<Local, Local> rep;
+
+	/**
+	 * The number of factoids.
+	 */
+	protected int size;
+
+	/**
+	 * The hash code of the set of factoids.
+	 */
+	protected int hash;
+
+	/**
+	 * Created on demand by {@link #getFactoids()}.
+	 */
+	private FactoidView view;
+
 	public VEState() {
-		super();
+		// The factoid set of the base class is not used.
+		super(false);
+		rep = new HashMap<>();
 	}
 
 	@Override
@@ -66,15 +97,253 @@ public class VEState extends ConjunctiveState<Local, VEFactoid> {
 			return new VEState(this);
 	}
 
+	/**
+	 * Returns the representative of the class of the given local.
+	 */
+	public Local find(Local var) {
+		Local result = rep.get(var);
+		return result == null ? var : result;
+	}
+
+	/**
+	 * Checks whether the given locals belong to the same class.
+	 */
+	public boolean areEqual(Local var1, Local var2) {
+		return var1 == var2 || find(var1) == find(var2);
+	}
+
+	/**
+	 * Merges the classes of the given locals.
+	 *
+	 * @return true if the locals were in different classes.
+	 */
+	public boolean union(Local lhs, Local rhs) {
+		Local lhsRep = find(lhs);
+		Local rhsRep = find(rhs);
+		if (lhsRep == rhsRep)
+			return false;
+		Local winner = precedes(lhsRep, rhsRep) ? lhsRep : rhsRep;
+		Local loser = winner == lhsRep ? rhsRep : lhsRep;
+		if (rep.containsKey(loser)) {
+			for (Map.Entry<Local, Local> entry : rep.entrySet()) {
+				if (entry.getValue() == loser) {
+					Local var = entry.getKey();
+					if (var != loser) {
+						hash -= VEFactoid.hashCode(var, loser);
+						--size;
+					}
+					entry.setValue(winner);
+					hash += VEFactoid.hashCode(var, winner);
+					++size;
+				}
+			}
+		} else {
+			put(loser, winner);
+		}
+		put(winner, winner);
+		return true;
+	}
+
 	public boolean addFactoid(Local lhs, Local rhs) {
-		return factoids.add(new VEFactoid(lhs, rhs));
+		return union(lhs, rhs);
+	}
+
+	@Override
+	public boolean add(VEFactoid factoid) {
+		return union(factoid.lhs, factoid.rhs);
+	}
+
+	/**
+	 * Removes the given local from its class.
+	 */
+	@Override
+	public boolean removeVar(Local lhs) {
+		Local lhsRep = remove(lhs);
+		if (lhsRep == null)
+			return false;
+
+		List<Local> rest = new ArrayList<>();
+		for (Map.Entry<Local, Local> entry : rep.entrySet()) {
+			if (entry.getValue() == lhsRep)
+				rest.add(entry.getKey());
+		}
+		if (rest.size() == 1) {
+			remove(rest.get(0));
+		} else if (lhs == lhsRep) {
+			Local newRep = rest.get(0);
+			for (Local var : rest) {
+				if (precedes(var, newRep))
+					newRep = var;
+			}
+			for (Local var : rest) {
+				put(var, newRep);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the given local belongs to a non-singleton class.
+	 */
+	@Override
+	public boolean hasVar(Local var) {
+		return rep.containsKey(var);
+	}
+
+	/**
+	 * Returns the locals of the non-singleton classes.
+	 */
+	@Override
+	public Set<Local> getVars() {
+		return new HashSet<>(rep.keySet());
+	}
+
+	/**
+	 * Returns a view of the local-representative pairs of the non-singleton
+	 * classes, or null for the bottom element.
+	 */
+	@Override
+	public Collection<VEFactoid> getFactoids() {
+		if (this == bottom)
+			return null;
+		if (view == null)
+			view = new FactoidView();
+		return view;
+	}
+
+	/**
+	 * Maps the given local to the given representative, maintaining the number
+	 * of factoids and their hash code.
+	 */
+	void put(Local var, Local r) {
+		Local old = rep.put(var, r);
+		if (old != null && old != var) {
+			hash -= VEFactoid.hashCode(var, old);
+			--size;
+		}
+		if (r != var) {
+			hash += VEFactoid.hashCode(var, r);
+			++size;
+		}
 	}
 
+	/**
+	 * Unmaps the given local, maintaining the number of factoids and their
+	 * hash code.
+	 * 
+	 * @return The representative the local was mapped to, if any.
+	 */
+	private Local remove(Local var) {
+		Local old = rep.remove(var);
+		if (old != null && old != var) {
+			hash -= VEFactoid.hashCode(var, old);
+			--size;
+		}
+		return old;
+	}
+
+	/**
+	 * Determines the order of locals used to choose representatives.
+	 */
+	protected static boolean precedes(Local var1, Local var2) {
+		return var1.getNumber() < var2.getNumber();
+	}
+
+	/**
+	 * A constructor just for initializing varToFactoid to null.
+	 */
 	protected VEState(boolean dummy) {
 		super(false);
+		rep = new HashMap<>();
 	}
 
 	protected VEState(VEState copyFrom) {
-		super(copyFrom.factoids);
+		super(false);
+		rep = new HashMap<>(copyFrom.rep);
+		size = copyFrom.size;
+		hash = copyFrom.hash;
+	}
+
+	/**
+	 * A read-only set view of the factoids of the state.
+	 * 
+	 * @author romanm
+	 */
+	protected class FactoidView extends AbstractSet<VEFactoid> {
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof VEFactoid))
+				return false;
+			VEFactoid factoid = (VEFactoid) o;
+			return factoid.lhs != factoid.rhs
+					&& (rep.get(factoid.lhs) == factoid.rhs || rep
+							.get(factoid.rhs) == factoid.lhs);
+		}
+
+		@Override
+		public boolean containsAll(Collection<?> c) {
+			if (c instanceof VEState.FactoidView) {
+				for (Map.Entry<Local, Local> entry : ((FactoidView) c)
+						.getState().rep.entrySet()) {
+					if (entry.getKey() != entry.getValue()
+							&& rep.get(entry.getKey()) != entry.getValue())
+						return false;
+				}
+				return true;
+			}
+			return super.containsAll(c);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public Iterator<VEFactoid> iterator() {
+			final Iterator<Map.Entry<Local, Local>> entries = rep.entrySet()
+					.iterator();
+			return new Iterator<VEFactoid>() {
+				private VEFactoid next = advance();
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public VEFactoid next() {
+					if (next == null)
+						throw new NoSuchElementException();
+					VEFactoid result = next;
+					next = advance();
+					return result;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+				private VEFactoid advance() {
+					while (entries.hasNext()) {
+						Map.Entry<Local, Local> entry = entries.next();
+						if (entry.getKey() != entry.getValue())
+							return new VEFactoid(entry.getKey(),
+									entry.getValue());
+					}
+					return null;
+				}
+			};
+		}
+
+		private VEState getState() {
+			return VEState.this;
+		}
 	}
 }
\ No newline at end of file
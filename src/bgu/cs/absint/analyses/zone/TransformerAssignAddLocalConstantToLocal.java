@@ -31,17 +31,7 @@ class TransformerAssignAddLocalConstantToLocal extends
 		if (input.equals(ZoneState.bottom))
 			return ZoneState.bottom;
 
-		ZoneState result = new ZoneState();
-		// Apply the preservation rule to each factoid.
-		for (ZoneFactoid factoid : input.factoids) {
-			if (!factoid.hasVar(lhs)) {
-				result.factoids.add(factoid);
-			}
-		}
-		// Apply the new factoid rule.
-		result.factoids.add(new ZoneFactoid(lhs, op1, op2));
-		result.factoids.add(new ZoneFactoid(op1, lhs, IntConstant.v(-op2.value)));
-
-		return result;
+		// Forget lhs and add the factoids lhs-op1<=c and op1-lhs<=-c.
+		return ZoneDomain.assign(input, lhs, op1, op2.value);
 	}
 }
\ No newline at end of file
@@ -26,17 +26,7 @@ class TransformerAssignConstantToVar extends UnaryOperation<ZoneState> {
 		if (input.equals(ZoneState.bottom))
 			return ZoneState.bottom;
 
-		ZoneState result = new ZoneState();
-		// Apply the preservation rule to each factoid.
-		for (ZoneFactoid factoid : input.factoids) {
-			if (!factoid.hasVar(lhs)) {
-				result.factoids.add(factoid);
-			}
-		}
-		// Apply the new factoid rule.
-		result.add(new ZoneFactoid(lhs, ZoneFactoid.ZERO_VAR, rhs));
-		result.add(new ZoneFactoid(ZoneFactoid.ZERO_VAR, lhs, IntConstant.v(-rhs.value)));
-
-		return result;
+		// Forget lhs and add the factoids lhs-V0<=c and V0-lhs<=-c.
+		return ZoneDomain.assign(input, lhs, ZoneFactoid.ZERO_VAR, rhs.value);
 	}
 }
\ No newline at end of file
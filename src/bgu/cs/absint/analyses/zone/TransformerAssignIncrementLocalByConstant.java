@@ -27,17 +27,7 @@ class TransformerAssignIncrementLocalByConstant extends UnaryOperation<ZoneState
 		if (input.equals(ZoneState.bottom))
 			return ZoneState.bottom;
 
-		ZoneState result = new ZoneState();
-		// Apply the preservation rule to each factoid.
-		for (ZoneFactoid factoid : input.factoids) {
-			if (!factoid.hasVar(lhs)) {
-				result.factoids.add(factoid);
-			} else if(factoid.rhs.equals(lhs)){ // Transform each relevant factoid.
-				result.add(new ZoneFactoid(factoid.lhs, factoid.rhs, (IntConstant)factoid.bound.subtract(op2)));
-			} else {
-				result.add(new ZoneFactoid(factoid.lhs, factoid.rhs, (IntConstant)factoid.bound.add(op2)));
-			}
-		}
-		return ZoneDomain.essential(result);
+		// Shift the bounds of the factoids over lhs by the constant.
+		return ZoneDomain.assign(input, lhs, lhs, op2.value);
 	}
 }
\ No newline at end of file
@@ -36,11 +36,10 @@ class TransformerAssumeLocalEqConstant extends
 		if (input.equals(ZoneState.bottom))
 			return ZoneState.bottom;
 
-		ZoneState result = new ZoneState(input);
 		if (polarity) {
-			result.factoids.add(new ZoneFactoid(lhs, ZoneFactoid.ZERO_VAR, rhs));
-			result.factoids.add(new ZoneFactoid(ZoneFactoid.ZERO_VAR, lhs, IntConstant.v(-rhs.value)));
+			return ZoneDomain.assumeEq(input, lhs, ZoneFactoid.ZERO_VAR, rhs.value);
 		} else { //if lhs!=rhs, we'll see if lhs<=rhs and change that to lhr<rhs. same for lhs>=rhs
+			ZoneState result = new ZoneState(input);
 			for (ZoneFactoid f : input.factoids) {
 				if (f.lhs.equals(lhs) && f.rhs.equals(ZoneFactoid.ZERO_VAR) && f.bound.equals(rhs)){
 					result.factoids.add(new ZoneFactoid(f.lhs, f.rhs, IntConstant.v(rhs.value-1)));
@@ -49,7 +48,7 @@ class TransformerAssumeLocalEqConstant extends
 					result.factoids.add(new ZoneFactoid(f.lhs, f.rhs, IntConstant.v(rhs.value+1)));
 				}
 			}
+			return ZoneDomain.essential(result);
 		}
-		return ZoneDomain.essential(result);
 	}
 }
\ No newline at end of file
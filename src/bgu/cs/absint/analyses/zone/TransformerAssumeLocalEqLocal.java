@@ -31,26 +31,13 @@ class TransformerAssumeLocalEqLocal extends
 
 	@Override
 	public ZoneState apply(ZoneState input) {
-		ZoneState result = new ZoneState(input);
 		if (polarity) {
-			for (ZoneFactoid factoid : input.factoids) {
-				//we might try to add existing items to the set - but disregard taht
-				if (factoid.rhs.equals(rhs)){
-					result.factoids.add(new ZoneFactoid(factoid.lhs, lhs, factoid.bound));
-				}
-				if(factoid.lhs.equals(rhs)){
-					result.factoids.add(new ZoneFactoid(lhs, factoid.rhs, factoid.bound));
-				}
-				if (factoid.rhs.equals(lhs)){
-					result.factoids.add(new ZoneFactoid(factoid.lhs, rhs, factoid.bound));
-				}
-				if(factoid.lhs.equals(lhs)){
-					result.factoids.add(new ZoneFactoid(rhs, factoid.rhs, factoid.bound));
-				}
-			}
+			// Adding x-y<=0 and y-x<=0 also copies the factoids of each
+			// variable to the other one.
+			return ZoneDomain.assumeEq(input, lhs, rhs, 0);
 		} else {
 			// is there anything to do here??
+			return input;
 		}
-		return ZoneDomain.essential(result);
 	}
 }
\ No newline at end of file
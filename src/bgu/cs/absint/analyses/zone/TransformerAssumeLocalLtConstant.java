@@ -32,12 +32,10 @@ class TransformerAssumeLocalLtConstant extends
 
 	@Override
 	public ZoneState apply(ZoneState input) {
-		ZoneState res = new ZoneState(input);
 		if (polarity) { //x<c -> x <= c-1
-			res.add(new ZoneFactoid(lhs, ZoneFactoid.ZERO_VAR, IntConstant.v(c.value-1)));
+			return ZoneDomain.assume(input, lhs, ZoneFactoid.ZERO_VAR, (long) c.value - 1);
 		} else { //x>=c -> V0-x <= -c
-			res.add(new ZoneFactoid(ZoneFactoid.ZERO_VAR, lhs, IntConstant.v(-c.value)));
+			return ZoneDomain.assume(input, ZoneFactoid.ZERO_VAR, lhs, -(long) c.value);
 		}
-		return res;
 	}
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package bgu.cs.absint.analyses.zone;
 
 import bgu.cs.absint.AssumeTransformer;
 import soot.Local;
-import soot.jimple.IntConstant;
 
 /**
  * A transformer for statements of the form {@code if (x<y)} and
@@ -32,12 +31,10 @@ class TransformerAssumeLocalLtLocal extends
 
 	@Override
 	public ZoneState apply(ZoneState input) {
-		ZoneState res = new ZoneState(input);
 		if (polarity) { //x<y -> x-y<0 --> x-y<= -1
-			res.add(new ZoneFactoid(lhs, rhs, IntConstant.v(-1)));
+			return ZoneDomain.assume(input, lhs, rhs, -1);
 		} else { //x>=y -> y-x <=0
-			res.add(new ZoneFactoid(rhs, lhs, IntConstant.v(0)));
+			return ZoneDomain.assume(input, rhs, lhs, 0);
 		}
-		return res;
 	}
 }
\ No newline at end of file
@@ -3,11 +3,17 @@ package bgu.cs.absint.analyses.zone;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import bgu.cs.absint.ComposedOperation;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.Ordering;
+import bgu.cs.absint.ThresholdWidening;
 import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.WideningThresholds;
 import bgu.cs.absint.constructor.EqualityRefiner;
 import bgu.cs.absint.soot.ForgetVarTransformer;
 import bgu.cs.absint.soot.TransformerMatcher;
@@ -29,7 +35,8 @@ import soot.jimple.ThisRef;
  * @author ???
  * 
  */
-public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements EqualityRefiner<Local> {
+public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements EqualityRefiner<Local>,
+		ThresholdWidening {
 	public static final IntConstant zero = IntConstant.v(0);
 
 	/**
@@ -42,10 +49,20 @@ public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements Equal
 	 */
 	protected ZonesMatcher matcher = new ZonesMatcher();
 
+	/**
+	 * The constants that unstable bounds are widened to.
+	 */
+	protected WideningThresholds thresholds = WideningThresholds.NONE;
+
 	public static final ZoneDomain v() {
 		return v;
 	}
 
+	@Override
+	public void setThresholds(WideningThresholds thresholds) {
+		this.thresholds = thresholds;
+	}
+
 	@Override
 	public ZoneState getBottom() {
 		return ZoneState.bottom;
@@ -63,19 +80,77 @@ public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements Equal
 		} else if (second == ZoneState.bottom || first == ZoneState.top) {
 			return first;
 		} else {
-			// Compute the max of the every entry of the two sets of {@link ZoneFactoids}.
+			// Compute the max of the every entry of the two closed difference matrices.
 			// The obvious max is infinite, which is the default. so if a relation only
 			// appears in one difference matrix, we won't include it.
-			ZoneState result = new ZoneState();
-			for (ZoneFactoid fact : first.getFactoids()) {
-				if (fact.existIn(second)) {
-					ZoneFactoid newFact = fact.max(second);
-					if (newFact != null)
-						result.add(newFact);
+			ZoneMatrix closure1 = closureOf(first);
+			if (closure1 == null)
+				return second;
+			ZoneMatrix closure2 = closureOf(second);
+			if (closure2 == null)
+				return first;
+			// The join of two closed matrices is closed.
+			ZoneMatrix result = closure1.copy();
+			for (int i = 0; i < result.n; ++i) {
+				for (int j = 0; j < result.n; ++j) {
+					long bound2 = closure2.get(result.vars[i], result.vars[j]);
+					if (bound2 > result.get(i, j))
+						result.m[i * result.n + j] = bound2;
+				}
+			}
+			return toClosedState(result);
+		}
+	}
+
+	/**
+	 * Computes the max of every entry of the closures of all feasible states
+	 * at once. Only the variables of the first feasible state can be bounded
+	 * in the result.
+	 */
+	@Override
+	public ZoneState ubAll(List<ZoneState> elems) {
+		ZoneState first = null;
+		ZoneState infeasible = null;
+		ZoneMatrix firstClosure = null;
+		ZoneMatrix result = null;
+		for (int k = 0; k < elems.size(); ++k) {
+			ZoneState elem = elems.get(k);
+			if (elem == ZoneState.top)
+				return ZoneState.top;
+			if (elem == ZoneState.bottom || elem == first)
+				continue;
+			ZoneMatrix closure = closureOf(elem);
+			if (closure == null) {
+				infeasible = elem;
+				continue;
+			}
+			if (first == null) {
+				first = elem;
+				firstClosure = closure;
+				continue;
+			}
+			if (result == null)
+				result = firstClosure.copy();
+			int[] toIndex = new int[result.n];
+			for (int i = 0; i < result.n; ++i)
+				toIndex[i] = closure.indexOf(result.vars[i]);
+			for (int i = 0; i < result.n; ++i) {
+				int i2 = toIndex[i];
+				for (int j = 0; j < result.n; ++j) {
+					int j2 = toIndex[j];
+					long bound = i2 >= 0 && j2 >= 0 ? closure.get(i2, j2)
+							: i == j ? 0 : ZoneMatrix.INF;
+					if (bound > result.get(i, j))
+						result.m[i * result.n + j] = bound;
 				}
 			}
-			return ZoneDomain.essential(result);
 		}
+		if (first == null)
+			return infeasible != null ? infeasible : ZoneState.bottom;
+		else if (result == null)
+			return first;
+		// The join of closed matrices is closed.
+		return toClosedState(result);
 	}
 
 	@Override
@@ -94,26 +169,78 @@ public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements Equal
 
 	@Override
 	public boolean leq(ZoneState first, ZoneState second) {
-		if (first == ZoneState.bottom || second == ZoneState.top) {
+		if (first == second || first == ZoneState.bottom || second == ZoneState.top) {
 			return true;
 		} else if (second == ZoneState.bottom || first == ZoneState.top) {
 			// first != bottom
 			return false;
 		}
-		// a loop over second.factoids and make sure each fact is covered by one of this
-		// facts
+		ZoneMatrix closure1 = closureOf(first);
+		if (closure1 == null)
+			return true;
+		// a loop over second.factoids and make sure each fact is implied by the
+		// closure of the first state
 		for (ZoneFactoid secondFact : second.getFactoids()) {
-			boolean covered = false;
-			for (ZoneFactoid firstFact : first.getFactoids()) {
-				if (firstFact.imply(secondFact)) {
-					covered = true;
+			if (closure1.get(secondFact.lhs, secondFact.rhs) > secondFact.bound.value)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the closures of the states entry by entry, which orders them
+	 * the same way as checking the factoids of each state against the closure
+	 * of the other, while closing each state only once.
+	 */
+	@Override
+	public Ordering compare(ZoneState first, ZoneState second) {
+		if (first == second)
+			return Ordering.EQUAL;
+		else if (first == ZoneState.bottom || second == ZoneState.top)
+			return Ordering.LESS;
+		else if (second == ZoneState.bottom || first == ZoneState.top)
+			return Ordering.GREATER;
+		ZoneMatrix closure1 = closureOf(first);
+		ZoneMatrix closure2 = closureOf(second);
+		if (closure1 == null)
+			return closure2 == null ? Ordering.EQUAL : Ordering.LESS;
+		else if (closure2 == null)
+			return Ordering.GREATER;
+
+		boolean leq = true;
+		boolean geq = true;
+		// Maps the indices of the first closure to the indices of the second
+		// one. The bounds of variables missing from a closure are INF, except
+		// on the diagonal.
+		int[] toIndex2 = new int[closure1.n];
+		for (int i = 0; i < closure1.n; ++i)
+			toIndex2[i] = closure2.indexOf(closure1.vars[i]);
+		for (int i = 0; i < closure1.n && (leq || geq); ++i) {
+			int i2 = toIndex2[i];
+			for (int j = 0; j < closure1.n; ++j) {
+				int j2 = toIndex2[j];
+				long bound1 = closure1.get(i, j);
+				long bound2 = i2 >= 0 && j2 >= 0 ? closure2.get(i2, j2)
+						: i == j ? 0 : ZoneMatrix.INF;
+				if (bound1 > bound2)
+					leq = false;
+				else if (bound1 < bound2)
+					geq = false;
+			}
+		}
+		// The bounds of the second closure involving variables missing from
+		// the first one can only be tighter than the ones of the first closure.
+		for (int i = 0; i < closure2.n && leq; ++i) {
+			boolean missing1 = closure1.indexOf(closure2.vars[i]) < 0;
+			for (int j = 0; j < closure2.n; ++j) {
+				if (i != j && closure2.get(i, j) != ZoneMatrix.INF
+						&& (missing1 || closure1.indexOf(closure2.vars[j]) < 0)) {
+					leq = false;
 					break;
 				}
 			}
-			if (!covered)
-				return false;
 		}
-		return true;
+		return Ordering.of(leq, geq);
 	}
 
 	@Override
@@ -121,16 +248,43 @@ public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements Equal
 		if (first == ZoneState.bottom) {
 			return second;
 		}
+		ZoneMatrix closure2 = closureOf(second); // getting rid of redundancy
+		if (closure2 == null)
+			return first;
 		ZoneState newState = new ZoneState();
-		ZoneState reducedSecond = reduce(second); // getting rid of redundancy
 		for (ZoneFactoid f : first.getFactoids()) {
-			if (!f.ImpliedByNEQ(reducedSecond))
+			if (f.lhs == f.rhs || closure2.get(f.lhs, f.rhs) <= f.bound.value) {
 				newState.add(f);
+			} else {
+				// Relax the unstable bound to the next threshold, if any.
+				long bound = widenBound(f, closure2.get(f.lhs, f.rhs));
+				if (bound != ZoneMatrix.INF)
+					newState.add(new ZoneFactoid(f.lhs, f.rhs, IntConstant.v((int) bound)));
+			}
 		}
 		return newState;
 
 	}
 
+	/**
+	 * Returns the least threshold above the given bound of the given factoid,
+	 * or {@link ZoneMatrix#INF} if there is none. For a factoid of the form
+	 * {@code V0-x<=c}, which stands for {@code x>=-c}, the lower bound of x is
+	 * relaxed to the greatest threshold below it.
+	 */
+	protected long widenBound(ZoneFactoid f, long bound) {
+		if (bound == ZoneMatrix.INF)
+			return ZoneMatrix.INF;
+		long result;
+		if (f.lhs == ZoneFactoid.ZERO_VAR) {
+			long lowerBound = thresholds.previous(-bound);
+			result = lowerBound == Long.MIN_VALUE ? ZoneMatrix.INF : -lowerBound;
+		} else {
+			result = thresholds.next(bound);
+		}
+		return result > Integer.MAX_VALUE || result < Integer.MIN_VALUE ? ZoneMatrix.INF : result;
+	}
+
 	@Override
 	public ZoneState narrow(ZoneState first, ZoneState second) {
 		if (second == ZoneState.bottom) {
@@ -159,7 +313,8 @@ public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements Equal
 
 	/**
 	 * A reduction operator. The operator adds factoids by computing the transitive
-	 * closure of the zone relation.
+	 * closure of the zone relation, and returns bottom if the factoids are
+	 * unsatisfiable.
 	 */
 	@Override
 	public ZoneState reduce(ZoneState input) {
@@ -168,47 +323,123 @@ public class ZoneDomain extends AbstractDomain<ZoneState, Unit> implements Equal
 			return ZoneState.bottom;
 		if (input.equals(ZoneState.top))
 			return ZoneState.top;
+		// The state is already closed.
+		if (input.getClosure() != null)
+			return input;
 
-		ZoneState result = new ZoneState(input);
-		boolean changed = true;
-		while (changed) {
-			result = essential(result);
-			if (result.equivToBottom()) {
-				return ZoneState.bottom;
-			}
-			changed = false;
-			for (ZoneFactoid f1 : result.getFactoids()) {
-				for (ZoneFactoid f2 : result.getFactoids()) { // checking if f1 and f2 has a transitive fact for f1.lhs
-					if (f1.rhs.equals(f2.lhs)) {
-						IntConstant add = IntConstant.v(f1.bound.value + f2.bound.value);
-						ZoneFactoid transFact = new ZoneFactoid(f1.lhs, f2.rhs, add);
-						if (!transFact.ImpliedBy(result) && !transFact.lhs.equals(transFact.rhs)) {
-							result.add(transFact);
-							changed = true;
-							break; // loop invalid after changing result
-						}
-					}
-				}
-				if (changed)
-					break; // loop invalid after changing result
-			}
-		}
-		result = essential(result);
-		if (result.equivToBottom()) {
+		ZoneMatrix closure = closureOf(input);
+		if (closure == null)
 			return ZoneState.bottom;
-		}
-		return result;
+		return toClosedState(closure);
 	}
 
 	// removes redundant factoids.
 	static public ZoneState essential(ZoneState input) {
-		ZoneState finalRes = new ZoneState();
-		for (ZoneFactoid f1 : input.getFactoids()) {
-			finalRes.add(f1.min(input));
+		Map<Pair<Local, Local>, ZoneFactoid> pairToFactoid = new HashMap<>();
+		for (ZoneFactoid f : input.getFactoids()) {
+			Pair<Local, Local> pair = new Pair<>(f.lhs, f.rhs);
+			ZoneFactoid current = pairToFactoid.get(pair);
+			if (current == null || f.bound.value < current.bound.value)
+				pairToFactoid.put(pair, f);
 		}
+		ZoneState finalRes = new ZoneState();
+		finalRes.factoids.addAll(pairToFactoid.values());
 		return finalRes;
 	}
 
+	/**
+	 * Returns the closed matrix of the given state, or null if the state is
+	 * bottom or its factoids are unsatisfiable. Takes cubic time unless the
+	 * state is already closed.
+	 */
+	static public ZoneMatrix closureOf(ZoneState input) {
+		if (input == ZoneState.bottom)
+			return null;
+		ZoneMatrix closure = input.getClosure();
+		if (closure != null)
+			return closure;
+		closure = ZoneMatrix.of(input);
+		if (!closure.close())
+			return null;
+		return closure;
+	}
+
+	/**
+	 * Returns the state of the given closed matrix, which it remembers.
+	 */
+	static public ZoneState toClosedState(ZoneMatrix closure) {
+		ZoneState result = closure.toState();
+		result.setClosure(closure);
+		return result;
+	}
+
+	/**
+	 * Adds the constraint {@code x - y <= c} to the given state, restoring
+	 * closure in quadratic time if the state is already closed.
+	 * 
+	 * @return The closed resulting state.
+	 */
+	static public ZoneState assume(ZoneState input, Local x, Local y, long c) {
+		ZoneMatrix result = extendedClosureOf(input, x, y);
+		if (result == null || !result.addConstraint(result.indexOf(x), result.indexOf(y), c))
+			return ZoneState.bottom;
+		return toClosedState(result);
+	}
+
+	/**
+	 * Adds the constraint {@code x - y == c} to the given state, restoring
+	 * closure in quadratic time if the state is already closed.
+	 * 
+	 * @return The closed resulting state.
+	 */
+	static public ZoneState assumeEq(ZoneState input, Local x, Local y, long c) {
+		ZoneMatrix result = extendedClosureOf(input, x, y);
+		if (result == null)
+			return ZoneState.bottom;
+		int i = result.indexOf(x);
+		int j = result.indexOf(y);
+		if (!result.addConstraint(i, j, c) || !result.addConstraint(j, i, -c))
+			return ZoneState.bottom;
+		return toClosedState(result);
+	}
+
+	/**
+	 * Applies the assignment {@code lhs = rhs + c} to the given state, where
+	 * rhs may be {@link ZoneFactoid#ZERO_VAR} for assigning a constant and may
+	 * be lhs itself for an increment. Takes quadratic time if the state is
+	 * already closed.
+	 * 
+	 * @return The closed resulting state.
+	 */
+	static public ZoneState assign(ZoneState input, Local lhs, Local rhs, long c) {
+		ZoneMatrix result = extendedClosureOf(input, lhs, rhs);
+		if (result == null)
+			return ZoneState.bottom;
+		int i = result.indexOf(lhs);
+		int j = result.indexOf(rhs);
+		if (i == j) {
+			result.shift(i, c);
+		} else {
+			result.forget(i);
+			result.addConstraint(i, j, c);
+			result.addConstraint(j, i, -c);
+		}
+		return toClosedState(result);
+	}
+
+	/**
+	 * Returns a modifiable copy of the closed matrix of the given state that
+	 * includes the given variables, or null if the state is bottom.
+	 */
+	static protected ZoneMatrix extendedClosureOf(ZoneState input, Local x, Local y) {
+		ZoneMatrix closure = closureOf(input);
+		if (closure == null)
+			return null;
+		if (closure.indexOf(x) < 0 || closure.indexOf(y) < 0)
+			return closure.extend(x, y);
+		return closure.copy();
+	}
+
 	@Override
 	public ZoneState refineByEqualities(Object input, Collection<Pair<Local, Local>> equalities) {
 		ZoneState state = (ZoneState) input;
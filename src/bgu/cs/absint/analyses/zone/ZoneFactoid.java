@@ -1,5 +1,7 @@
 package bgu.cs.absint.analyses.zone;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import bgu.cs.absint.soot.SootFactoid;
@@ -66,6 +68,11 @@ public class ZoneFactoid extends SootFactoid {
 		return lhs + "-" + rhs + "<=" + bound;
 	}
 
+	@Override
+	public List<Local> getVars() {
+		return Arrays.asList(lhs, rhs);
+	}
+
 	@Override
 	public void addVarsTo(Set<Local> c) {
 		c.add(lhs);
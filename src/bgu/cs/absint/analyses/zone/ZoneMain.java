@@ -2,6 +2,9 @@ package bgu.cs.absint.analyses.zone;
 
 import soot.PackManager;
 import soot.Transform;
+import soot.Unit;
+import bgu.cs.absint.constructor.PackedDomain;
+import bgu.cs.absint.constructor.ProductState;
 import bgu.cs.absint.soot.BaseAnalysis;
 
 /**
@@ -21,4 +24,16 @@ public class ZoneMain {
 			useWidening(true);
 		}
 	}
+
+	/**
+	 * Tracks relations only between locals of the same pack (see
+	 * {@link bgu.cs.absint.soot.LocalPacking}).
+	 */
+	public static class PackedZonesAnalysis extends
+			BaseAnalysis<ProductState, PackedDomain<ZoneState, Unit>> {
+		public PackedZonesAnalysis() {
+			super(new PackedDomain<ZoneState, Unit>(ZoneDomain.v()));
+			useWidening(true);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,260 @@
+package bgu.cs.absint.analyses.zone;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Local;
+import soot.jimple.IntConstant;
+
+/**
+ * A difference-bound matrix (DBM) representation of a {@link ZoneState}. The
+ * variables are given dense indices, where {@link ZoneFactoid#ZERO_VAR} always
+ * has index 0, and the entry at row i and column j holds the bound c of the
+ * constraint {@code vars[i] - vars[j] <= c}, or {@link #INF} if there is no
+ * such constraint.<br>
+ * Bounds are kept as longs so sums of two bounds do not overflow.
+ *
+ * @author romanm
+ */
+public class ZoneMatrix {
+	/**
+	 * Stands for the absence of a constraint.
+	 */
+	public static final long INF = Long.MAX_VALUE;
+
+	/**
+	 * The variables, indexed densely.
+	 */
+	protected final Local[] vars;
+
+	/**
+	 * Maps each variable to its index.
+	 */
+	protected final Map<Local, Integer> varToIndex;
+
+	/**
+	 * The number of variables.
+	 */
+	protected final int n;
+
+	/**
+	 * The bounds in row-major order.
+	 */
+	protected final long[] m;
+
+	/**
+	 * Constructs a matrix without constraints over the given variables and
+	 * {@link ZoneFactoid#ZERO_VAR}.
+	 */
+	public ZoneMatrix(Set<Local> vars) {
+		Set<Local> allVars = new LinkedHashSet<>();
+		allVars.add(ZoneFactoid.ZERO_VAR);
+		allVars.addAll(vars);
+		this.n = allVars.size();
+		this.vars = allVars.toArray(new Local[n]);
+		this.varToIndex = new HashMap<>(2 * n);
+		for (int i = 0; i < n; ++i) {
+			varToIndex.put(this.vars[i], i);
+		}
+		this.m = new long[n * n];
+		Arrays.fill(m, INF);
+		for (int i = 0; i < n; ++i) {
+			m[i * n + i] = 0;
+		}
+	}
+
+	/**
+	 * Constructs a matrix holding the tightest bound among the factoids of the
+	 * given (non-bottom) state for each pair of variables. The matrix is not
+	 * closed.
+	 */
+	public static ZoneMatrix of(ZoneState state) {
+		ZoneMatrix result = new ZoneMatrix(state.getVars());
+		for (ZoneFactoid factoid : state.getFactoids()) {
+			int i = result.varToIndex.get(factoid.lhs);
+			int j = result.varToIndex.get(factoid.rhs);
+			result.tighten(i, j, factoid.bound.value);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of this matrix over the same variables extended by the
+	 * given ones, which are left unconstrained. A closed matrix stays closed.
+	 */
+	public ZoneMatrix extend(Local... newVars) {
+		Set<Local> allVars = new LinkedHashSet<>(Arrays.asList(vars));
+		allVars.addAll(Arrays.asList(newVars));
+		ZoneMatrix result = new ZoneMatrix(allVars);
+		// The variables of this matrix keep their indices.
+		for (int i = 0; i < n; ++i) {
+			System.arraycopy(m, i * n, result.m, i * result.n, n);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of this matrix.
+	 */
+	public ZoneMatrix copy() {
+		return new ZoneMatrix(this);
+	}
+
+	/**
+	 * Returns the index of the given variable, or -1 if it is not in the
+	 * matrix.
+	 */
+	public int indexOf(Local var) {
+		Integer result = varToIndex.get(var);
+		return result == null ? -1 : result;
+	}
+
+	/**
+	 * Returns the bound on {@code x - y}, or {@link #INF} if there is none.
+	 */
+	public long get(Local x, Local y) {
+		int i = indexOf(x);
+		int j = indexOf(y);
+		if (i < 0 || j < 0)
+			return x == y ? 0 : INF;
+		return m[i * n + j];
+	}
+
+	/**
+	 * Returns the bound at the given indices.
+	 */
+	public long get(int i, int j) {
+		return m[i * n + j];
+	}
+
+	/**
+	 * Lowers the bound on {@code vars[i] - vars[j]} to c, if c is tighter.
+	 * Does not restore closure.
+	 */
+	public void tighten(int i, int j, long c) {
+		if (c < m[i * n + j])
+			m[i * n + j] = c;
+	}
+
+	/**
+	 * Computes the shortest-path closure of the matrix with the
+	 * Floyd-Warshall algorithm in time cubic in the number of variables.
+	 *
+	 * @return false if the constraints are unsatisfiable (there is a negative
+	 *         cycle), and true otherwise.
+	 */
+	public boolean close() {
+		for (int k = 0; k < n; ++k) {
+			int kRow = k * n;
+			for (int i = 0; i < n; ++i) {
+				long ik = m[i * n + k];
+				if (ik == INF)
+					continue;
+				int iRow = i * n;
+				for (int j = 0; j < n; ++j) {
+					long kj = m[kRow + j];
+					if (kj != INF && ik + kj < m[iRow + j])
+						m[iRow + j] = ik + kj;
+				}
+			}
+			if (m[k * n + k] < 0)
+				return false;
+		}
+		for (int i = 0; i < n; ++i) {
+			if (m[i * n + i] < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the constraint {@code vars[i] - vars[j] <= c} to a closed matrix and
+	 * restores closure in time quadratic in the number of variables.
+	 *
+	 * @return false if the constraints become unsatisfiable, and true
+	 *         otherwise.
+	 */
+	public boolean addConstraint(int i, int j, long c) {
+		if (c >= m[i * n + j])
+			return true;
+		long ji = m[j * n + i];
+		if (ji != INF && ji + c < 0)
+			return false;
+		// Every new shortest path from k to l passes through the new edge.
+		long[] toI = new long[n];
+		long[] fromJ = new long[n];
+		for (int k = 0; k < n; ++k) {
+			toI[k] = m[k * n + i];
+			fromJ[k] = m[j * n + k];
+		}
+		for (int k = 0; k < n; ++k) {
+			if (toI[k] == INF)
+				continue;
+			long ki = toI[k] + c;
+			int kRow = k * n;
+			for (int l = 0; l < n; ++l) {
+				if (fromJ[l] != INF && ki + fromJ[l] < m[kRow + l])
+					m[kRow + l] = ki + fromJ[l];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes all constraints over the variable at the given index. A closed
+	 * matrix stays closed.
+	 */
+	public void forget(int i) {
+		for (int k = 0; k < n; ++k) {
+			if (k != i) {
+				m[i * n + k] = INF;
+				m[k * n + i] = INF;
+			}
+		}
+	}
+
+	/**
+	 * Adds c to the variable at the given index, i.e., applies the assignment
+	 * {@code x = x + c}. A closed matrix stays closed.
+	 */
+	public void shift(int i, long c) {
+		for (int k = 0; k < n; ++k) {
+			if (k == i)
+				continue;
+			if (m[i * n + k] != INF)
+				m[i * n + k] += c;
+			if (m[k * n + i] != INF)
+				m[k * n + i] -= c;
+		}
+	}
+
+	/**
+	 * Returns a state with one factoid for each bounded pair of distinct
+	 * variables. Bounds that do not fit in an int are relaxed.
+	 */
+	public ZoneState toState() {
+		ZoneState result = new ZoneState();
+		for (int i = 0; i < n; ++i) {
+			for (int j = 0; j < n; ++j) {
+				long c = m[i * n + j];
+				if (i == j || c == INF || c > Integer.MAX_VALUE)
+					continue;
+				if (c < Integer.MIN_VALUE)
+					c = Integer.MIN_VALUE;
+				result.factoids.add(new ZoneFactoid(vars[i], vars[j],
+						IntConstant.v((int) c)));
+			}
+		}
+		return result;
+	}
+
+	protected ZoneMatrix(ZoneMatrix copyFrom) {
+		this.vars = copyFrom.vars;
+		this.varToIndex = copyFrom.varToIndex;
+		this.n = copyFrom.n;
+		this.m = copyFrom.m.clone();
+	}
+}
\ No newline at end of file
@@ -53,10 +53,37 @@ public class ZoneState extends ConjunctiveState<Local, ZoneFactoid> {
 		}
 	};
 
+	/**
+	 * The closed matrix this state was obtained from, if any. The factoids of
+	 * a state must not be modified after the matrix is set, and the number of
+	 * factoids at that time is kept as a sanity check.
+	 */
+	private ZoneMatrix closure = null;
+	private int closureSize = -1;
+
 	public ZoneState() {
 		super();
 	}
 
+	/**
+	 * Returns the closed matrix this state was obtained from, or null if this
+	 * state is not known to be closed.
+	 */
+	public ZoneMatrix getClosure() {
+		if (closure != null && factoids != null && closureSize == factoids.size())
+			return closure;
+		return null;
+	}
+
+	/**
+	 * Records that this state was obtained from the given closed matrix (see
+	 * {@link ZoneMatrix#toState()}).
+	 */
+	public void setClosure(ZoneMatrix closure) {
+		this.closure = closure;
+		this.closureSize = factoids.size();
+	}
+
 	@Override
 	public ZoneState copy() {
 		if (this == bottom)
@@ -8,7 +8,11 @@ import java.util.List;
 import bgu.cs.absint.ComposedOperation;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.Ordering;
+import bgu.cs.absint.ProgramSpecificDomain;
+import bgu.cs.absint.ThresholdWidening;
 import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.WideningThresholds;
 import bgu.cs.util.Pair;
 import bgu.cs.util.StringUtils;
 
@@ -18,7 +22,8 @@ import bgu.cs.util.StringUtils;
  * @author romanm
  */
 public class CartesianDomain<ActionType, VarType> extends
-		AbstractDomain<ProductState, ActionType> {
+		AbstractDomain<ProductState, ActionType> implements ThresholdWidening,
+		ProgramSpecificDomain<ActionType> {
 	private UnaryOperation<ProductState> cachedReductionByEqualityOperation = null;
 
 	/**
@@ -83,6 +88,31 @@ public class CartesianDomain<ActionType, VarType> extends
 		};
 	}
 
+	/**
+	 * Passes the thresholds to the component domains that support them.
+	 */
+	@Override
+	public void setThresholds(WideningThresholds thresholds) {
+		for (AbstractDomain<?, ActionType> domain : domains) {
+			if (domain instanceof ThresholdWidening)
+				((ThresholdWidening) domain).setThresholds(thresholds);
+		}
+	}
+
+	/**
+	 * Prepares the component domains that depend on the analyzed program.
+	 */
+	@Override
+	public void prepare(Collection<ActionType> actions) {
+		for (AbstractDomain<?, ActionType> domain : domains) {
+			if (domain instanceof ProgramSpecificDomain) {
+				@SuppressWarnings("unchecked")
+				ProgramSpecificDomain<ActionType> specificDomain = (ProgramSpecificDomain<ActionType>) domain;
+				specificDomain.prepare(actions);
+			}
+		}
+	}
+
 	/**
 	 * Returns a ProductState of bottom elements, each from its corresponding
 	 * domain.
@@ -159,13 +189,40 @@ public class CartesianDomain<ActionType, VarType> extends
 	 */
 	@Override
 	public boolean leq(ProductState elem1, ProductState elem2) {
+		if (elem1 == elem2)
+			return true;
 		for (int i = 0; i < size; ++i) {
-			if (!domains[i].unsafeLeq(elem1.get(i), elem2.get(i)))
+			Object component1 = elem1.get(i);
+			Object component2 = elem2.get(i);
+			if (component1 != component2
+					&& !domains[i].unsafeLeq(component1, component2))
 				return false;
 		}
 		return true;
 	}
 
+	/**
+	 * Combines the orderings of the components, stopping as soon as two
+	 * components disagree.
+	 */
+	@Override
+	public Ordering compare(ProductState elem1, ProductState elem2) {
+		if (elem1 == elem2)
+			return Ordering.EQUAL;
+		Ordering result = Ordering.EQUAL;
+		for (int i = 0; i < size; ++i) {
+			Object component1 = elem1.get(i);
+			Object component2 = elem2.get(i);
+			if (component1 == component2)
+				continue;
+			result = result.and(domains[i].unsafeCompare(component1,
+					component2));
+			if (result == Ordering.INCOMPARABLE)
+				break;
+		}
+		return result;
+	}
+
 	@Override
 	public UnaryOperation<ProductState> getTransformer(ActionType action) {
 		boolean allIdTransformers = true;
@@ -255,7 +312,8 @@ public class CartesianDomain<ActionType, VarType> extends
 					}
 					// The sub-state has decreased due to the refinement.
 					if (refinedSubstate != null
-							&& domains[i].unsafeLt(refinedSubstate, subState)) {
+							&& domains[i].unsafeCompare(refinedSubstate,
+									subState) == Ordering.LESS) {
 						change = true;
 						refinedSubstate = domains[i]
 								.unsafeReduce(refinedSubstate);
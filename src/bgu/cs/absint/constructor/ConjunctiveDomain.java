@@ -1,6 +1,7 @@
 package bgu.cs.absint.constructor;
 
 import java.util.Collection;
+import java.util.List;
 
 import bgu.cs.absint.AbstractDomain;
 
@@ -25,7 +26,7 @@ public abstract class ConjunctiveDomain<VarType, F extends Factoid<VarType>, Sta
 
 	@Override
 	public StateType ub(StateType elem1, StateType elem2) {
-		if (elem1.equals(getBottom())) {
+		if (elem1 == elem2 || elem1.equals(getBottom())) {
 			return elem2;
 		} else if (elem2.equals(getBottom())) {
 			return elem1;
@@ -70,19 +71,42 @@ public abstract class ConjunctiveDomain<VarType, F extends Factoid<VarType>, Sta
 		}
 	}
 
+	/**
+	 * Checks that the first state implies each factoid of the second one (see
+	 * {@link #leq(ConjunctiveState, Factoid)}). This agrees with the
+	 * order defined by {@link #ub} as long as the upper bound keeps exactly
+	 * the implied factoids. Subclasses whose upper bound derives other
+	 * factoids should decide the order by {@link #leqByJoin}.
+	 */
 	@Override
 	public boolean leq(StateType elem1, StateType elem2) {
-		if (elem1.equals(getBottom())) {
+		if (elem1 == elem2 || elem1.equals(getBottom())) {
 			return true;
 		} else if (elem2.equals(getBottom())) {
 			return false;
 		} else {
-			// Define the order relation via join: x <= y iff x join y = y.
-			StateType ubElem1Elem2 = ub(elem1, elem2);
+			// x <= y iff x implies each factoid of y, which is what checking
+			// that x join y contains the factoids of y amounts to.
+			for (F factoid : elem2) {
+				if (!leq(elem1, factoid))
+					return false;
+			}
+			return true;
+		}
+	}
 
-			// Check that ubElem1Elem2 is leq elem2 by checking that
-			// Check that ubElem1Elem2 contains all of the factoids of elem2.
-			Collection<F> ubElem1Elem2Factoids = ubElem1Elem2.getFactoids();
+	/**
+	 * Defines the order relation via the upper bound: x <= y iff x join y
+	 * contains all of the factoids of y.
+	 */
+	protected boolean leqByJoin(StateType elem1, StateType elem2) {
+		if (elem1.equals(getBottom())) {
+			return true;
+		} else if (elem2.equals(getBottom())) {
+			return false;
+		} else {
+			Collection<F> ubElem1Elem2Factoids = ub(elem1, elem2)
+					.getFactoids();
 			for (F factoid : elem2.getFactoids()) {
 				if (!ubElem1Elem2Factoids.contains(factoid))
 					return false;
@@ -101,10 +125,17 @@ public abstract class ConjunctiveDomain<VarType, F extends Factoid<VarType>, Sta
 	 *            A factoid.
 	 * @return The current implementation checks whether there exists a factoid
 	 *         in the state that implies the given factoid by checking whether
-	 *         it is less than or equal to it.
+	 *         it is less than or equal to it. Only the factoids containing the
+	 *         first variable of the given factoid (see
+	 *         {@link ConjunctiveState#getFactoidsWithVar}) are checked, since
+	 *         a factoid is assumed to be implied only by factoids over the
+	 *         same variable.
 	 */
 	public boolean leq(StateType s, F f) {
-		for (F factoidInState : s) {
+		List<VarType> vars = f.getVars();
+		Iterable<F> candidates = vars.isEmpty() ? s : s
+				.getFactoidsWithVar(vars.get(0));
+		for (F factoidInState : candidates) {
 			if (factoidInState.leq(f))
 				return true;
 		}
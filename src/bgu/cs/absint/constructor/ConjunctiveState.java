@@ -1,9 +1,12 @@
 package bgu.cs.absint.constructor;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import soot.Local;
@@ -13,7 +16,10 @@ import bgu.cs.util.StringUtils;
  * A base class for abstract states that have the form of a conjunction of basic
  * facts (subclasses of {@link Factoid}) over program variables.<br>
  * NOTE: as a convention getFactoids() should return null to indicate the bottom
- * state.
+ * state.<br>
+ * A state can optionally index its factoids by the variables they contain
+ * (see {@link #indexVars()}), so that operations concerning a single variable
+ * take time proportional to the number of factoids containing it.
  * 
  * @author romanm
  * 
@@ -29,6 +35,12 @@ public abstract class ConjunctiveState<VarType, F extends Factoid<VarType>>
 	 */
 	public final HashSet<F> factoids;
 
+	/**
+	 * Maps each variable to the factoids containing it, or null if the
+	 * factoids are not indexed.
+	 */
+	protected HashMap<VarType, Set<F>> varToFactoids;
+
 	/**
 	 * Constructs a state with an empty set of factoids.
 	 */
@@ -65,7 +77,24 @@ public abstract class ConjunctiveState<VarType, F extends Factoid<VarType>>
 	 * @return true if the element has changed due to the addition.
 	 */
 	public boolean add(F factoid) {
-		return factoids.add(factoid);
+		if (!factoids.add(factoid))
+			return false;
+		if (varToFactoids != null)
+			index(factoid);
+		return true;
+	}
+
+	/**
+	 * Removes the given factoid from this state.
+	 * 
+	 * @return true if the element has changed due to the removal.
+	 */
+	public boolean remove(F factoid) {
+		if (!factoids.remove(factoid))
+			return false;
+		if (varToFactoids != null)
+			unindex(factoid, null);
+		return true;
 	}
 
 	/**
@@ -75,6 +104,17 @@ public abstract class ConjunctiveState<VarType, F extends Factoid<VarType>>
 	 *            The variable to be removed from the state.
 	 */
 	public boolean removeVar(VarType lhs) {
+		if (varToFactoids != null) {
+			Set<F> varFactoids = varToFactoids.remove(lhs);
+			if (varFactoids == null)
+				return false;
+			for (F factoid : varFactoids) {
+				factoids.remove(factoid);
+				unindex(factoid, lhs);
+			}
+			return true;
+		}
+
 		boolean result = false;
 		for (Iterator<F> iter = factoids.iterator(); iter.hasNext();) {
 			F factoid = iter.next();
@@ -94,7 +134,47 @@ public abstract class ConjunctiveState<VarType, F extends Factoid<VarType>>
 		return factoids;
 	}
 
+	/**
+	 * Returns the factoids containing the given variable. The result should
+	 * not be modified.
+	 */
+	public Collection<F> getFactoidsWithVar(VarType var) {
+		if (varToFactoids != null) {
+			Set<F> result = varToFactoids.get(var);
+			return result == null ? Collections.<F> emptySet() : result;
+		}
+
+		ArrayList<F> result = new ArrayList<>();
+		for (F factoid : this) {
+			if (factoid.hasVar(var))
+				result.add(factoid);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether some factoid contains the given variable, which is false
+	 * for the bottom state. Subclasses that do not keep their factoids in the
+	 * set of the base class should override this method to avoid creating
+	 * their factoids.
+	 */
+	public boolean hasVar(VarType var) {
+		if (varToFactoids != null)
+			return varToFactoids.containsKey(var);
+		Collection<F> stateFactoids = getFactoids();
+		if (stateFactoids == null)
+			return false;
+		for (F factoid : stateFactoids) {
+			if (factoid.hasVar(var))
+				return true;
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
 	public Set<Local> getVars() {
+		if (varToFactoids != null)
+			return new HashSet<>((Set<Local>) (Set<?>) varToFactoids.keySet());
 		HashSet<Local> vars = new HashSet<>();
 		for (F factoid : getFactoids()) {
 			factoid.addVarsTo(vars);
@@ -130,8 +210,13 @@ public abstract class ConjunctiveState<VarType, F extends Factoid<VarType>>
 		}
 	}
 
+	/**
+	 * Hashes the set of factoids. Subclasses that do not keep their factoids
+	 * in the set of the base class should override this method, along with
+	 * {@link #equals}, to avoid creating their factoids.
+	 */
 	@Override
-	public final int hashCode() {
+	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result
@@ -139,8 +224,11 @@ public abstract class ConjunctiveState<VarType, F extends Factoid<VarType>>
 		return result;
 	}
 
+	/**
+	 * Compares the sets of factoids.
+	 */
 	@Override
-	public final boolean equals(Object obj) {
+	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
 		ConjunctiveState<?, ?> other = (ConjunctiveState<?, ?>) obj;
@@ -161,6 +249,62 @@ public abstract class ConjunctiveState<VarType, F extends Factoid<VarType>>
 		this.factoids = new HashSet<F>(factoids);
 	}
 
+	/**
+	 * Constructs a state with the factoids of the given state, and the index
+	 * of the factoids by variables if the given state has one.
+	 */
+	protected ConjunctiveState(ConjunctiveState<VarType, F> copyFrom) {
+		this.factoids = new HashSet<F>(copyFrom.factoids);
+		if (copyFrom.varToFactoids != null) {
+			varToFactoids = new HashMap<>(copyFrom.varToFactoids.size() * 4 / 3 + 1);
+			for (Map.Entry<VarType, Set<F>> entry : copyFrom.varToFactoids
+					.entrySet()) {
+				varToFactoids.put(entry.getKey(), new HashSet<>(entry.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Starts indexing the factoids of the base class set by their variables
+	 * (see {@link Factoid#getVars()}). Subclasses call this method from their
+	 * constructors, provided they only modify the factoids via
+	 * {@link #add}, {@link #remove} and {@link #removeVar}.
+	 */
+	protected void indexVars() {
+		varToFactoids = new HashMap<>();
+		for (F factoid : factoids) {
+			index(factoid);
+		}
+	}
+
+	private void index(F factoid) {
+		for (VarType var : factoid.getVars()) {
+			Set<F> varFactoids = varToFactoids.get(var);
+			if (varFactoids == null) {
+				varFactoids = new HashSet<>();
+				varToFactoids.put(var, varFactoids);
+			}
+			varFactoids.add(factoid);
+		}
+	}
+
+	/**
+	 * Removes the given factoid from the index entries of its variables,
+	 * except for the given variable, whose entry is already removed.
+	 */
+	private void unindex(F factoid, VarType removedVar) {
+		for (VarType var : factoid.getVars()) {
+			if (var == removedVar)
+				continue;
+			Set<F> varFactoids = varToFactoids.get(var);
+			if (varFactoids != null) {
+				varFactoids.remove(factoid);
+				if (varFactoids.isEmpty())
+					varToFactoids.remove(var);
+			}
+		}
+	}
+
 	/**
 	 * A constructor just for initializing factoids to null, used to represent
 	 * the bottom state.
@@ -6,6 +6,7 @@ import java.util.HashSet;
 
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.Ordering;
 import bgu.cs.absint.UnaryOperation;
 
 /**
@@ -166,6 +167,41 @@ public class DisjunctiveDomain<StateType, ActionType> extends
 		return true;
 	}
 
+	/**
+	 * Compares each pair of disjuncts at most once, recording the subsumed
+	 * disjuncts of both states.
+	 */
+	@Override
+	public Ordering compare(DisjunctiveState<StateType> elem1,
+			DisjunctiveState<StateType> elem2) {
+		if (elem1 == elem2)
+			return Ordering.EQUAL;
+		boolean[] subsumed2 = new boolean[elem2.size()];
+		int numOfSubsumed2 = 0;
+		boolean leq = true;
+		for (StateType sub1 : elem1) {
+			boolean subsumed1 = false;
+			int j = 0;
+			for (StateType sub2 : elem2) {
+				if (!subsumed1 || !subsumed2[j]) {
+					Ordering ordering = baseDomain.compare(sub1, sub2);
+					if (ordering == Ordering.LESS
+							|| ordering == Ordering.EQUAL)
+						subsumed1 = true;
+					if (!subsumed2[j]
+							&& (ordering == Ordering.GREATER || ordering == Ordering.EQUAL)) {
+						subsumed2[j] = true;
+						++numOfSubsumed2;
+					}
+				}
+				++j;
+			}
+			if (!subsumed1)
+				leq = false;
+		}
+		return Ordering.of(leq, numOfSubsumed2 == subsumed2.length);
+	}
+
 	/**
 	 * A transformer that operates by applying a sub-transformer to each
 	 * component separately.
@@ -1,6 +1,6 @@
 package bgu.cs.absint.constructor;
 
-import java.lang.reflect.Field;
+import java.util.List;
 import java.util.Set;
 
 import soot.Local;
@@ -19,51 +19,39 @@ public abstract class Factoid<VarType> {
 	 */
 	public abstract boolean equalVars(VarType v1, VarType v2);
 
+	/**
+	 * Returns the variables that appear in the fact. The result should not be
+	 * modified.
+	 */
+	public abstract List<VarType> getVars();
+
 	/**
 	 * Determines whether the fact contains the given variable. The default
-	 * implementation uses reflection to find variables in the fields of the
-	 * class implementing the factoid (the class extending this one).
+	 * implementation looks for the variable in {@link #getVars()}.
 	 * 
 	 * @param var
 	 *            A program variable.
 	 * @return true if the fact contains the given program variable.
 	 */
 	public boolean hasVar(VarType var) {
-		for (Field field : Factoid.class.getFields()) {
-			if (field.getType().equals(Local.class)) {
-				try {
-					@SuppressWarnings("unchecked")
-					VarType varInField = (VarType) field.get(this);
-					if (equalVars(var, varInField))
-						return true;
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					e.printStackTrace();
-				}
-			}
+		for (VarType varInFact : getVars()) {
+			if (equalVars(var, varInFact))
+				return true;
 		}
 		return false;
 	}
 
 	/**
 	 * Adds all local variables that appear in this factoid to the given
-	 * collection. The default implementation uses reflection to find local
-	 * variables in the fields of the class implementing the factoid (the class
-	 * extending this one).
+	 * collection. The default implementation adds the variables returned by
+	 * {@link #getVars()}.
 	 * 
 	 * @param c
 	 *            A collection of local variables.
 	 */
+	@SuppressWarnings("unchecked")
 	public void addVarsTo(Set<Local> c) {
-		for (Field field : Factoid.class.getFields()) {
-			if (field.getType().equals(Local.class)) {
-				try {
-					Local varInField = (Local) field.get(this);
-					c.add(varInField);
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					e.printStackTrace();
-				}
-			}
-		}
+		((Set<VarType>) (Set<?>) c).addAll(getVars());
 	}
 
 	/**
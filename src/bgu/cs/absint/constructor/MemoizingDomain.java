@@ -0,0 +1,391 @@
+package bgu.cs.absint.constructor;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.ConstantOperation;
+import bgu.cs.absint.Ordering;
+import bgu.cs.absint.ProgramSpecificDomain;
+import bgu.cs.absint.StateInterner;
+import bgu.cs.absint.ThresholdWidening;
+import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.WideningThresholds;
+
+/**
+ * A decorator that caches the results of the transformers and of the upper
+ * bound, order, comparison and widening operations of a given abstract domain.
+ * All other operations are delegated to the given domain.<br>
+ * Cache keys compare states by reference, so the caches are most effective
+ * when equal states are shared. When an interner is given, the input states
+ * are interned before each lookup. Each cache holds a bounded number of
+ * entries and evicts the least recently used one when full.<br>
+ * The operations of the given domain are assumed to be deterministic and
+ * their results are assumed not to be modified.
+ * 
+ * @author romanm
+ * 
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public class MemoizingDomain<StateType, ActionType> extends
+		AbstractDomain<StateType, ActionType> implements ThresholdWidening,
+		ProgramSpecificDomain<ActionType> {
+	/**
+	 * The domain whose operations are cached.
+	 */
+	protected final AbstractDomain<StateType, ActionType> domain;
+
+	/**
+	 * Used to canonicalize input states, when not null.
+	 */
+	protected final StateInterner<StateType> interner;
+
+	protected final Cache<StateType> transformerCache;
+	protected final Cache<StateType> ubCache;
+	protected final Cache<Boolean> leqCache;
+	protected final Cache<Ordering> compareCache;
+	protected final Cache<StateType> wideningCache;
+
+	/**
+	 * Constructs a decorator for the given domain.
+	 * 
+	 * @param domain
+	 *            The domain whose operations are cached.
+	 * @param maxEntries
+	 *            The maximal number of entries in each cache.
+	 */
+	public MemoizingDomain(AbstractDomain<StateType, ActionType> domain,
+			int maxEntries) {
+		this(domain, maxEntries, null);
+	}
+
+	/**
+	 * Constructs a decorator for the given domain that interns input states.
+	 * 
+	 * @param domain
+	 *            The domain whose operations are cached.
+	 * @param maxEntries
+	 *            The maximal number of entries in each cache.
+	 * @param interner
+	 *            Used to canonicalize input states, or null.
+	 */
+	public MemoizingDomain(AbstractDomain<StateType, ActionType> domain,
+			int maxEntries, StateInterner<StateType> interner) {
+		this.domain = domain;
+		this.interner = interner;
+		transformerCache = new Cache<>("transformers", maxEntries);
+		ubCache = new Cache<>("ub", maxEntries);
+		leqCache = new Cache<>("leq", maxEntries);
+		compareCache = new Cache<>("compare", maxEntries);
+		wideningCache = new Cache<>("widen", maxEntries);
+	}
+
+	/**
+	 * Returns the domain whose operations are cached.
+	 */
+	public AbstractDomain<StateType, ActionType> getDomain() {
+		return domain;
+	}
+
+	public Cache<StateType> getTransformerCache() {
+		return transformerCache;
+	}
+
+	public Cache<StateType> getUBCache() {
+		return ubCache;
+	}
+
+	public Cache<Boolean> getLeqCache() {
+		return leqCache;
+	}
+
+	public Cache<Ordering> getCompareCache() {
+		return compareCache;
+	}
+
+	public Cache<StateType> getWideningCache() {
+		return wideningCache;
+	}
+
+	/**
+	 * Returns a summary of the hit/miss counters of all caches.
+	 */
+	public String getStatistics() {
+		return transformerCache + ", " + ubCache + ", " + leqCache + ", "
+				+ compareCache + ", " + wideningCache;
+	}
+
+	/**
+	 * Passes the thresholds to the decorated domain, if it supports them, and
+	 * clears the cached widenings, which may have used other thresholds.
+	 */
+	@Override
+	public void setThresholds(WideningThresholds thresholds) {
+		if (domain instanceof ThresholdWidening) {
+			((ThresholdWidening) domain).setThresholds(thresholds);
+			wideningCache.clear();
+		}
+	}
+
+	/**
+	 * Prepares the decorated domain, if it depends on the analyzed program.
+	 */
+	@Override
+	public void prepare(Collection<ActionType> actions) {
+		if (domain instanceof ProgramSpecificDomain) {
+			@SuppressWarnings("unchecked")
+			ProgramSpecificDomain<ActionType> specificDomain = (ProgramSpecificDomain<ActionType>) domain;
+			specificDomain.prepare(actions);
+		}
+	}
+
+	@Override
+	public StateType getBottom() {
+		return domain.getBottom();
+	}
+
+	@Override
+	public StateType getTop() {
+		return domain.getTop();
+	}
+
+	@Override
+	public ConstantOperation<StateType> getBottomOperation() {
+		return domain.getBottomOperation();
+	}
+
+	@Override
+	public ConstantOperation<StateType> getTopOperation() {
+		return domain.getTopOperation();
+	}
+
+	@Override
+	public StateType ub(StateType elem1, StateType elem2) {
+		elem1 = intern(elem1);
+		elem2 = intern(elem2);
+		Key key = new Key(null, elem1, elem2);
+		StateType result = ubCache.get(key);
+		if (result == null) {
+			result = intern(domain.ub(elem1, elem2));
+			ubCache.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Delegates to the decorated domain, which may join the elements in a
+	 * single pass, without caching the result.
+	 */
+	@Override
+	public StateType ubAll(List<StateType> elems) {
+		return intern(domain.ubAll(elems));
+	}
+
+	@Override
+	public StateType ubLoop(StateType elem1, StateType elem2) {
+		return domain.ubLoop(elem1, elem2);
+	}
+
+	@Override
+	public StateType lb(StateType elem1, StateType elem2) {
+		return domain.lb(elem1, elem2);
+	}
+
+	@Override
+	public boolean leq(StateType first, StateType second) {
+		first = intern(first);
+		second = intern(second);
+		if (first == second)
+			return true;
+		Key key = new Key(null, first, second);
+		Boolean result = leqCache.get(key);
+		if (result == null) {
+			result = domain.leq(first, second);
+			leqCache.put(key, result);
+		}
+		return result;
+	}
+
+	@Override
+	public Ordering compare(StateType first, StateType second) {
+		first = intern(first);
+		second = intern(second);
+		if (first == second)
+			return Ordering.EQUAL;
+		Key key = new Key(null, first, second);
+		Ordering result = compareCache.get(key);
+		if (result == null) {
+			result = domain.compare(first, second);
+			compareCache.put(key, result);
+		}
+		return result;
+	}
+
+	@Override
+	public StateType widen(StateType elem1, StateType elem2) {
+		elem1 = intern(elem1);
+		elem2 = intern(elem2);
+		Key key = new Key(null, elem1, elem2);
+		StateType result = wideningCache.get(key);
+		if (result == null) {
+			result = intern(domain.widen(elem1, elem2));
+			wideningCache.put(key, result);
+		}
+		return result;
+	}
+
+	@Override
+	public StateType narrow(StateType elem1, StateType elem2) {
+		return domain.narrow(elem1, elem2);
+	}
+
+	@Override
+	public StateType reduce(StateType input) {
+		return domain.reduce(input);
+	}
+
+	@Override
+	public UnaryOperation<StateType> getReductionOperation() {
+		return domain.getReductionOperation();
+	}
+
+	@Override
+	public UnaryOperation<StateType> getTransformer(ActionType action) {
+		final UnaryOperation<StateType> transformer = domain
+				.getTransformer(action);
+		if (transformer == null)
+			return null;
+		return new UnaryOperation<StateType>() {
+			@Override
+			public StateType apply(StateType input) {
+				input = intern(input);
+				Key key = new Key(transformer, input, null);
+				StateType result = transformerCache.get(key);
+				if (result == null) {
+					result = intern(transformer.apply(input));
+					transformerCache.put(key, result);
+				}
+				return result;
+			}
+
+			@Override
+			public String toString() {
+				return transformer.toString();
+			}
+		};
+	}
+
+	protected StateType intern(StateType state) {
+		return interner == null ? state : interner.intern(state);
+	}
+
+	/**
+	 * A cache key consisting of an operation and up to two states, all
+	 * compared by reference.
+	 */
+	protected static final class Key {
+		private final Object op;
+		private final Object first;
+		private final Object second;
+		private final int hash;
+
+		public Key(Object op, Object first, Object second) {
+			this.op = op;
+			this.first = first;
+			this.second = second;
+			this.hash = 31 * (31 * System.identityHashCode(op) + System
+					.identityHashCode(first)) + System.identityHashCode(second);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return op == other.op && first == other.first
+					&& second == other.second;
+		}
+	}
+
+	/**
+	 * A thread-safe, size-bounded cache that evicts the least recently used
+	 * entry and counts hits and misses.
+	 * 
+	 * @param <ValueType>
+	 *            The type of cached results.
+	 */
+	public static class Cache<ValueType> {
+		protected final String name;
+		protected final Map<Key, ValueType> map;
+		protected long hits = 0;
+		protected long misses = 0;
+
+		@SuppressWarnings("serial")
+		public Cache(String name, final int maxEntries) {
+			assert maxEntries > 0;
+			this.name = name;
+			this.map = new LinkedHashMap<Key, ValueType>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Key, ValueType> eldest) {
+					return size() > maxEntries;
+				}
+			};
+		}
+
+		/**
+		 * Returns the cached result for the given key or null if there is
+		 * none.
+		 */
+		public synchronized ValueType get(Key key) {
+			ValueType result = map.get(key);
+			if (result == null)
+				++misses;
+			else
+				++hits;
+			return result;
+		}
+
+		public synchronized void put(Key key, ValueType value) {
+			map.put(key, value);
+		}
+
+		public synchronized long getHits() {
+			return hits;
+		}
+
+		public synchronized long getMisses() {
+			return misses;
+		}
+
+		public synchronized int size() {
+			return map.size();
+		}
+
+		/**
+		 * Removes all entries and resets the counters.
+		 */
+		public synchronized void clear() {
+			map.clear();
+			hits = 0;
+			misses = 0;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return name + ": " + hits + " hits, " + misses + " misses";
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,386 @@
+package bgu.cs.absint.constructor;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.ConstantOperation;
+import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.Ordering;
+import bgu.cs.absint.ProgramSpecificDomain;
+import bgu.cs.absint.ThresholdWidening;
+import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.WideningThresholds;
+
+/**
+ * A domain that keeps one sub-state of a given (relational) domain for each
+ * pack of a {@link VariablePacking}. Relations are only tracked between
+ * variables of the same pack, so the cost of the domain operations depends on
+ * the sizes of the packs rather than on the total number of variables.<br>
+ * The transformer of an action is applied only to the sub-states of the packs
+ * it refers to, and to all sub-states if it does not refer to any variable. A
+ * state with a bottom sub-state is represented by the bottom element.<br>
+ * The packing must be set by {@link #setPacking} before the domain is used,
+ * and replaced whenever a different program is analyzed.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of the sub-states.
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public class PackedDomain<StateType, ActionType> extends
+		AbstractDomain<ProductState, ActionType> implements ThresholdWidening,
+		ProgramSpecificDomain<ActionType> {
+	/**
+	 * The domain of the sub-states.
+	 */
+	protected final AbstractDomain<StateType, ActionType> domain;
+
+	protected VariablePacking<ActionType> packing;
+
+	/**
+	 * The number of packs in the current packing.
+	 */
+	protected int size;
+
+	/**
+	 * The least element for the current packing.
+	 */
+	protected ProductState bottom;
+
+	/**
+	 * The greatest element for the current packing.
+	 */
+	protected ProductState top;
+
+	private ConstantOperation<ProductState> cachedBottomOperation;
+	private ConstantOperation<ProductState> cachedTopOperation;
+
+	public PackedDomain(AbstractDomain<StateType, ActionType> domain) {
+		this.domain = domain;
+	}
+
+	/**
+	 * Sets the packing of the variables of the analyzed program. Elements
+	 * created for a previous packing should no longer be used.
+	 */
+	public void setPacking(VariablePacking<ActionType> packing) {
+		this.packing = packing;
+		this.size = packing.getNumOfPacks();
+
+		Object[] bottomsArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			bottomsArray[i] = domain.getBottom();
+		}
+		bottom = new ProductState(bottomsArray) {
+			@Override
+			public String toString() {
+				return "false";
+			}
+
+			@Override
+			public void set(int i, Object o) {
+				throw new Error("Attempt to modify "
+						+ getClass().getSimpleName() + "_bottom");
+			}
+		};
+
+		Object[] topsArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			topsArray[i] = domain.getTop();
+		}
+		top = new ProductState(topsArray) {
+			@Override
+			public String toString() {
+				return "true";
+			}
+
+			@Override
+			public void set(int i, Object o) {
+				throw new Error("Attempt to modify "
+						+ getClass().getSimpleName() + "_top");
+			}
+		};
+
+		cachedBottomOperation = new ConstantOperation<>(bottom);
+		cachedTopOperation = new ConstantOperation<>(top);
+	}
+
+	public VariablePacking<ActionType> getPacking() {
+		return packing;
+	}
+
+	/**
+	 * Returns the domain of the sub-states.
+	 */
+	public AbstractDomain<StateType, ActionType> getDomain() {
+		return domain;
+	}
+
+	/**
+	 * Passes the thresholds to the domain of the sub-states, if it supports
+	 * them.
+	 */
+	@Override
+	public void setThresholds(WideningThresholds thresholds) {
+		if (domain instanceof ThresholdWidening)
+			((ThresholdWidening) domain).setThresholds(thresholds);
+	}
+
+	/**
+	 * Prepares the domain of the sub-states, if it depends on the analyzed
+	 * program.
+	 */
+	@Override
+	public void prepare(Collection<ActionType> actions) {
+		if (domain instanceof ProgramSpecificDomain) {
+			@SuppressWarnings("unchecked")
+			ProgramSpecificDomain<ActionType> specificDomain = (ProgramSpecificDomain<ActionType>) domain;
+			specificDomain.prepare(actions);
+		}
+	}
+
+	@Override
+	public ProductState getBottom() {
+		assert packing != null : "The packing has not been set!";
+		return bottom;
+	}
+
+	@Override
+	public ProductState getTop() {
+		assert packing != null : "The packing has not been set!";
+		return top;
+	}
+
+	/**
+	 * Returns a constant operation for the bottom element of the current
+	 * packing.
+	 */
+	@Override
+	public ConstantOperation<ProductState> getBottomOperation() {
+		assert packing != null : "The packing has not been set!";
+		return cachedBottomOperation;
+	}
+
+	/**
+	 * Returns a constant operation for the top element of the current packing.
+	 */
+	@Override
+	public ConstantOperation<ProductState> getTopOperation() {
+		assert packing != null : "The packing has not been set!";
+		return cachedTopOperation;
+	}
+
+	/**
+	 * Computes the upper-bound on a pack-wise basis.
+	 */
+	@Override
+	public ProductState ub(ProductState elem1, ProductState elem2) {
+		if (elem1 == bottom || elem1 == elem2)
+			return elem2;
+		if (elem2 == bottom)
+			return elem1;
+		Object[] answerArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			answerArray[i] = domain.ub(get(elem1, i), get(elem2, i));
+		}
+		return new ProductState(answerArray);
+	}
+
+	/**
+	 * Computes the upper-bound on a pack-wise basis.
+	 */
+	@Override
+	public ProductState ubLoop(ProductState elem1, ProductState elem2) {
+		if (elem1 == bottom || elem1 == elem2)
+			return elem2;
+		if (elem2 == bottom)
+			return elem1;
+		Object[] answerArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			answerArray[i] = domain.ubLoop(get(elem1, i), get(elem2, i));
+		}
+		return new ProductState(answerArray);
+	}
+
+	/**
+	 * Computes the lower-bound on a pack-wise basis.
+	 */
+	@Override
+	public ProductState lb(ProductState elem1, ProductState elem2) {
+		if (elem1 == bottom || elem2 == bottom)
+			return bottom;
+		Object[] answerArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			answerArray[i] = domain.lb(get(elem1, i), get(elem2, i));
+		}
+		return makeState(answerArray);
+	}
+
+	/**
+	 * Computes the widening on a pack-wise basis.
+	 */
+	@Override
+	public ProductState widen(ProductState elem1, ProductState elem2) {
+		if (elem1 == bottom)
+			return elem2;
+		if (elem2 == bottom)
+			return elem1;
+		Object[] answerArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			answerArray[i] = domain.widen(get(elem1, i), get(elem2, i));
+		}
+		return new ProductState(answerArray);
+	}
+
+	/**
+	 * Computes the narrowing on a pack-wise basis.
+	 */
+	@Override
+	public ProductState narrow(ProductState elem1, ProductState elem2) {
+		if (elem1 == bottom || elem2 == bottom)
+			return bottom;
+		Object[] answerArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			answerArray[i] = domain.narrow(get(elem1, i), get(elem2, i));
+		}
+		return makeState(answerArray);
+	}
+
+	/**
+	 * Checks whether the order relation holds for each pack.
+	 */
+	@Override
+	public boolean leq(ProductState elem1, ProductState elem2) {
+		if (elem1 == elem2 || elem1 == bottom)
+			return true;
+		if (elem2 == bottom)
+			return false;
+		for (int i = 0; i < size; ++i) {
+			StateType component1 = get(elem1, i);
+			StateType component2 = get(elem2, i);
+			if (component1 != component2 && !domain.leq(component1, component2))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Combines the orderings of the packs, stopping as soon as two packs
+	 * disagree.
+	 */
+	@Override
+	public Ordering compare(ProductState elem1, ProductState elem2) {
+		if (elem1 == elem2)
+			return Ordering.EQUAL;
+		if (elem1 == bottom)
+			return Ordering.LESS;
+		if (elem2 == bottom)
+			return Ordering.GREATER;
+		Ordering result = Ordering.EQUAL;
+		for (int i = 0; i < size; ++i) {
+			StateType component1 = get(elem1, i);
+			StateType component2 = get(elem2, i);
+			if (component1 == component2)
+				continue;
+			result = result.and(domain.compare(component1, component2));
+			if (result == Ordering.INCOMPARABLE)
+				break;
+		}
+		return result;
+	}
+
+	/**
+	 * Reduces each sub-state.
+	 */
+	@Override
+	public ProductState reduce(ProductState input) {
+		if (input == bottom)
+			return bottom;
+		Object[] answerArray = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			answerArray[i] = domain.reduce(get(input, i));
+		}
+		return makeState(answerArray);
+	}
+
+	@Override
+	public UnaryOperation<ProductState> getTransformer(ActionType action) {
+		assert packing != null : "The packing has not been set!";
+		UnaryOperation<StateType> transformer = domain.getTransformer(action);
+		if (transformer == IdOperation.v())
+			return IdOperation.v();
+		int[] packs = packing.getPacks(action);
+		if (packs.length == 0) {
+			packs = new int[size];
+			for (int i = 0; i < size; ++i) {
+				packs[i] = i;
+			}
+		}
+		return new PackTransformer(transformer, packs, bottom);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected StateType get(ProductState state, int pack) {
+		return (StateType) state.get(pack);
+	}
+
+	/**
+	 * Returns bottom if any of the given sub-states is bottom, and a state
+	 * made of the given sub-states otherwise.
+	 */
+	protected ProductState makeState(Object[] subStates) {
+		StateType subBottom = domain.getBottom();
+		for (Object subState : subStates) {
+			if (subState.equals(subBottom))
+				return bottom;
+		}
+		return new ProductState(subStates);
+	}
+
+	/**
+	 * A transformer that applies a transformer of the sub-domain to the
+	 * sub-states of the given packs and leaves the other sub-states unchanged.
+	 *
+	 * @author romanm
+	 */
+	public class PackTransformer extends UnaryOperation<ProductState> {
+		protected final UnaryOperation<StateType> transformer;
+		protected final int[] packs;
+
+		/**
+		 * The bottom element of the packing the transformer was created for.
+		 */
+		protected final ProductState packingBottom;
+
+		public PackTransformer(UnaryOperation<StateType> transformer,
+				int[] packs, ProductState packingBottom) {
+			this.transformer = transformer;
+			this.packs = packs;
+			this.packingBottom = packingBottom;
+		}
+
+		@Override
+		public ProductState apply(ProductState input) {
+			assert input != null;
+			if (input == packingBottom)
+				return packingBottom;
+			StateType subBottom = domain.getBottom();
+			ProductState result = input.clone();
+			for (int pack : packs) {
+				StateType subState = transformer.apply(get(input, pack));
+				if (subState.equals(subBottom))
+					return packingBottom;
+				result.set(pack, subState);
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return transformer + "@" + Arrays.toString(packs);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,308 @@
+package bgu.cs.absint.constructor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.ConstantOperation;
+import bgu.cs.absint.IdOperation;
+import bgu.cs.absint.Ordering;
+import bgu.cs.absint.ProgramSpecificDomain;
+import bgu.cs.absint.ThresholdWidening;
+import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.WideningThresholds;
+
+/**
+ * A decorator that counts the calls to the upper bound, order, widening,
+ * narrowing and reduction operations of a given abstract domain and records a
+ * histogram of their latencies. All operations are delegated to the given
+ * domain.<br>
+ * Only calls made through the decorator are recorded, so operations that the
+ * given domain applies internally, e.g., reductions composed into its
+ * transformers, are not. Transformers are not timed here, since the solvers
+ * time each equation as a whole (see
+ * {@link bgu.cs.absint.solver.SolverProfiler}). The profiles may be updated
+ * concurrently.
+ * 
+ * @author romanm
+ * 
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public class ProfilingDomain<StateType, ActionType> extends
+		AbstractDomain<StateType, ActionType> implements ThresholdWidening,
+		ProgramSpecificDomain<ActionType> {
+	/**
+	 * The domain whose operations are profiled.
+	 */
+	protected final AbstractDomain<StateType, ActionType> domain;
+
+	protected final OperationProfile ubProfile = new OperationProfile("ub");
+	protected final OperationProfile ubAllProfile = new OperationProfile(
+			"ubAll");
+	protected final OperationProfile ubLoopProfile = new OperationProfile(
+			"ubLoop");
+	protected final OperationProfile leqProfile = new OperationProfile("leq");
+	protected final OperationProfile compareProfile = new OperationProfile(
+			"compare");
+	protected final OperationProfile widenProfile = new OperationProfile(
+			"widen");
+	protected final OperationProfile narrowProfile = new OperationProfile(
+			"narrow");
+	protected final OperationProfile reduceProfile = new OperationProfile(
+			"reduce");
+
+	public ProfilingDomain(AbstractDomain<StateType, ActionType> domain) {
+		this.domain = domain;
+	}
+
+	/**
+	 * Returns the domain whose operations are profiled.
+	 */
+	public AbstractDomain<StateType, ActionType> getDomain() {
+		return domain;
+	}
+
+	/**
+	 * Returns the profiles of all operations.
+	 */
+	public List<OperationProfile> getProfiles() {
+		return Arrays.asList(ubProfile, ubAllProfile, ubLoopProfile,
+				leqProfile, compareProfile, widenProfile, narrowProfile,
+				reduceProfile);
+	}
+
+	/**
+	 * Resets the profiles of all operations.
+	 */
+	public void clear() {
+		for (OperationProfile profile : getProfiles()) {
+			profile.clear();
+		}
+	}
+
+	/**
+	 * Returns a summary of the profiles of all operations.
+	 */
+	public String getStatistics() {
+		StringBuilder result = new StringBuilder();
+		for (OperationProfile profile : getProfiles()) {
+			if (result.length() > 0)
+				result.append(", ");
+			result.append(profile);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Passes the thresholds to the decorated domain, if it supports them.
+	 */
+	@Override
+	public void setThresholds(WideningThresholds thresholds) {
+		if (domain instanceof ThresholdWidening)
+			((ThresholdWidening) domain).setThresholds(thresholds);
+	}
+
+	/**
+	 * Prepares the decorated domain, if it depends on the analyzed program.
+	 */
+	@Override
+	public void prepare(Collection<ActionType> actions) {
+		if (domain instanceof ProgramSpecificDomain) {
+			@SuppressWarnings("unchecked")
+			ProgramSpecificDomain<ActionType> specificDomain = (ProgramSpecificDomain<ActionType>) domain;
+			specificDomain.prepare(actions);
+		}
+	}
+
+	@Override
+	public StateType getBottom() {
+		return domain.getBottom();
+	}
+
+	@Override
+	public StateType getTop() {
+		return domain.getTop();
+	}
+
+	@Override
+	public ConstantOperation<StateType> getBottomOperation() {
+		return domain.getBottomOperation();
+	}
+
+	@Override
+	public ConstantOperation<StateType> getTopOperation() {
+		return domain.getTopOperation();
+	}
+
+	@Override
+	public StateType ub(StateType elem1, StateType elem2) {
+		long start = System.nanoTime();
+		StateType result = domain.ub(elem1, elem2);
+		ubProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public StateType ubAll(List<StateType> elems) {
+		long start = System.nanoTime();
+		StateType result = domain.ubAll(elems);
+		ubAllProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public StateType ubLoop(StateType elem1, StateType elem2) {
+		long start = System.nanoTime();
+		StateType result = domain.ubLoop(elem1, elem2);
+		ubLoopProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public StateType lb(StateType elem1, StateType elem2) {
+		return domain.lb(elem1, elem2);
+	}
+
+	@Override
+	public boolean leq(StateType first, StateType second) {
+		long start = System.nanoTime();
+		boolean result = domain.leq(first, second);
+		leqProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public Ordering compare(StateType first, StateType second) {
+		long start = System.nanoTime();
+		Ordering result = domain.compare(first, second);
+		compareProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public StateType widen(StateType elem1, StateType elem2) {
+		long start = System.nanoTime();
+		StateType result = domain.widen(elem1, elem2);
+		widenProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public StateType narrow(StateType elem1, StateType elem2) {
+		long start = System.nanoTime();
+		StateType result = domain.narrow(elem1, elem2);
+		narrowProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public StateType reduce(StateType input) {
+		long start = System.nanoTime();
+		StateType result = domain.reduce(input);
+		reduceProfile.record(System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Returns the identity operation if the decorated domain does, and a
+	 * profiled reduction otherwise.
+	 */
+	@Override
+	public UnaryOperation<StateType> getReductionOperation() {
+		UnaryOperation<StateType> reduction = domain.getReductionOperation();
+		if (reduction == IdOperation.v())
+			return reduction;
+		return super.getReductionOperation();
+	}
+
+	@Override
+	public UnaryOperation<StateType> getTransformer(ActionType action) {
+		return domain.getTransformer(action);
+	}
+
+	/**
+	 * The number of calls to an operation, their total latency, and a
+	 * histogram of their latencies. Bucket 0 of the histogram counts the
+	 * calls that took less than 1ns, and bucket i>0 counts the calls that took
+	 * at least 2^(i-1)ns and less than 2^i ns. The last bucket also counts all
+	 * longer calls.
+	 */
+	public static class OperationProfile {
+		public static final int NUM_OF_BUCKETS = 40;
+
+		protected final String name;
+		protected final AtomicLong calls = new AtomicLong();
+		protected final AtomicLong totalNanos = new AtomicLong();
+		protected final AtomicLongArray histogram = new AtomicLongArray(
+				NUM_OF_BUCKETS);
+
+		public OperationProfile(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Records a call that took the given number of nanoseconds.
+		 */
+		public void record(long nanos) {
+			calls.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+			histogram.incrementAndGet(Math.min(bucket, NUM_OF_BUCKETS - 1));
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCalls() {
+			return calls.get();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.get();
+		}
+
+		/**
+		 * Returns a snapshot of the histogram.
+		 */
+		public long[] getHistogram() {
+			long[] result = new long[NUM_OF_BUCKETS];
+			for (int i = 0; i < NUM_OF_BUCKETS; ++i) {
+				result[i] = histogram.get(i);
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the exclusive upper bound, in nanoseconds, of the latencies
+		 * counted by the given bucket, except for the last bucket, which is
+		 * unbounded.
+		 */
+		public static long getBucketBound(int bucket) {
+			return 1L << bucket;
+		}
+
+		/**
+		 * Resets the counters.
+		 */
+		public void clear() {
+			calls.set(0);
+			totalNanos.set(0);
+			for (int i = 0; i < NUM_OF_BUCKETS; ++i) {
+				histogram.set(i, 0);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return name + ": " + getCalls() + " calls, " + getTotalNanos()
+					/ 1000 + "us";
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package bgu.cs.absint.constructor;
+
+/**
+ * A partition of the variables of a program into packs, such that the
+ * variables of different packs need not be related to one another. Used by
+ * {@link PackedDomain} to keep one relational sub-state per pack.
+ *
+ * @author romanm
+ *
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public interface VariablePacking<ActionType> {
+	/**
+	 * Returns the number of packs. Packs are numbered from 0.
+	 */
+	public int getNumOfPacks();
+
+	/**
+	 * Returns the packs containing the variables referred to by the given
+	 * action.
+	 *
+	 * @param action
+	 *            A program statement.
+	 * @return An array of pack numbers without repetitions, which is empty if
+	 *         the action does not refer to any variable.
+	 */
+	public int[] getPacks(ActionType action);
+}
\ No newline at end of file
@@ -1,14 +1,12 @@
 package bgu.cs.absint.solver;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.PriorityQueue;
 
 import bgu.cs.absint.AnalysisVar;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.Equation;
 import bgu.cs.absint.EquationSystem;
-import bgu.cs.util.StringUtils;
+import bgu.cs.absint.Ordering;
 
 /**
  * Solves a given system of equations by computing a fixed-point from below
@@ -23,7 +21,13 @@ import bgu.cs.util.StringUtils;
  */
 public class ChaoticIterationSolver<StateType, ActionType> extends
 		Solver<StateType, ActionType> {
-	protected int iterationCounter = 0;
+	/**
+	 * The maximal number of equations evaluated by a single call to
+	 * {@link #iterateDown(Collection)}, or 0 for no limit. Since iterating
+	 * down from a post-fixed point yields post-fixed points, stopping early
+	 * only costs precision.
+	 */
+	public int maxDescendingIterations = 0;
 
 	protected void initializeValues() {
 		system.initializeValues(domain.getBottom());
@@ -34,14 +38,14 @@ public class ChaoticIterationSolver<StateType, ActionType> extends
 			AbstractDomain<StateType, ActionType> domain) {
 		this.system = system;
 		this.domain = domain;
-		printDebugMessage("Solving the following equation system = "
-				+ StringUtils.newLine + system);
+		if (listener != null) {
+			listener.solvingStarted(system);
+			listener.phaseStarted(SolverListener.Phase.ASCENDING);
+		}
 		initializeValues();
-		printDebugMessage("Starting chaotic iterations...");
 		iterateUp();
-		printDebugMessage("Reached fixed-point after " + iterationCounter
-				+ " iterations.");
-		printDebugSolution(system);
+		if (listener != null)
+			listener.fixpointReached(iterationCounter);
 
 		assert system.allVariablesInitialized() : "Solution resulted with null-valued variables!";
 	}
@@ -60,98 +64,104 @@ public class ChaoticIterationSolver<StateType, ActionType> extends
 		Collection<Equation<StateType>> initialEquations = system.getHeads();
 		if (initialEquations.isEmpty())
 			initialEquations.addAll(system.getEquations());
+		iterateUp(initialEquations);
+	}
 
+	/**
+	 * Iterates from below, starting from the given equations, until reaching
+	 * a fixed-point.
+	 * 
+	 * @param initialEquations
+	 *            The equations that are evaluated first.
+	 */
+	public void iterateUp(Collection<Equation<StateType>> initialEquations) {
 		// Iterate until reaching a fixed-point.
-		PriorityQueue<Equation<StateType>> workSet = new PriorityQueue<>(
-				initialEquations);
+		Worklist<StateType> workSet = worklistStrategy.create(system);
+		workSet.addAll(initialEquations);
 		while (!workSet.isEmpty()) {
 			++iterationCounter;
-			printDebugMessage("              workSet = "
-					+ equationsToLhsString(workSet));
-
 			Equation<StateType> equation = workSet.remove();
-
-			printDebugMessage("Iteration " + iterationCounter + ": processing "
-					+ equation.toString());
+			if (listener != null)
+				listener.iterationStarted(iterationCounter, equation);
 
 			AnalysisVar<StateType> lhs = equation.getLhs();
 			StateType currentValue = lhs.value;
-
-			if (debug) {
-				printDebugMessage("              " + equation.getLhs() + " : "
-						+ equation.getLhs().value);
-				for (AnalysisVar<StateType> arg : equation.getArgs()) {
-					printDebugMessage("              " + arg + " : "
-							+ arg.value);
-				}
-			}
-			equation.update();
-			printDebugMessage("              " + equation.getLhs() + "' : "
-					+ equation.getLhs().value);
-
-			if (!domain.leq(lhs.value, currentValue)) {
-				Collection<Equation<StateType>> nextEquations = new ArrayList<>();
+			evaluateUp(equation);
+			lhs.value = intern(lhs.value, currentValue);
+			if (listener != null)
+				listener.equationEvaluated(equation, currentValue, lhs.value);
+
+			if (lhs.value != currentValue
+					&& !domain.leq(lhs.value, currentValue)) {
+				if (listener != null)
+					listener.valueChanged(equation, currentValue, lhs.value);
 				for (Equation<StateType> nextEquation : system
 						.getDependentEquations(lhs)) {
-					if (nextEquation == equation) {
-						continue;
-					} else {
+					if (nextEquation != equation)
 						workSet.add(nextEquation);
-						nextEquations.add(nextEquation);
-					}
 				}
-
-				printDebugMessage("              Adding " + nextEquations);
 			}
 		}
 	}
 
 	public void iterateDown() {
+		iterateDown(system.getEquations());
+	}
+
+	/**
+	 * Iterates from above, starting from the given equations, until no value
+	 * decreases.
+	 * 
+	 * @param initialEquations
+	 *            The equations that are evaluated first.
+	 */
+	public void iterateDown(Collection<Equation<StateType>> initialEquations) {
 		// Iterate until reaching a fixed-point.
-		PriorityQueue<Equation<StateType>> workSet = new PriorityQueue<>(
-				system.getEquations());
+		Worklist<StateType> workSet = worklistStrategy.create(system);
+		workSet.addAll(initialEquations);
+		int evaluations = 0;
 		while (!workSet.isEmpty()) {
+			if (maxDescendingIterations > 0
+					&& evaluations++ == maxDescendingIterations) {
+				if (listener != null)
+					listener.message("Stopping after "
+							+ maxDescendingIterations
+							+ " descending iterations.");
+				break;
+			}
 			++iterationCounter;
-			printDebugMessage("              workSet = "
-					+ equationsToLhsString(workSet));
-
 			Equation<StateType> equation = workSet.remove();
-
-			printDebugMessage("Iteration " + iterationCounter + ": processing "
-					+ equation.toString());
+			if (listener != null)
+				listener.iterationStarted(iterationCounter, equation);
 
 			AnalysisVar<StateType> lhs = equation.getLhs();
 			StateType currentValue = lhs.value;
-
-			if (debug) {
-				printDebugMessage("              " + equation.getLhs() + " : "
-						+ equation.getLhs().value);
-				for (AnalysisVar<StateType> arg : equation.getArgs()) {
-					printDebugMessage("              " + arg + " : "
-							+ arg.value);
-				}
-			}
 			equation.update();
-			printDebugMessage("              " + equation.getLhs() + "' : "
-					+ equation.getLhs().value);
+			lhs.value = intern(lhs.value, currentValue);
+			if (listener != null)
+				listener.equationEvaluated(equation, currentValue, lhs.value);
 
-			boolean newLeq = domain.leq(lhs.value, currentValue);
-			boolean newGeq = domain.leq(currentValue, lhs.value);
-			boolean neqLt = newLeq && !newGeq;
+			boolean neqLt = false;
+			if (lhs.value != currentValue) {
+				neqLt = domain.compare(lhs.value, currentValue) == Ordering.LESS;
+			}
 			if (neqLt) {
-				Collection<Equation<StateType>> nextEquations = new ArrayList<>();
+				if (listener != null)
+					listener.valueChanged(equation, currentValue, lhs.value);
 				for (Equation<StateType> nextEquation : system
 						.getDependentEquations(lhs)) {
-					if (nextEquation == equation) {
-						continue;
-					} else {
+					if (nextEquation != equation)
 						workSet.add(nextEquation);
-						nextEquations.add(nextEquation);
-					}
 				}
-
-				printDebugMessage("              Adding " + nextEquations);
 			}
 		}
 	}
+
+	/**
+	 * Updates the left-hand side variable of the given equation while
+	 * iterating up.
+	 */
+	protected void evaluateUp(Equation<StateType> equation) {
+		equation.update();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package bgu.cs.absint.solver;
+
+import java.util.BitSet;
+
+import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.CompiledEquationSystem;
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+import bgu.cs.absint.Operation;
+import bgu.cs.absint.Ordering;
+
+/**
+ * A chaotic iteration solver that runs against the compiled form of a system
+ * of equations (see {@link CompiledEquationSystem}), thereby avoiding hashing
+ * and iterator allocation in its inner loop. Since the compiled equations are
+ * numbered by priority, the worklist is a bit set from which the lowest
+ * pending equation number is removed first.<br>
+ * The solution is written back to the variables of the system once the solver
+ * finishes. When a listener is set, the variables of each evaluated equation
+ * are also written back before the listener is notified.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public class CompiledChaoticIterationSolver<StateType, ActionType> extends
+		Solver<StateType, ActionType> {
+	/**
+	 * Determines whether the widening operations are switched to narrowing
+	 * operations and a descending phase follows the ascending phase (as in
+	 * {@link WideningNarrowingSolver}).
+	 */
+	public boolean useNarrowing = false;
+
+	protected CompiledEquationSystem<StateType> compiled;
+
+	@Override
+	public void solve(EquationSystem<StateType, ActionType> system,
+			AbstractDomain<StateType, ActionType> domain) {
+		this.system = system;
+		this.domain = domain;
+		if (listener != null) {
+			listener.solvingStarted(system);
+			listener.phaseStarted(SolverListener.Phase.ASCENDING);
+		}
+		compiled = system.compile(domain.getBottom());
+
+		BitSet workSet = new BitSet(compiled.getNumOfEquations());
+		for (int e = 0; e < compiled.getNumOfEquations(); ++e) {
+			if (compiled.getNumOfArgs(e) == 0)
+				workSet.set(e);
+		}
+		if (workSet.isEmpty())
+			workSet.set(0, compiled.getNumOfEquations());
+		iterate(workSet, true);
+		fireFixpointReached();
+
+		if (useNarrowing) {
+			// Switch all widening operations to narrowing operations.
+			for (Equation<StateType> equation : system.getEquations()) {
+				Operation<StateType> op = equation.getOp();
+				if (op instanceof PhasedOperation) {
+					PhasedOperation<StateType> wideningNarrowingOp = (PhasedOperation<StateType>) op;
+					wideningNarrowingOp.advance();
+				}
+			}
+			if (listener != null)
+				listener.phaseStarted(SolverListener.Phase.DESCENDING);
+			workSet.set(0, compiled.getNumOfEquations());
+			iterate(workSet, false);
+			fireFixpointReached();
+		}
+
+		compiled.writeBack();
+
+		assert system.allVariablesInitialized() : "Solution resulted with null-valued variables!";
+	}
+
+	/**
+	 * Processes pending equations until the work set is empty.
+	 *
+	 * @param workSet
+	 *            The numbers of the pending equations.
+	 * @param ascending
+	 *            Determines whether values are iterated from below or refined
+	 *            from above.
+	 */
+	protected void iterate(BitSet workSet, boolean ascending) {
+		int[] dependents = compiled.getDependents();
+		for (int e = workSet.nextSetBit(0); e >= 0; e = workSet.nextSetBit(0)) {
+			workSet.clear(e);
+			++iterationCounter;
+			// The values are kept in the compiled system, so the variables of
+			// the equation are updated for the listener to see.
+			if (listener != null) {
+				compiled.writeBack(e);
+				listener.iterationStarted(iterationCounter,
+						compiled.getEquation(e));
+			}
+
+			int lhs = compiled.getLhs(e);
+			StateType currentValue = compiled.getValue(lhs);
+			compiled.update(e);
+			StateType newValue = intern(compiled.getValue(lhs),
+					currentValue);
+			compiled.setValue(lhs, newValue);
+			if (listener != null) {
+				compiled.writeBack(e);
+				listener.equationEvaluated(compiled.getEquation(e),
+						currentValue, newValue);
+			}
+
+			boolean changed;
+			if (newValue == currentValue) {
+				changed = false;
+			} else if (ascending) {
+				changed = !domain.leq(newValue, currentValue);
+			} else {
+				changed = domain.compare(newValue, currentValue) == Ordering.LESS;
+			}
+			if (changed) {
+				if (listener != null)
+					listener.valueChanged(compiled.getEquation(e),
+							currentValue, newValue);
+				for (int i = compiled.dependentsBegin(lhs), end = compiled
+						.dependentsEnd(lhs); i < end; ++i) {
+					int next = dependents[i];
+					if (next != e)
+						workSet.set(next);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listener, if any, that the current phase has reached a
+	 * fixed-point, after copying the values back to the variables of the
+	 * system.
+	 */
+	protected void fireFixpointReached() {
+		if (listener != null) {
+			compiled.writeBack();
+			listener.fixpointReached(iterationCounter);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+
+/**
+ * Passes the events of a solver to a list of listeners, in order.
+ * 
+ * @author romanm
+ * 
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class CompositeSolverListener<StateType> implements
+		SolverListener<StateType> {
+	protected final List<SolverListener<StateType>> listeners;
+
+	public CompositeSolverListener(List<SolverListener<StateType>> listeners) {
+		this.listeners = listeners;
+	}
+
+	@SafeVarargs
+	public CompositeSolverListener(SolverListener<StateType>... listeners) {
+		// Copy the listeners, so that the array does not escape.
+		this.listeners = new ArrayList<>(listeners.length);
+		for (SolverListener<StateType> listener : listeners) {
+			this.listeners.add(listener);
+		}
+	}
+
+	@Override
+	public void solvingStarted(EquationSystem<StateType, ?> system) {
+		for (SolverListener<StateType> listener : listeners) {
+			listener.solvingStarted(system);
+		}
+	}
+
+	@Override
+	public void phaseStarted(Phase phase) {
+		for (SolverListener<StateType> listener : listeners) {
+			listener.phaseStarted(phase);
+		}
+	}
+
+	@Override
+	public void iterationStarted(int iteration, Equation<StateType> equation) {
+		for (SolverListener<StateType> listener : listeners) {
+			listener.iterationStarted(iteration, equation);
+		}
+	}
+
+	@Override
+	public void equationEvaluated(Equation<StateType> equation,
+			StateType oldValue, StateType newValue) {
+		for (SolverListener<StateType> listener : listeners) {
+			listener.equationEvaluated(equation, oldValue, newValue);
+		}
+	}
+
+	@Override
+	public void valueChanged(Equation<StateType> equation, StateType oldValue,
+			StateType newValue) {
+		for (SolverListener<StateType> listener : listeners) {
+			listener.valueChanged(equation, oldValue, newValue);
+		}
+	}
+
+	@Override
+	public void fixpointReached(int iterations) {
+		for (SolverListener<StateType> listener : listeners) {
+			listener.fixpointReached(iterations);
+		}
+	}
+
+	@Override
+	public void message(String message) {
+		for (SolverListener<StateType> listener : listeners) {
+			listener.message(message);
+		}
+	}
+}
\ No newline at end of file
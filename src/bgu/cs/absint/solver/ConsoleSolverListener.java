@@ -0,0 +1,87 @@
+package bgu.cs.absint.solver;
+
+import java.io.PrintStream;
+
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+import bgu.cs.util.StringUtils;
+
+/**
+ * Prints the progress of a solver: the solved system, every evaluated
+ * equation along with the old and new values of its left-hand side, and the
+ * solution of each phase.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class ConsoleSolverListener<StateType> implements
+		SolverListener<StateType> {
+	protected final PrintStream out;
+
+	/**
+	 * The system being solved, whose solution is printed at each fixed-point.
+	 */
+	protected EquationSystem<StateType, ?> system;
+
+	public ConsoleSolverListener() {
+		this(System.out);
+	}
+
+	public ConsoleSolverListener(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void solvingStarted(EquationSystem<StateType, ?> system) {
+		this.system = system;
+		out.println("Solving the following equation system = "
+				+ StringUtils.newLine + system);
+	}
+
+	@Override
+	public void phaseStarted(Phase phase) {
+		if (phase == Phase.ASCENDING) {
+			out.println("Starting ascending phase...");
+		} else {
+			out.println();
+			out.println("Starting descending phase...");
+		}
+	}
+
+	@Override
+	public void iterationStarted(int iteration, Equation<StateType> equation) {
+		out.println("Iteration " + iteration + ": processing " + equation);
+	}
+
+	@Override
+	public void equationEvaluated(Equation<StateType> equation,
+			StateType oldValue, StateType newValue) {
+		out.println("              " + equation.getLhs() + " : " + oldValue);
+		out.println("              " + equation.getLhs() + "' : " + newValue);
+	}
+
+	@Override
+	public void valueChanged(Equation<StateType> equation, StateType oldValue,
+			StateType newValue) {
+		out.println("              " + equation.getLhs() + " changed");
+	}
+
+	@Override
+	public void fixpointReached(int iterations) {
+		out.println("Reached fixed-point after " + iterations + " iterations.");
+		if (system == null)
+			return;
+		out.println("Solution = {");
+		for (Equation<StateType> equation : system.getEquations()) {
+			out.println("  " + equation.getLhs() + " : " + equation.getVal());
+		}
+		out.println("}");
+	}
+
+	@Override
+	public void message(String message) {
+		out.println(message);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+
+import bgu.cs.absint.Equation;
+
+/**
+ * A worklist that processes equations in the order they were added.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class FIFOWorklist<StateType> extends Worklist<StateType> {
+	protected final ArrayDeque<Equation<StateType>> queue;
+
+	public FIFOWorklist(int capacity) {
+		super(capacity);
+		queue = new ArrayDeque<>(Math.max(capacity, 1));
+	}
+
+	@Override
+	public Iterator<Equation<StateType>> iterator() {
+		return Collections.unmodifiableCollection(queue).iterator();
+	}
+
+	@Override
+	protected void push(Equation<StateType> equation) {
+		queue.addLast(equation);
+	}
+
+	@Override
+	protected Equation<StateType> pop() {
+		return queue.removeFirst();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.AnalysisVar;
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+import bgu.cs.absint.Operation;
+
+/**
+ * A chaotic iteration solver that, after solving a system, can re-solve it
+ * after some of its equations have been added, removed, or replaced. The
+ * values of the solved system are reused and only the equations that depend
+ * (transitively) on the edited equations are re-evaluated.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public class IncrementalSolver<StateType, ActionType> extends
+		ChaoticIterationSolver<StateType, ActionType> {
+	/**
+	 * Determines whether the widening operations are switched to narrowing
+	 * operations and a descending phase follows the ascending phase (as in
+	 * {@link WideningNarrowingSolver}).
+	 */
+	public boolean useNarrowing = false;
+
+	@Override
+	public void solve(EquationSystem<StateType, ActionType> system,
+			AbstractDomain<StateType, ActionType> domain) {
+		this.system = system;
+		this.domain = domain;
+		if (listener != null) {
+			listener.solvingStarted(system);
+			listener.phaseStarted(SolverListener.Phase.ASCENDING);
+		}
+		initializeValues();
+		setPhase(system.getEquations(), 0);
+		iterateUp();
+		if (useNarrowing) {
+			setPhase(system.getEquations(), 1);
+			if (listener != null)
+				listener.phaseStarted(SolverListener.Phase.DESCENDING);
+			iterateDown();
+		}
+		if (listener != null)
+			listener.fixpointReached(iterationCounter);
+
+		assert system.allVariablesInitialized() : "Solution resulted with null-valued variables!";
+	}
+
+	/**
+	 * Applies the given edits to the system solved by the last call to
+	 * {@link #solve} and updates the solution. A replaced equation should be
+	 * given both as removed (the old equation) and as added (the new one).<br>
+	 * If any equation is removed (or replaced), the values of all variables
+	 * that depend on the edited variables are reset to bottom and recomputed,
+	 * since they might decrease. Checking whether they actually decrease is
+	 * unreliable, since a smaller equation may still agree with the old
+	 * solution at the old values of its arguments, e.g., when {@code x=x+1}
+	 * is replaced by {@code x=x} in a loop. If equations are only added, the
+	 * values can only increase, and the new values are propagated from the
+	 * current ones.
+	 *
+	 * @param removed
+	 *            The equations that should be removed from the system.
+	 * @param added
+	 *            The equations that should be added to the system.
+	 */
+	public void resolve(Collection<Equation<StateType>> removed,
+			Collection<Equation<StateType>> added) {
+		assert system != null : "resolve called before solve!";
+		StateType bottom = domain.getBottom();
+		Set<AnalysisVar<StateType>> editedVars = new LinkedHashSet<>();
+		for (Equation<StateType> equation : removed) {
+			system.removeEquation(equation);
+			editedVars.add(equation.getLhs());
+		}
+		for (Equation<StateType> equation : added) {
+			system.addEquation(equation);
+			editedVars.add(equation.getLhs());
+			if (equation.getLhs().value == null)
+				equation.getLhs().value = bottom;
+			for (AnalysisVar<StateType> arg : equation.getArgs()) {
+				if (arg.value == null)
+					arg.value = bottom;
+			}
+		}
+
+		List<Equation<StateType>> affected = findDependentEquations(editedVars);
+		if (listener != null)
+			listener.message("Re-solving " + affected.size()
+					+ " equations out of " + system.getEquations().size()
+					+ ".");
+		if (!removed.isEmpty()) {
+			for (AnalysisVar<StateType> var : editedVars) {
+				if (system.getDefiningEquation(var) == null)
+					var.value = bottom;
+			}
+			for (Equation<StateType> equation : affected) {
+				equation.getLhs().value = bottom;
+			}
+		}
+
+		setPhase(affected, 0);
+		if (listener != null)
+			listener.phaseStarted(SolverListener.Phase.ASCENDING);
+		iterateUp(affected);
+		if (useNarrowing) {
+			setPhase(affected, 1);
+			if (listener != null)
+				listener.phaseStarted(SolverListener.Phase.DESCENDING);
+			iterateDown(affected);
+		}
+		if (listener != null)
+			listener.fixpointReached(iterationCounter);
+
+		assert system.allVariablesInitialized() : "Solution resulted with null-valued variables!";
+	}
+
+	/**
+	 * Returns the defining equations of the given variables along with all
+	 * equations that depend on them, directly or transitively.
+	 */
+	protected List<Equation<StateType>> findDependentEquations(
+			Collection<AnalysisVar<StateType>> vars) {
+		List<Equation<StateType>> result = new ArrayList<>();
+		BitSet visited = new BitSet(system.getEquations().size());
+		ArrayDeque<AnalysisVar<StateType>> workSet = new ArrayDeque<>(vars);
+		for (AnalysisVar<StateType> var : vars) {
+			Equation<StateType> equation = system.getDefiningEquation(var);
+			if (equation != null && !visited.get(equation.index)) {
+				visited.set(equation.index);
+				result.add(equation);
+			}
+		}
+		while (!workSet.isEmpty()) {
+			AnalysisVar<StateType> var = workSet.remove();
+			for (Equation<StateType> dependent : system
+					.getDependentEquations(var)) {
+				if (!visited.get(dependent.index)) {
+					visited.set(dependent.index);
+					result.add(dependent);
+					workSet.add(dependent.getLhs());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the phase of all phased operations in the given equations.
+	 */
+	protected void setPhase(Collection<Equation<StateType>> equations,
+			int phase) {
+		for (Equation<StateType> equation : equations) {
+			Operation<StateType> op = equation.getOp();
+			if (op instanceof PhasedOperation) {
+				PhasedOperation<StateType> phasedOp = (PhasedOperation<StateType>) op;
+				phasedOp.setPhase(phase);
+			}
+		}
+	}
+}
\ No newline at end of file
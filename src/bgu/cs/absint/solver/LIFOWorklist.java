@@ -0,0 +1,39 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+
+import bgu.cs.absint.Equation;
+
+/**
+ * A worklist that processes the most recently added equation first.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class LIFOWorklist<StateType> extends Worklist<StateType> {
+	protected final ArrayDeque<Equation<StateType>> stack;
+
+	public LIFOWorklist(int capacity) {
+		super(capacity);
+		stack = new ArrayDeque<>(Math.max(capacity, 1));
+	}
+
+	@Override
+	public Iterator<Equation<StateType>> iterator() {
+		return Collections.unmodifiableCollection(stack).iterator();
+	}
+
+	@Override
+	protected void push(Equation<StateType> equation) {
+		stack.addFirst(equation);
+	}
+
+	@Override
+	protected Equation<StateType> pop() {
+		return stack.removeFirst();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,325 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.AnalysisVar;
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+import bgu.cs.absint.Operation;
+import bgu.cs.absint.Ordering;
+
+/**
+ * Solves a given system of equations by splitting its dependency graph into
+ * strongly-connected components (SCCs) and solving each component by chaotic
+ * iterations once all the components it depends on have been solved.
+ * Independent components are solved concurrently on a {@link ForkJoinPool}.<br>
+ * Solving is race-free since the value of each variable is written only by
+ * the task solving the component of its defining equation, and that task
+ * starts only after the tasks of all the components it reads from have
+ * finished. The abstract domain, however, must allow its operations to be
+ * applied concurrently to distinct states, and the listener, if any, must
+ * allow its per-equation events to arrive concurrently.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public class ParallelSCCSolver<StateType, ActionType> extends
+		Solver<StateType, ActionType> {
+	/**
+	 * The pool used when no pool is given explicitly.
+	 */
+	private static ForkJoinPool defaultPool = null;
+
+	/**
+	 * Determines whether the widening operations are switched to narrowing
+	 * operations and a descending phase follows the ascending phase (as in
+	 * {@link WideningNarrowingSolver}).
+	 */
+	public boolean useNarrowing = false;
+
+	protected final ForkJoinPool pool;
+
+	/**
+	 * The equations of each component.
+	 */
+	protected List<List<Equation<StateType>>> components;
+
+	/**
+	 * Maps the index of an equation to the index of its component.
+	 */
+	protected int[] equationToComponent;
+
+	/**
+	 * The components depending on each component.
+	 */
+	protected int[][] componentSuccs;
+
+	/**
+	 * The number of components each component depends on.
+	 */
+	protected int[] componentPredCounts;
+
+	private AtomicInteger concurrentIterationCounter;
+	private AtomicInteger[] pendingPreds;
+	private CountDownLatch remaining;
+	private AtomicReference<Throwable> failure;
+
+	public ParallelSCCSolver() {
+		this(getDefaultPool());
+	}
+
+	public ParallelSCCSolver(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void solve(EquationSystem<StateType, ActionType> system,
+			AbstractDomain<StateType, ActionType> domain) {
+		this.system = system;
+		this.domain = domain;
+		if (listener != null)
+			listener.solvingStarted(system);
+		system.initializeValues(domain.getBottom());
+		computeComponents();
+		if (listener != null) {
+			listener.message("Found " + components.size()
+					+ " strongly-connected components.");
+			listener.phaseStarted(SolverListener.Phase.ASCENDING);
+		}
+		solveComponents(true);
+		if (listener != null)
+			listener.fixpointReached(iterationCounter);
+
+		if (useNarrowing) {
+			// Switch all widening operations to narrowing operations.
+			for (Equation<StateType> equation : system.getEquations()) {
+				Operation<StateType> op = equation.getOp();
+				if (op instanceof PhasedOperation) {
+					PhasedOperation<StateType> wideningNarrowingOp = (PhasedOperation<StateType>) op;
+					wideningNarrowingOp.advance();
+				}
+			}
+
+			if (listener != null)
+				listener.phaseStarted(SolverListener.Phase.DESCENDING);
+			solveComponents(false);
+			if (listener != null)
+				listener.fixpointReached(iterationCounter);
+		}
+
+		assert system.allVariablesInitialized() : "Solution resulted with null-valued variables!";
+	}
+
+	/**
+	 * Computes the strongly-connected components of the dependency graph and
+	 * the edges of its condensation. The top-level components of a weak
+	 * topological ordering are exactly the strongly-connected components.
+	 */
+	protected void computeComponents() {
+		int numOfEquations = system.getEquations().size();
+		WeakTopologicalOrder<Equation<StateType>> wto = RecursiveIterationSolver
+				.computeWTO(system);
+		components = new ArrayList<>();
+		equationToComponent = new int[numOfEquations];
+		for (WeakTopologicalOrder.Component<Equation<StateType>> component : wto
+				.getComponents()) {
+			List<Equation<StateType>> equations = new ArrayList<>();
+			collect(component, equations);
+			for (Equation<StateType> equation : equations) {
+				equationToComponent[equation.index] = components.size();
+			}
+			components.add(equations);
+		}
+
+		int numOfComponents = components.size();
+		componentSuccs = new int[numOfComponents][];
+		componentPredCounts = new int[numOfComponents];
+		BitSet succs = new BitSet(numOfComponents);
+		for (int i = 0; i < numOfComponents; ++i) {
+			succs.clear();
+			for (Equation<StateType> equation : components.get(i)) {
+				for (Equation<StateType> dependent : system
+						.getDependentEquations(equation.getLhs())) {
+					int j = equationToComponent[dependent.index];
+					if (j != i)
+						succs.set(j);
+				}
+			}
+			componentSuccs[i] = new int[succs.cardinality()];
+			int k = 0;
+			for (int j = succs.nextSetBit(0); j >= 0; j = succs
+					.nextSetBit(j + 1)) {
+				componentSuccs[i][k++] = j;
+				++componentPredCounts[j];
+			}
+		}
+	}
+
+	/**
+	 * Solves all components, scheduling each one when the components it
+	 * depends on have been solved, and waits for all of them to finish.
+	 *
+	 * @param ascending
+	 *            Determines whether values are iterated from below or refined
+	 *            from above.
+	 */
+	protected void solveComponents(boolean ascending) {
+		int numOfComponents = components.size();
+		concurrentIterationCounter = new AtomicInteger(iterationCounter);
+		pendingPreds = new AtomicInteger[numOfComponents];
+		remaining = new CountDownLatch(numOfComponents);
+		failure = new AtomicReference<>();
+		for (int i = 0; i < numOfComponents; ++i) {
+			pendingPreds[i] = new AtomicInteger(componentPredCounts[i]);
+		}
+		for (int i = 0; i < numOfComponents; ++i) {
+			if (componentPredCounts[i] == 0)
+				pool.execute(new ComponentTask(i, ascending));
+		}
+
+		try {
+			remaining.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Error(e);
+		}
+		iterationCounter = concurrentIterationCounter.get();
+
+		Throwable t = failure.get();
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		else if (t instanceof Error)
+			throw (Error) t;
+		else if (t != null)
+			throw new Error(t);
+	}
+
+	/**
+	 * Solves a single component by chaotic iterations, assuming the values of
+	 * the variables it depends on from other components are final.
+	 *
+	 * @param component
+	 *            The index of a component.
+	 * @param ascending
+	 *            Determines whether values are iterated from below or refined
+	 *            from above.
+	 */
+	protected void solveComponent(int component, boolean ascending) {
+		List<Equation<StateType>> equations = components.get(component);
+		if (equations.size() == 1) {
+			Equation<StateType> equation = equations.get(0);
+			if (!system.getDependentEquations(equation.getLhs()).contains(
+					equation)) {
+				int iteration = concurrentIterationCounter.incrementAndGet();
+				if (listener != null)
+					listener.iterationStarted(iteration, equation);
+				AnalysisVar<StateType> lhs = equation.getLhs();
+				StateType currentValue = lhs.value;
+				equation.update();
+				lhs.value = intern(lhs.value, currentValue);
+				if (listener != null)
+					listener.equationEvaluated(equation, currentValue,
+							lhs.value);
+				return;
+			}
+		}
+
+		Worklist<StateType> workSet = new PriorityWorklist<>(
+				equations.size());
+		workSet.addAll(equations);
+		while (!workSet.isEmpty()) {
+			int iteration = concurrentIterationCounter.incrementAndGet();
+			Equation<StateType> equation = workSet.remove();
+			if (listener != null)
+				listener.iterationStarted(iteration, equation);
+			AnalysisVar<StateType> lhs = equation.getLhs();
+			StateType currentValue = lhs.value;
+			equation.update();
+			lhs.value = intern(lhs.value, currentValue);
+			if (listener != null)
+				listener.equationEvaluated(equation, currentValue, lhs.value);
+
+			boolean changed;
+			if (lhs.value == currentValue) {
+				changed = false;
+			} else if (ascending) {
+				changed = !domain.leq(lhs.value, currentValue);
+			} else {
+				changed = domain.compare(lhs.value, currentValue) == Ordering.LESS;
+			}
+			if (changed) {
+				if (listener != null)
+					listener.valueChanged(equation, currentValue, lhs.value);
+				for (Equation<StateType> nextEquation : system
+						.getDependentEquations(lhs)) {
+					if (nextEquation != equation
+							&& equationToComponent[nextEquation.index] == component)
+						workSet.add(nextEquation);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a pool shared by all solvers that are not given a pool
+	 * explicitly.
+	 */
+	protected static synchronized ForkJoinPool getDefaultPool() {
+		if (defaultPool == null)
+			defaultPool = new ForkJoinPool();
+		return defaultPool;
+	}
+
+	private void collect(
+			WeakTopologicalOrder.Component<Equation<StateType>> component,
+			List<Equation<StateType>> result) {
+		result.add(component.head);
+		for (WeakTopologicalOrder.Component<Equation<StateType>> inner : component
+				.getBody()) {
+			collect(inner, result);
+		}
+	}
+
+	/**
+	 * Solves one component and then schedules the components that no longer
+	 * wait for any other component.
+	 */
+	@SuppressWarnings("serial")
+	protected class ComponentTask extends RecursiveAction {
+		protected final int component;
+		protected final boolean ascending;
+
+		public ComponentTask(int component, boolean ascending) {
+			this.component = component;
+			this.ascending = ascending;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				if (failure.get() == null)
+					solveComponent(component, ascending);
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			} finally {
+				for (int succ : componentSuccs[component]) {
+					if (pendingPreds[succ].decrementAndGet() == 0)
+						new ComponentTask(succ, ascending).fork();
+				}
+				remaining.countDown();
+			}
+		}
+	}
+}
\ No newline at end of file
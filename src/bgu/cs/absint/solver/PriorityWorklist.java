@@ -0,0 +1,39 @@
+package bgu.cs.absint.solver;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+import bgu.cs.absint.Equation;
+
+/**
+ * A worklist that processes equations according to {@link Equation#priority}.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class PriorityWorklist<StateType> extends Worklist<StateType> {
+	protected final PriorityQueue<Equation<StateType>> queue;
+
+	public PriorityWorklist(int capacity) {
+		super(capacity);
+		queue = new PriorityQueue<>(Math.max(capacity, 1));
+	}
+
+	@Override
+	public Iterator<Equation<StateType>> iterator() {
+		return Collections.unmodifiableCollection(queue).iterator();
+	}
+
+	@Override
+	protected void push(Equation<StateType> equation) {
+		queue.add(equation);
+	}
+
+	@Override
+	protected Equation<StateType> pop() {
+		return queue.remove();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,179 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.AnalysisVar;
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+
+/**
+ * Solves a given system of equations using Bourdoncle's recursive iteration
+ * strategy over a weak topological ordering of the equation dependency graph.
+ * Each component is stabilized before the equations following it are
+ * evaluated, stabilization is only checked at the heads of components, and
+ * widening (narrowing) is only applied at component heads.<br>
+ * The system is expected not to contain widening equations of its own (see
+ * {@link PhasedOperation}), since this solver places the widening points
+ * itself.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ * @param <ActionType>
+ *            The implementation type of program statements.
+ */
+public class RecursiveIterationSolver<StateType, ActionType> extends
+		Solver<StateType, ActionType> {
+	/**
+	 * Determines whether the values of component heads are widened in the
+	 * ascending phase.
+	 */
+	public boolean useWidening = true;
+
+	/**
+	 * Determines whether a descending phase that narrows the values of
+	 * component heads follows the ascending phase.
+	 */
+	public boolean useNarrowing = true;
+
+	protected WeakTopologicalOrder<Equation<StateType>> wto;
+
+	@Override
+	public void solve(EquationSystem<StateType, ActionType> system,
+			AbstractDomain<StateType, ActionType> domain) {
+		this.system = system;
+		this.domain = domain;
+		if (listener != null)
+			listener.solvingStarted(system);
+		system.initializeValues(domain.getBottom());
+		wto = computeWTO(system);
+		if (listener != null) {
+			listener.message("Weak topological order = " + wto);
+			listener.phaseStarted(SolverListener.Phase.ASCENDING);
+		}
+		for (WeakTopologicalOrder.Component<Equation<StateType>> component : wto
+				.getComponents()) {
+			ascend(component);
+		}
+		if (listener != null)
+			listener.fixpointReached(iterationCounter);
+
+		if (useNarrowing) {
+			if (listener != null)
+				listener.phaseStarted(SolverListener.Phase.DESCENDING);
+			for (WeakTopologicalOrder.Component<Equation<StateType>> component : wto
+					.getComponents()) {
+				descend(component);
+			}
+			if (listener != null)
+				listener.fixpointReached(iterationCounter);
+		}
+
+		assert system.allVariablesInitialized() : "Solution resulted with null-valued variables!";
+	}
+
+	/**
+	 * Computes a weak topological ordering of the dependency graph of the
+	 * given system, starting from the equations that do not depend on any
+	 * variable.
+	 *
+	 * @param system
+	 *            A system of equations.
+	 * @return A weak topological ordering of all equations in the system.
+	 */
+	public static <StateType, ActionType> WeakTopologicalOrder<Equation<StateType>> computeWTO(
+			final EquationSystem<StateType, ActionType> system) {
+		List<Equation<StateType>> roots = new ArrayList<>(system.getHeads());
+		roots.addAll(system.getEquations());
+		return new WeakTopologicalOrder<>(roots,
+				new WeakTopologicalOrder.SuccessorFunction<Equation<StateType>>() {
+					@Override
+					public Collection<Equation<StateType>> getSuccessors(
+							Equation<StateType> equation) {
+						return system.getDependentEquations(equation.getLhs());
+					}
+				});
+	}
+
+	/**
+	 * Stabilizes the given component from below.
+	 */
+	protected void ascend(
+			WeakTopologicalOrder.Component<Equation<StateType>> component) {
+		if (!component.isLoop()) {
+			evaluate(component.head);
+			return;
+		}
+
+		boolean first = true;
+		while (true) {
+			AnalysisVar<StateType> lhs = component.head.getLhs();
+			StateType currentValue = lhs.value;
+			evaluate(component.head);
+			if (useWidening)
+				lhs.value = intern(domain.widen(currentValue, lhs.value),
+						currentValue);
+			if (!first
+					&& (lhs.value == currentValue || domain.leq(lhs.value,
+							currentValue)))
+				break;
+			if (!first && listener != null)
+				listener.valueChanged(component.head, currentValue, lhs.value);
+			first = false;
+			for (WeakTopologicalOrder.Component<Equation<StateType>> inner : component
+					.getBody()) {
+				ascend(inner);
+			}
+		}
+	}
+
+	/**
+	 * Refines the post-fixed point of the given component from above.
+	 */
+	protected void descend(
+			WeakTopologicalOrder.Component<Equation<StateType>> component) {
+		if (!component.isLoop()) {
+			evaluate(component.head);
+			return;
+		}
+
+		boolean first = true;
+		while (true) {
+			AnalysisVar<StateType> lhs = component.head.getLhs();
+			StateType currentValue = lhs.value;
+			evaluate(component.head);
+			lhs.value = intern(domain.narrow(currentValue, lhs.value),
+					currentValue);
+			if (!first
+					&& (lhs.value == currentValue || domain.leq(currentValue,
+							lhs.value)))
+				break;
+			if (!first && listener != null)
+				listener.valueChanged(component.head, currentValue, lhs.value);
+			first = false;
+			for (WeakTopologicalOrder.Component<Equation<StateType>> inner : component
+					.getBody()) {
+				descend(inner);
+			}
+		}
+	}
+
+	/**
+	 * Updates the left-hand side variable of the given equation.
+	 */
+	protected void evaluate(Equation<StateType> equation) {
+		++iterationCounter;
+		if (listener != null)
+			listener.iterationStarted(iterationCounter, equation);
+		AnalysisVar<StateType> lhs = equation.getLhs();
+		StateType currentValue = lhs.value;
+		equation.update();
+		lhs.value = intern(lhs.value, currentValue);
+		if (listener != null)
+			listener.equationEvaluated(equation, currentValue, lhs.value);
+	}
+}
\ No newline at end of file
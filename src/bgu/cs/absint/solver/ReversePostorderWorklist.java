@@ -0,0 +1,138 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+
+/**
+ * A worklist that always processes the pending equation that comes first in a
+ * reverse postorder of the dependency graph of the system. That is, an
+ * equation is processed only after the pending equations it (acyclically)
+ * depends on.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class ReversePostorderWorklist<StateType> extends Worklist<StateType> {
+	/**
+	 * Maps the index of an equation to its position in the reverse postorder.
+	 */
+	protected final int[] indexToRank;
+
+	/**
+	 * The equations of the system sorted by reverse postorder.
+	 */
+	protected final List<Equation<StateType>> rankToEquation;
+
+	/**
+	 * The ranks of the equations currently in the worklist.
+	 */
+	protected final BitSet pendingRanks;
+
+	public ReversePostorderWorklist(EquationSystem<StateType, ?> system) {
+		super(system.getEquations().size());
+		int size = system.getEquations().size();
+		indexToRank = new int[size];
+		rankToEquation = reversePostorder(system);
+		for (int rank = 0; rank < size; ++rank) {
+			indexToRank[rankToEquation.get(rank).index] = rank;
+		}
+		pendingRanks = new BitSet(size);
+	}
+
+	/**
+	 * Returns the equations of the given system in a reverse postorder of a
+	 * depth-first traversal that starts from the heads of the system and
+	 * follows the dependent equations of each left-hand side variable.
+	 * Equations that are not reachable from the heads are traversed last.
+	 *
+	 * @param system
+	 *            A system of equations.
+	 * @return A list of all equations in the system.
+	 */
+	public static <StateType> List<Equation<StateType>> reversePostorder(
+			EquationSystem<StateType, ?> system) {
+		Collection<Equation<StateType>> equations = system.getEquations();
+		int size = equations.size();
+		ArrayList<Equation<StateType>> postorder = new ArrayList<>(size);
+		BitSet visited = new BitSet(size);
+
+		List<Equation<StateType>> roots = new ArrayList<>(system.getHeads());
+		roots.addAll(equations);
+		ArrayDeque<Equation<StateType>> stack = new ArrayDeque<>();
+		ArrayDeque<Iterator<Equation<StateType>>> succStack = new ArrayDeque<>();
+		for (Equation<StateType> root : roots) {
+			if (visited.get(root.index))
+				continue;
+			visited.set(root.index);
+			stack.push(root);
+			succStack.push(system.getDependentEquations(root.getLhs())
+					.iterator());
+			while (!stack.isEmpty()) {
+				Iterator<Equation<StateType>> succs = succStack.peek();
+				if (succs.hasNext()) {
+					Equation<StateType> succ = succs.next();
+					if (!visited.get(succ.index)) {
+						visited.set(succ.index);
+						stack.push(succ);
+						succStack.push(system.getDependentEquations(
+								succ.getLhs()).iterator());
+					}
+				} else {
+					succStack.pop();
+					postorder.add(stack.pop());
+				}
+			}
+		}
+
+		ArrayList<Equation<StateType>> result = new ArrayList<>(size);
+		for (int i = postorder.size() - 1; i >= 0; --i) {
+			result.add(postorder.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public Iterator<Equation<StateType>> iterator() {
+		return new Iterator<Equation<StateType>>() {
+			private int rank = pendingRanks.nextSetBit(0);
+
+			@Override
+			public boolean hasNext() {
+				return rank >= 0;
+			}
+
+			@Override
+			public Equation<StateType> next() {
+				Equation<StateType> result = rankToEquation.get(rank);
+				rank = pendingRanks.nextSetBit(rank + 1);
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	protected void push(Equation<StateType> equation) {
+		pendingRanks.set(indexToRank[equation.index]);
+	}
+
+	@Override
+	protected Equation<StateType> pop() {
+		int rank = pendingRanks.nextSetBit(0);
+		pendingRanks.clear(rank);
+		return rankToEquation.get(rank);
+	}
+}
\ No newline at end of file
@@ -1,10 +1,8 @@
 package bgu.cs.absint.solver;
 
-import java.util.Collection;
-
 import bgu.cs.absint.AbstractDomain;
-import bgu.cs.absint.Equation;
 import bgu.cs.absint.EquationSystem;
+import bgu.cs.absint.StateInterner;
 
 /**
  * The super-class of solver implementations for a system of equations.
@@ -17,11 +15,31 @@ import bgu.cs.absint.EquationSystem;
  *            The implementation type of program statements.
  */
 public abstract class Solver<StateType, ActionType> {
-	public boolean debug = true;
+	/**
+	 * Receives the events of the solver, when not null (see
+	 * {@link ConsoleSolverListener} for printing the progress of the solver).
+	 */
+	public SolverListener<StateType> listener = null;
+
+	/**
+	 * Determines the order in which pending equations are evaluated.
+	 */
+	public WorklistStrategy worklistStrategy = WorklistStrategy.PRIORITY;
 
 	protected EquationSystem<StateType, ActionType> system;
 	protected AbstractDomain<StateType, ActionType> domain;
 
+	/**
+	 * The number of equation evaluations performed so far.
+	 */
+	protected int iterationCounter = 0;
+
+	/**
+	 * When not null, the value computed for each equation is replaced by its
+	 * canonical instance, so unchanged values can be detected by reference.
+	 */
+	public StateInterner<StateType> interner = null;
+
 	/**
 	 * Computes the fixed-point solution of the given {@link system} from below,
 	 * using chaotic iterations. The solution is stored in the variables of the
@@ -35,34 +53,27 @@ public abstract class Solver<StateType, ActionType> {
 	public abstract void solve(EquationSystem<StateType, ActionType> system,
 			AbstractDomain<StateType, ActionType> domain);
 
-	protected String equationsToLhsString(
-			Collection<Equation<StateType>> workSet) {
-		StringBuilder result = new StringBuilder("{");
-		int i = 0;
-		for (Equation<StateType> equation : workSet) {
-			result.append(equation.getLhs());
-			++i;
-			if (i < workSet.size())
-				result.append(", ");
-		}
-		result.append("}");
-		return result.toString();
-	}
-
-	protected void printDebugSolution(
-			EquationSystem<StateType, ActionType> system) {
-		if (!debug)
-			return;
-		System.out.println("Solution = {");
-		for (Equation<StateType> equation : system.getEquations()) {
-			System.out.println("  " + equation.getLhs() + " : "
-					+ equation.getVal());
-		}
-		System.out.println("}");
+	/**
+	 * Returns the number of equation evaluations performed so far.
+	 */
+	public int getIterationCounter() {
+		return iterationCounter;
 	}
 
-	protected void printDebugMessage(String message) {
-		if (debug)
-			System.out.println(message);
+	/**
+	 * Returns the canonical instance of the given new value of a variable if
+	 * an interner is set, and the value itself otherwise. A value that is the
+	 * previous value of the variable, e.g., when an operation returns one of
+	 * its inputs, is returned as is, without hashing it again.
+	 * 
+	 * @param value
+	 *            The new value of a variable.
+	 * @param previous
+	 *            The previous value of the variable.
+	 */
+	protected StateType intern(StateType value, StateType previous) {
+		if (interner == null || value == previous)
+			return value;
+		return interner.intern(value);
 	}
 }
\ No newline at end of file
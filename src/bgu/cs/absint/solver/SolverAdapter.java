@@ -0,0 +1,44 @@
+package bgu.cs.absint.solver;
+
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+
+/**
+ * A {@link SolverListener} that ignores all events.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class SolverAdapter<StateType> implements SolverListener<StateType> {
+	@Override
+	public void solvingStarted(EquationSystem<StateType, ?> system) {
+	}
+
+	@Override
+	public void phaseStarted(Phase phase) {
+	}
+
+	@Override
+	public void iterationStarted(int iteration, Equation<StateType> equation) {
+	}
+
+	@Override
+	public void equationEvaluated(Equation<StateType> equation,
+			StateType oldValue, StateType newValue) {
+	}
+
+	@Override
+	public void valueChanged(Equation<StateType> equation, StateType oldValue,
+			StateType newValue) {
+	}
+
+	@Override
+	public void fixpointReached(int iterations) {
+	}
+
+	@Override
+	public void message(String message) {
+	}
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package bgu.cs.absint.solver;
+
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.EquationSystem;
+
+/**
+ * Receives the events of a {@link Solver} as it solves a system of equations.
+ * Solvers notify their listener, when one is set, instead of building debug
+ * messages, so a solver without a listener does no work on its behalf.<br>
+ * The per-equation events of a {@link ParallelSCCSolver} arrive concurrently
+ * from several threads. During these events, the variables of the given
+ * equation hold their current values, even for solvers that keep the values
+ * elsewhere while solving. Extend {@link SolverAdapter} to handle only some of
+ * the events.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public interface SolverListener<StateType> {
+	/**
+	 * The phases of solving a system.
+	 */
+	public static enum Phase {
+		/**
+		 * Iterating from below, possibly with widening.
+		 */
+		ASCENDING,
+
+		/**
+		 * Refining a post-fixed point from above, possibly with narrowing.
+		 */
+		DESCENDING
+	}
+
+	/**
+	 * Called before the solver solves, or re-solves, the given system.
+	 */
+	public void solvingStarted(EquationSystem<StateType, ?> system);
+
+	/**
+	 * Called when the solver starts the given phase.
+	 */
+	public void phaseStarted(Phase phase);
+
+	/**
+	 * Called before the solver evaluates the given equation.
+	 *
+	 * @param iteration
+	 *            The number of equation evaluations so far, including this
+	 *            one.
+	 */
+	public void iterationStarted(int iteration, Equation<StateType> equation);
+
+	/**
+	 * Called after the solver evaluates the given equation.
+	 *
+	 * @param oldValue
+	 *            The value of the left-hand side before the evaluation.
+	 * @param newValue
+	 *            The value of the left-hand side after the evaluation.
+	 */
+	public void equationEvaluated(Equation<StateType> equation,
+			StateType oldValue, StateType newValue);
+
+	/**
+	 * Called when the value of the left-hand side of the given equation has
+	 * changed such that the equations depending on it are evaluated again.
+	 */
+	public void valueChanged(Equation<StateType> equation, StateType oldValue,
+			StateType newValue);
+
+	/**
+	 * Called when the current phase reaches a fixed-point. The variables of
+	 * the system hold the solution of the phase.
+	 *
+	 * @param iterations
+	 *            The number of equation evaluations so far.
+	 */
+	public void fixpointReached(int iterations);
+
+	/**
+	 * Receives a message about the progress of the solver.
+	 */
+	public void message(String message);
+}
\ No newline at end of file
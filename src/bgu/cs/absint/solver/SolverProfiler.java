@@ -0,0 +1,132 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bgu.cs.absint.Equation;
+
+/**
+ * A {@link SolverListener} that records, for each equation, the number of
+ * times it was evaluated, the total time spent evaluating it, and the number
+ * of times its value changed. Profiles accumulate over all solved systems
+ * until {@link #clear} is called.<br>
+ * Evaluations are timed between the {@link #iterationStarted} and
+ * {@link #equationEvaluated} events, so the time excludes the order check the
+ * solvers apply to each new value, but includes interning it, if the solver
+ * has an interner. Changes are counted by
+ * {@link #valueChanged} events, which the recursive solver only fires for the
+ * heads of components. Equations may be evaluated concurrently, as long as no
+ * equation is evaluated by two threads at once.
+ * 
+ * @author romanm
+ * 
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public class SolverProfiler<StateType> extends SolverAdapter<StateType> {
+	protected final ConcurrentHashMap<Equation<StateType>, EquationProfile> profiles = new ConcurrentHashMap<>();
+
+	@Override
+	public void iterationStarted(int iteration, Equation<StateType> equation) {
+		profileOf(equation).start = System.nanoTime();
+	}
+
+	@Override
+	public void equationEvaluated(Equation<StateType> equation,
+			StateType oldValue, StateType newValue) {
+		EquationProfile profile = profileOf(equation);
+		profile.evaluations.incrementAndGet();
+		profile.nanos.addAndGet(System.nanoTime() - profile.start);
+	}
+
+	@Override
+	public void valueChanged(Equation<StateType> equation, StateType oldValue,
+			StateType newValue) {
+		profileOf(equation).changes.incrementAndGet();
+	}
+
+	/**
+	 * Returns the profile of the given equation, or null if it was never
+	 * evaluated.
+	 */
+	public EquationProfile getProfile(Equation<StateType> equation) {
+		return profiles.get(equation);
+	}
+
+	/**
+	 * Returns the profile of the given equation, creating it if the equation
+	 * has no profile yet.
+	 */
+	private EquationProfile profileOf(Equation<StateType> equation) {
+		EquationProfile result = profiles.get(equation);
+		if (result == null) {
+			result = new EquationProfile();
+			EquationProfile existing = profiles.putIfAbsent(equation, result);
+			if (existing != null)
+				result = existing;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the profiled equations, ordered by decreasing total evaluation
+	 * time.
+	 */
+	public List<Equation<StateType>> getEquations() {
+		List<Equation<StateType>> result = new ArrayList<>(profiles.keySet());
+		Collections.sort(result, new Comparator<Equation<StateType>>() {
+			@Override
+			public int compare(Equation<StateType> first,
+					Equation<StateType> second) {
+				return Long.compare(getProfile(second).getNanos(),
+						getProfile(first).getNanos());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Discards all profiles.
+	 */
+	public void clear() {
+		profiles.clear();
+	}
+
+	/**
+	 * The counters of a single equation.
+	 * 
+	 * @author romanm
+	 */
+	public static class EquationProfile {
+		protected final AtomicLong evaluations = new AtomicLong();
+		protected final AtomicLong nanos = new AtomicLong();
+		protected final AtomicLong changes = new AtomicLong();
+
+		/**
+		 * The start time of the current evaluation.
+		 */
+		protected volatile long start;
+
+		public long getEvaluations() {
+			return evaluations.get();
+		}
+
+		public long getNanos() {
+			return nanos.get();
+		}
+
+		public long getChanges() {
+			return changes.get();
+		}
+
+		@Override
+		public String toString() {
+			return getEvaluations() + " evaluations, " + getNanos() / 1000
+					+ "us, " + getChanges() + " changes";
+		}
+	}
+}
\ No newline at end of file
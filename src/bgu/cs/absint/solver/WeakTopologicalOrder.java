@@ -0,0 +1,237 @@
+package bgu.cs.absint.solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A weak topological ordering (WTO) of a directed graph, computed with
+ * Bourdoncle's algorithm (Efficient chaotic iteration strategies with
+ * widenings, 1993).<br>
+ * A WTO is a hierarchical ordering of the nodes of a graph where each
+ * strongly-connected part is represented by a component consisting of a head
+ * node followed by the ordering of the rest of its nodes. Every cycle of the
+ * graph passes through the head of some component containing it, and
+ * flattening the ordering places every inner component before the nodes that
+ * follow its enclosing component.
+ *
+ * @author romanm
+ *
+ * @param <NodeType>
+ *            The implementation type of graph nodes.
+ */
+public class WeakTopologicalOrder<NodeType> {
+	/**
+	 * Supplies the successors of graph nodes.
+	 *
+	 * @param <NodeType>
+	 *            The implementation type of graph nodes.
+	 */
+	public interface SuccessorFunction<NodeType> {
+		public Collection<NodeType> getSuccessors(NodeType node);
+	}
+
+	/**
+	 * An element of a weak topological ordering: either a single node or a
+	 * head node followed by the ordering of a strongly-connected part of the
+	 * graph.
+	 *
+	 * @param <NodeType>
+	 *            The implementation type of graph nodes.
+	 */
+	public static class Component<NodeType> {
+		/**
+		 * The node of a vertex or the head of a component.
+		 */
+		public final NodeType head;
+
+		/**
+		 * The ordering of the nodes following the head, or null for a vertex.
+		 */
+		protected final List<Component<NodeType>> body;
+
+		protected Component(NodeType head, List<Component<NodeType>> body) {
+			this.head = head;
+			this.body = body;
+		}
+
+		/**
+		 * Returns true if this is a component with a head and false if it is a
+		 * single vertex.
+		 */
+		public boolean isLoop() {
+			return body != null;
+		}
+
+		/**
+		 * Returns the ordering of the nodes following the head of a component
+		 * and the empty list for a vertex.
+		 */
+		public List<Component<NodeType>> getBody() {
+			if (body == null)
+				return Collections.emptyList();
+			return Collections.unmodifiableList(body);
+		}
+
+		@Override
+		public String toString() {
+			if (body == null)
+				return head.toString();
+			StringBuilder result = new StringBuilder("(" + head);
+			for (Component<NodeType> c : body) {
+				result.append(" " + c);
+			}
+			result.append(")");
+			return result.toString();
+		}
+	}
+
+	protected final SuccessorFunction<NodeType> successors;
+
+	/**
+	 * The top-level elements of the ordering.
+	 */
+	protected final List<Component<NodeType>> components = new ArrayList<>();
+
+	/**
+	 * The depth-first numbers used by the algorithm, where 0 stands for an
+	 * unvisited node and {@link Integer#MAX_VALUE} for a node whose component
+	 * has been completed.
+	 */
+	private final Map<NodeType, Integer> dfn = new HashMap<>();
+	private final ArrayDeque<NodeType> stack = new ArrayDeque<>();
+	private int num = 0;
+
+	/**
+	 * Computes a weak topological ordering for all nodes reachable from the
+	 * given roots. Roots are traversed in the order given.
+	 *
+	 * @param roots
+	 *            The nodes from which the traversal starts.
+	 * @param successors
+	 *            The successor relation of the graph.
+	 */
+	public WeakTopologicalOrder(Iterable<NodeType> roots,
+			SuccessorFunction<NodeType> successors) {
+		this.successors = successors;
+		for (NodeType root : roots) {
+			if (getDfn(root) == 0) {
+				List<Component<NodeType>> partition = new ArrayList<>();
+				visit(root, partition);
+				Collections.reverse(partition);
+				components.addAll(partition);
+			}
+		}
+		dfn.clear();
+	}
+
+	/**
+	 * Returns the top-level elements of the ordering.
+	 */
+	public List<Component<NodeType>> getComponents() {
+		return Collections.unmodifiableList(components);
+	}
+
+	/**
+	 * Returns the nodes of the ordering flattened into a linear order.
+	 */
+	public List<NodeType> getNodes() {
+		List<NodeType> result = new ArrayList<>();
+		flatten(components, result);
+		return result;
+	}
+
+	/**
+	 * Returns the heads of all (possibly nested) components.
+	 */
+	public Set<NodeType> getHeads() {
+		Set<NodeType> result = new LinkedHashSet<>();
+		collectHeads(components, result);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (Component<NodeType> c : components) {
+			if (result.length() > 0)
+				result.append(" ");
+			result.append(c);
+		}
+		return result.toString();
+	}
+
+	protected void flatten(List<Component<NodeType>> partition,
+			List<NodeType> result) {
+		for (Component<NodeType> c : partition) {
+			result.add(c.head);
+			if (c.body != null)
+				flatten(c.body, result);
+		}
+	}
+
+	protected void collectHeads(List<Component<NodeType>> partition,
+			Set<NodeType> result) {
+		for (Component<NodeType> c : partition) {
+			if (c.body != null) {
+				result.add(c.head);
+				collectHeads(c.body, result);
+			}
+		}
+	}
+
+	/**
+	 * Visits the given node and adds the completed elements to the given
+	 * partition in reverse order.
+	 */
+	private int visit(NodeType vertex, List<Component<NodeType>> partition) {
+		stack.push(vertex);
+		++num;
+		dfn.put(vertex, num);
+		int head = num;
+		boolean loop = false;
+		for (NodeType succ : successors.getSuccessors(vertex)) {
+			int succDfn = getDfn(succ);
+			int min = succDfn == 0 ? visit(succ, partition) : succDfn;
+			if (min <= head) {
+				head = min;
+				loop = true;
+			}
+		}
+		if (head == getDfn(vertex)) {
+			dfn.put(vertex, Integer.MAX_VALUE);
+			NodeType element = stack.pop();
+			if (loop) {
+				while (element != vertex) {
+					dfn.put(element, 0);
+					element = stack.pop();
+				}
+				partition.add(component(vertex));
+			} else {
+				partition.add(new Component<NodeType>(vertex, null));
+			}
+		}
+		return head;
+	}
+
+	private Component<NodeType> component(NodeType vertex) {
+		List<Component<NodeType>> partition = new ArrayList<>();
+		for (NodeType succ : successors.getSuccessors(vertex)) {
+			if (getDfn(succ) == 0)
+				visit(succ, partition);
+		}
+		Collections.reverse(partition);
+		return new Component<NodeType>(vertex, partition);
+	}
+
+	private int getDfn(NodeType node) {
+		Integer result = dfn.get(node);
+		return result == null ? 0 : result;
+	}
+}
\ No newline at end of file
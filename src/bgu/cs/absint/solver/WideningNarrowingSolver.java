@@ -1,17 +1,28 @@
 package bgu.cs.absint.solver;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
 import bgu.cs.absint.AbstractDomain;
+import bgu.cs.absint.AnalysisVar;
 import bgu.cs.absint.Equation;
 import bgu.cs.absint.EquationSystem;
 import bgu.cs.absint.Operation;
-import bgu.cs.util.StringUtils;
 
 /**
  * A solver that first iterates up using widening and then iterates down using
- * narrowing.
- * 
+ * narrowing.<br>
+ * The widening policy is configurable: a box equation (an equation whose
+ * operation is a {@link PhasedOperation}) can apply a number of plain upper
+ * bounds before widening, widening can be restricted to one box equation per
+ * loop of the weak topological ordering of the system, and the narrowing
+ * phase can be restricted to the strongly-connected components containing box
+ * equations that actually widened and capped by a number of iterations.
+ *
  * @author romanm
- * 
+ *
  * @param <StateType>
  *            The type implementing abstract elements.
  * @param <ActionType>
@@ -19,19 +30,62 @@ import bgu.cs.util.StringUtils;
  */
 public class WideningNarrowingSolver<StateType, ActionType> extends
 		ChaoticIterationSolver<StateType, ActionType> {
+	/**
+	 * The number of times each box equation applies an upper bound instead of
+	 * widening.
+	 */
+	public int wideningDelay = 0;
+
+	/**
+	 * Determines whether only the box equation at the head of each loop of the
+	 * weak topological ordering widens, while the other box equations of the
+	 * loop apply upper bounds.
+	 */
+	public boolean widenAtLoopHeadsOnly = false;
+
+	/**
+	 * Determines whether the narrowing phase starts only from the
+	 * strongly-connected components containing box equations whose widening
+	 * increased their value, rather than from all equations.
+	 */
+	public boolean localizedNarrowing = false;
+
+	/**
+	 * Maps the index of each box equation to the number of times it was
+	 * evaluated while iterating up, and the index of other equations to -1.
+	 */
+	protected int[] boxVisits;
+
+	/**
+	 * The box equations that apply upper bounds instead of widening.
+	 */
+	protected BitSet joinOnly;
+
+	/**
+	 * The box equations whose widening increased their value.
+	 */
+	protected BitSet widened;
+
+	/**
+	 * Computed on demand by {@link #getWTO()}.
+	 */
+	protected WeakTopologicalOrder<Equation<StateType>> wto;
+
 	@Override
 	public void solve(EquationSystem<StateType, ActionType> system,
 			AbstractDomain<StateType, ActionType> domain) {
 		this.system = system;
 		this.domain = domain;
-		printDebugMessage("Solving the following equation system = "
-				+ StringUtils.newLine + system);
+		this.wto = null;
+		if (listener != null) {
+			listener.solvingStarted(system);
+			listener.phaseStarted(SolverListener.Phase.ASCENDING);
+		}
 		initializeValues();
-		printDebugMessage("Starting chaotic iteration: widening phase...");
+		initializeBoxes();
 		iterateUp();
-		printDebugMessage("Reached fixed-point after " + iterationCounter
-				+ " iterations.");
-		printDebugSolution(system);
+		if (listener != null)
+			listener.fixpointReached(iterationCounter);
 
 		// Switch all widening operations to narrowing operations.
 		for (Equation<StateType> equation : system.getEquations()) {
@@ -42,14 +96,158 @@ public class WideningNarrowingSolver<StateType, ActionType> extends
 			}
 		}
 
-		printDebugMessage("");
-		printDebugMessage("Starting chaotic iteration: narrowing phase...");
-		iterateDown();
-		printDebugMessage("Reached fixed-point after " + iterationCounter
-				+ " iterations.");
-
-		printDebugSolution(system);
+		if (listener != null)
+			listener.phaseStarted(SolverListener.Phase.DESCENDING);
+		if (localizedNarrowing)
+			iterateDown(getNarrowingEquations());
+		else
+			iterateDown();
+		if (listener != null)
+			listener.fixpointReached(iterationCounter);
 
 		assert system.allVariablesInitialized() : "Solution resulted with null-valued variables!";
 	}
+
+	/**
+	 * Applies the widening policy to box equations.
+	 */
+	@Override
+	protected void evaluateUp(Equation<StateType> equation) {
+		int index = equation.index;
+		if (boxVisits[index] < 0) {
+			equation.update();
+			return;
+		}
+
+		AnalysisVar<StateType> lhs = equation.getLhs();
+		StateType currentValue = lhs.value;
+		if (boxVisits[index]++ < wideningDelay || joinOnly.get(index)) {
+			List<AnalysisVar<StateType>> args = equation.getArgs();
+			lhs.value = domain.ub(args.get(0).value, args.get(1).value);
+		} else {
+			equation.update();
+			if (!widened.get(index) && !domain.leq(lhs.value, currentValue))
+				widened.set(index);
+		}
+	}
+
+	/**
+	 * Finds the box equations of the system and determines which of them
+	 * widen.
+	 */
+	protected void initializeBoxes() {
+		int numOfEquations = system.getEquations().size();
+		boxVisits = new int[numOfEquations];
+		joinOnly = new BitSet(numOfEquations);
+		widened = new BitSet(numOfEquations);
+		for (Equation<StateType> equation : system.getEquations()) {
+			boxVisits[equation.index] = isBox(equation) ? 0 : -1;
+		}
+		if (widenAtLoopHeadsOnly) {
+			for (WeakTopologicalOrder.Component<Equation<StateType>> component : getWTO()
+					.getComponents()) {
+				selectWideningEquation(component);
+			}
+		}
+	}
+
+	/**
+	 * Marks the box equations of the given component that are not at the head
+	 * of the loop, excluding the ones of nested loops, as applying upper
+	 * bounds.<br>
+	 * The box equation at the head of a loop is either the head of the
+	 * component or the box equation whose joined variable is defined by the
+	 * head. Every cycle at the level of the component passes through it, so
+	 * the ascending phase still terminates. Loops without such a box equation
+	 * are left unchanged.
+	 */
+	protected void selectWideningEquation(
+			WeakTopologicalOrder.Component<Equation<StateType>> component) {
+		if (!component.isLoop() || component.getBody().isEmpty())
+			return;
+
+		List<Equation<StateType>> boxes = new ArrayList<>();
+		if (isBox(component.head))
+			boxes.add(component.head);
+		for (WeakTopologicalOrder.Component<Equation<StateType>> inner : component
+				.getBody()) {
+			// A box equation depends on itself, and therefore forms a loop
+			// with an empty body.
+			if (inner.getBody().isEmpty() && isBox(inner.head))
+				boxes.add(inner.head);
+			else
+				selectWideningEquation(inner);
+		}
+
+		Equation<StateType> headBox = null;
+		for (Equation<StateType> box : boxes) {
+			if (box == component.head
+					|| system.getDefiningEquation(box.getArgs().get(1)) == component.head) {
+				headBox = box;
+				break;
+			}
+		}
+		if (headBox != null) {
+			for (Equation<StateType> box : boxes) {
+				if (box != headBox)
+					joinOnly.set(box.index);
+			}
+		}
+	}
+
+	/**
+	 * Returns the equations of the top-level components of the weak
+	 * topological ordering, i.e., the strongly-connected components, that
+	 * contain a box equation whose widening increased its value.
+	 */
+	protected Collection<Equation<StateType>> getNarrowingEquations() {
+		List<Equation<StateType>> result = new ArrayList<>();
+		if (widened.isEmpty())
+			return result;
+		List<Equation<StateType>> componentEquations = new ArrayList<>();
+		for (WeakTopologicalOrder.Component<Equation<StateType>> component : getWTO()
+				.getComponents()) {
+			componentEquations.clear();
+			collect(component, componentEquations);
+			for (Equation<StateType> equation : componentEquations) {
+				if (widened.get(equation.index)) {
+					result.addAll(componentEquations);
+					break;
+				}
+			}
+		}
+		if (listener != null)
+			listener.message("Narrowing " + result.size() + " of "
+					+ system.getEquations().size() + " equations.");
+		return result;
+	}
+
+	protected WeakTopologicalOrder<Equation<StateType>> getWTO() {
+		if (wto == null)
+			wto = RecursiveIterationSolver.computeWTO(system);
+		return wto;
+	}
+
+	/**
+	 * Checks whether the given equation is the widening equation of a loop
+	 * head, which has the form {@code box = op(box, join)}.
+	 */
+	protected boolean isBox(Equation<StateType> equation) {
+		return equation.getOp() instanceof PhasedOperation
+				&& equation.getArgs().size() == 2
+				&& equation.getArgs().get(0) == equation.getLhs();
+	}
+
+	/**
+	 * Adds the equations of the given component to the given list.
+	 */
+	protected static <StateType> void collect(
+			WeakTopologicalOrder.Component<Equation<StateType>> component,
+			List<Equation<StateType>> result) {
+		result.add(component.head);
+		for (WeakTopologicalOrder.Component<Equation<StateType>> inner : component
+				.getBody()) {
+			collect(inner, result);
+		}
+	}
 }
\ No newline at end of file
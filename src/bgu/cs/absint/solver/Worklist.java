@@ -0,0 +1,100 @@
+package bgu.cs.absint.solver;
+
+import java.util.AbstractCollection;
+import java.util.BitSet;
+
+import bgu.cs.absint.Equation;
+
+/**
+ * A collection of equations pending evaluation by a solver. An equation is
+ * stored at most once: adding an equation that is already pending has no
+ * effect. Membership is tracked by a bit set over the dense indices that an
+ * {@link bgu.cs.absint.EquationSystem} assigns to its equations.
+ *
+ * @author romanm
+ *
+ * @param <StateType>
+ *            The implementation type of abstract states.
+ */
+public abstract class Worklist<StateType> extends
+		AbstractCollection<Equation<StateType>> {
+	/**
+	 * The indices of the equations currently in the worklist.
+	 */
+	protected final BitSet members;
+
+	/**
+	 * The number of equations currently in the worklist.
+	 */
+	protected int size = 0;
+
+	/**
+	 * Constructs an empty worklist.
+	 *
+	 * @param capacity
+	 *            The number of equations in the system.
+	 */
+	public Worklist(int capacity) {
+		members = new BitSet(capacity);
+	}
+
+	/**
+	 * Adds the given equation unless it is already pending.
+	 *
+	 * @param equation
+	 *            An equation belonging to the solved system.
+	 * @return true if the equation was not already in the worklist.
+	 */
+	@Override
+	public boolean add(Equation<StateType> equation) {
+		assert equation.index >= 0 : "Equation " + equation
+				+ " does not belong to an equation system!";
+		if (members.get(equation.index))
+			return false;
+		members.set(equation.index);
+		++size;
+		push(equation);
+		return true;
+	}
+
+	/**
+	 * Removes the next equation according to the strategy of the worklist.
+	 *
+	 * @return The next equation to evaluate.
+	 */
+	public Equation<StateType> remove() {
+		assert size > 0 : "remove called on an empty worklist!";
+		Equation<StateType> equation = pop();
+		members.clear(equation.index);
+		--size;
+		return equation;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Equation))
+			return false;
+		int index = ((Equation<?>) o).index;
+		return index >= 0 && members.get(index);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Stores an equation that is not already in the worklist.
+	 */
+	protected abstract void push(Equation<StateType> equation);
+
+	/**
+	 * Extracts the next equation from a non-empty worklist.
+	 */
+	protected abstract Equation<StateType> pop();
+}
\ No newline at end of file
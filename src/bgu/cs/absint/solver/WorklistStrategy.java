@@ -0,0 +1,64 @@
+package bgu.cs.absint.solver;
+
+import bgu.cs.absint.EquationSystem;
+
+/**
+ * The available strategies for choosing the next equation to evaluate.
+ *
+ * @author romanm
+ */
+public enum WorklistStrategy {
+	/**
+	 * Equations are processed in the order they were added.
+	 */
+	FIFO {
+		@Override
+		public <StateType> Worklist<StateType> create(
+				EquationSystem<StateType, ?> system) {
+			return new FIFOWorklist<>(system.getEquations().size());
+		}
+	},
+
+	/**
+	 * The most recently added equation is processed first.
+	 */
+	LIFO {
+		@Override
+		public <StateType> Worklist<StateType> create(
+				EquationSystem<StateType, ?> system) {
+			return new LIFOWorklist<>(system.getEquations().size());
+		}
+	},
+
+	/**
+	 * Equations are processed according to their priorities.
+	 */
+	PRIORITY {
+		@Override
+		public <StateType> Worklist<StateType> create(
+				EquationSystem<StateType, ?> system) {
+			return new PriorityWorklist<>(system.getEquations().size());
+		}
+	},
+
+	/**
+	 * Equations are processed in a reverse postorder of the dependency graph.
+	 */
+	REVERSE_POSTORDER {
+		@Override
+		public <StateType> Worklist<StateType> create(
+				EquationSystem<StateType, ?> system) {
+			return new ReversePostorderWorklist<>(system);
+		}
+	};
+
+	/**
+	 * Creates an empty worklist for the equations of the given system.
+	 *
+	 * @param system
+	 *            The system of equations that needs to be solved.
+	 * @return An empty worklist.
+	 */
+	public abstract <StateType> Worklist<StateType> create(
+			EquationSystem<StateType, ?> system);
+}
\ No newline at end of file
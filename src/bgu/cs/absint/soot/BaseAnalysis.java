@@ -9,8 +9,21 @@ import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.Equation;
 import bgu.cs.absint.EquationSystem;
 import bgu.cs.absint.ErrorState;
+import bgu.cs.absint.StateInterner;
+import bgu.cs.absint.constructor.ConjunctiveState;
+import bgu.cs.absint.constructor.MemoizingDomain;
+import bgu.cs.absint.constructor.PackedDomain;
+import bgu.cs.absint.constructor.ProfilingDomain;
 import bgu.cs.absint.solver.ChaoticIterationSolver;
+import bgu.cs.absint.solver.CompiledChaoticIterationSolver;
+import bgu.cs.absint.solver.CompositeSolverListener;
+import bgu.cs.absint.solver.ConsoleSolverListener;
+import bgu.cs.absint.solver.ParallelSCCSolver;
+import bgu.cs.absint.solver.RecursiveIterationSolver;
+import bgu.cs.absint.solver.Solver;
+import bgu.cs.absint.solver.SolverProfiler;
 import bgu.cs.absint.solver.WideningNarrowingSolver;
+import bgu.cs.absint.solver.WorklistStrategy;
 import bgu.cs.util.StringUtils;
 import soot.Body;
 import soot.BodyTransformer;
@@ -33,12 +46,69 @@ public class BaseAnalysis<StateType, DomType extends AbstractDomain<StateType, U
 
 	protected boolean useWidening = false;
 	protected boolean useNarrowing = false;
+	protected boolean useRecursiveStrategy = false;
+	protected boolean useParallelSolver = false;
+	protected boolean measureParallelSpeedup = false;
+	protected boolean useCompiledSystem = false;
+	protected boolean useBlockEquations = false;
+	protected boolean useLivenessProjection = false;
+	protected int wideningDelay = 0;
+	protected boolean widenAtLoopHeadsOnly = false;
+	protected boolean useLocalizedNarrowing = false;
+	protected int maxNarrowingIterations = 0;
+
+	/**
+	 * Shared by the solvers of all method bodies, when not null.
+	 */
+	protected StateInterner<StateType> interner = null;
+
+	/**
+	 * The maximal number of entries in each cache of the memoizing domain, or
+	 * 0 if the operations of the domain are not cached.
+	 */
+	protected int maxMemoizationEntries = 0;
+
+	/**
+	 * The domain used to solve the equation systems of all method bodies: the
+	 * domain of the analysis wrapped by the decorators selected by the options.
+	 * Built by {@link #getSolvingDomain} when the first method body is
+	 * analyzed, and discarded whenever one of these options changes.
+	 */
+	protected AbstractDomain<StateType, Unit> solvingDomain = null;
+
+	/**
+	 * Caches the operations of the domain across all method bodies, when not
+	 * null.
+	 */
+	protected MemoizingDomain<StateType, Unit> memoizingDomain = null;
+
+	/**
+	 * Profiles the operations of the domain across all method bodies, when not
+	 * null.
+	 */
+	protected ProfilingDomain<StateType, Unit> profilingDomain = null;
+
+	/**
+	 * Profiles the equations of each method body, when not null.
+	 */
+	protected SolverProfiler<StateType> solverProfiler = null;
+
+	/**
+	 * Writes the profiles after each method body, when not null.
+	 */
+	protected ProfileExporter profileExporter = null;
+
+	protected WorklistStrategy worklistStrategy = WorklistStrategy.PRIORITY;
 
 	protected boolean ignoreStaticInitializers = true;
 	protected boolean ignoreConstructors = true;
 	protected boolean ignoreAnalysisPrefix = true;
 
 	protected int totalNumberOfErrors = 0;
+	protected int totalNumberOfIterations = 0;
+	protected long totalSequentialSolveTime = 0;
+	protected long totalParallelSolveTime = 0;
+	protected int numberOfSpeedupMeasurements = 0;
 
 	protected DomType domain;
 	protected Collection<Unit> errorUnits = new HashSet<>();
@@ -60,6 +130,176 @@ public class BaseAnalysis<StateType, DomType extends AbstractDomain<StateType, U
 		this.useNarrowing = value;
 	}
 
+	/**
+	 * Sets the number of upper bounds each widening equation applies before
+	 * it starts widening (see {@link WideningNarrowingSolver#wideningDelay}).
+	 */
+	public void setWideningDelay(int value) {
+		this.wideningDelay = value;
+	}
+
+	/**
+	 * Determines whether only the widening equation at the head of each loop
+	 * widens (see {@link WideningNarrowingSolver#widenAtLoopHeadsOnly}).
+	 */
+	public void widenAtLoopHeadsOnly(boolean value) {
+		this.widenAtLoopHeadsOnly = value;
+	}
+
+	/**
+	 * Determines whether the narrowing phase is restricted to the
+	 * strongly-connected components whose widening equations increased their
+	 * values (see {@link WideningNarrowingSolver#localizedNarrowing}).
+	 */
+	public void useLocalizedNarrowing(boolean value) {
+		this.useLocalizedNarrowing = value;
+	}
+
+	/**
+	 * Sets the maximal number of equations evaluated by the narrowing phase,
+	 * where 0 stands for no limit.
+	 */
+	public void setMaxNarrowingIterations(int value) {
+		this.maxNarrowingIterations = value;
+	}
+
+	/**
+	 * Determines whether equation systems are solved by Bourdoncle's recursive
+	 * iteration strategy (see {@link RecursiveIterationSolver}) instead of
+	 * chaotic iterations.
+	 */
+	public void useRecursiveStrategy(boolean value) {
+		this.useRecursiveStrategy = value;
+	}
+
+	/**
+	 * Determines whether equation systems are solved by solving independent
+	 * strongly-connected components concurrently (see
+	 * {@link ParallelSCCSolver}).
+	 */
+	public void useParallelSolver(boolean value) {
+		this.useParallelSolver = value;
+	}
+
+	/**
+	 * Solves each equation system both by the parallel solver and by the
+	 * sequential one and reports the running times of both. Has no effect
+	 * along with the recursive strategy, which takes precedence over the
+	 * parallel solver.
+	 */
+	public void measureParallelSpeedup(boolean value) {
+		this.measureParallelSpeedup = value;
+		if (value)
+			this.useParallelSolver = true;
+	}
+
+	/**
+	 * Determines whether chaotic iterations run against the compiled,
+	 * integer-indexed form of the equation system (see
+	 * {@link CompiledChaoticIterationSolver}).
+	 */
+	public void useCompiledSystem(boolean value) {
+		this.useCompiledSystem = value;
+	}
+
+	/**
+	 * Determines whether the equation system of a method body is built per
+	 * basic block rather than per unit (see
+	 * {@link BodyToEquationSystem#setBlockLevel}).
+	 */
+	public void useBlockEquations(boolean value) {
+		this.useBlockEquations = value;
+	}
+
+	/**
+	 * Determines whether locals are projected out of the states following the
+	 * units and edges where they die (see {@link LiveLocalsProjection}). Only
+	 * applies to analyses whose states are {@link ConjunctiveState}s, e.g.,
+	 * intervals, zones and constants.
+	 */
+	public void useLivenessProjection(boolean value) {
+		this.useLivenessProjection = value;
+	}
+
+	/**
+	 * Determines whether the solver replaces the values it computes by
+	 * canonical instances (see {@link StateInterner}).
+	 */
+	public void useStateInterning(boolean value) {
+		this.interner = value ? new StateInterner<StateType>() : null;
+		discardSolvingDomain();
+	}
+
+	/**
+	 * Determines whether the results of transformers, upper bounds, order
+	 * checks and widenings are cached (see {@link MemoizingDomain}). The
+	 * caches intern their inputs with the interner of the analysis, if any.
+	 * 
+	 * @param maxEntries
+	 *            The maximal number of entries in each cache, or 0 to disable
+	 *            caching.
+	 */
+	public void useMemoization(int maxEntries) {
+		this.maxMemoizationEntries = maxEntries;
+		discardSolvingDomain();
+	}
+
+	/**
+	 * Returns the caching decorator of the domain, or null if caching is
+	 * disabled or no method body has been analyzed yet.
+	 */
+	public MemoizingDomain<StateType, Unit> getMemoizingDomain() {
+		return memoizingDomain;
+	}
+
+	/**
+	 * Determines whether the equations and the domain operations are
+	 * profiled, and writes the profiles after analyzing each method body (see
+	 * {@link ProfileExporter}). The profiled domain wraps the caching one, if
+	 * any, so cache hits are timed too.<br>
+	 * Interning is not timed separately: the time of an equation includes
+	 * interning its value, as well as the states interned by the caches.
+	 * Likewise, only the domain operations called by the solvers are
+	 * profiled, so reductions that transformers apply internally are
+	 * accounted to their equations rather than to the reduction profile.
+	 * 
+	 * @param prefix
+	 *            The prefix of the names of the profile files, or null to
+	 *            disable profiling.
+	 * @param format
+	 *            The format of the profile files.
+	 */
+	public void useProfiling(String prefix, ProfileExporter.Format format) {
+		if (prefix == null) {
+			this.solverProfiler = null;
+			this.profileExporter = null;
+		} else {
+			this.solverProfiler = new SolverProfiler<>();
+			this.profileExporter = new ProfileExporter(prefix, format);
+		}
+		discardSolvingDomain();
+	}
+
+	/**
+	 * Returns the profiling decorator of the domain, or null if profiling is
+	 * disabled or no method body has been analyzed yet.
+	 */
+	public ProfilingDomain<StateType, Unit> getProfilingDomain() {
+		return profilingDomain;
+	}
+
+	public void setWorklistStrategy(WorklistStrategy strategy) {
+		this.worklistStrategy = strategy;
+	}
+
+	/**
+	 * Returns the number of equation evaluations performed by the solver over
+	 * all analyzed methods.
+	 */
+	public int getTotalNumberOfIterations() {
+		return totalNumberOfIterations;
+	}
+
 	public void setIgnoreStaticInitializers(boolean value) {
 		this.ignoreStaticInitializers = value;
 	}
@@ -86,6 +326,22 @@ public class BaseAnalysis<StateType, DomType extends AbstractDomain<StateType, U
 		}
 	}
 
+	/**
+	 * Reports the total time spent by the sequential and parallel solvers when
+	 * measuring the speedup of the parallel solver.
+	 */
+	public void reportParallelSpeedup() {
+		System.err.println(StringUtils.addUnderline("Parallel speedup for "
+				+ getClass().getSimpleName()));
+		System.err.println("Sequential solve time: "
+				+ totalSequentialSolveTime / 1000000 + "ms");
+		System.err.println("Parallel solve time: " + totalParallelSolveTime
+				/ 1000000 + "ms");
+		if (totalParallelSolveTime > 0)
+			System.err.println(String.format("Speedup: %.2f",
+					(double) totalSequentialSolveTime / totalParallelSolveTime));
+	}
+
 	@Override
 	protected void internalTransform(Body b, String phaseName,
 			@SuppressWarnings("rawtypes") Map options) {
@@ -99,6 +355,12 @@ public class BaseAnalysis<StateType, DomType extends AbstractDomain<StateType, U
 			System.err.println(underLinedMessage);
 		}
 		analyzeAndTag(b);
+
+		if (profileExporter != null) {
+			profileExporter.exportEquations(b, solverProfiler);
+			profileExporter.exportOperations(profilingDomain);
+			solverProfiler.clear();
+		}
 	}
 
 	/**
@@ -126,45 +388,221 @@ public class BaseAnalysis<StateType, DomType extends AbstractDomain<StateType, U
 		return true;
 	}
 
+	/**
+	 * Analyzes the given body and tags its units with the results. When the
+	 * domain is a {@link PackedDomain}, its packing is first set to the
+	 * {@link LocalPacking} of the body.
+	 */
 	protected void analyzeAndTag(Body b) {
 		errorUnits = new HashSet<>();
-		BodyToEquationSystem<StateType> systemBuilder = new BodyToEquationSystem<>(
-				b, domain);
+		if (domain instanceof PackedDomain) {
+			@SuppressWarnings("unchecked")
+			PackedDomain<?, Unit> packedDomain = (PackedDomain<?, Unit>) domain;
+			packedDomain.setPacking(new LocalPacking(b));
+		}
+		AbstractDomain<StateType, Unit> solvingDomain = getSolvingDomain();
+		BodyToEquationSystem<StateType> systemBuilder = createSystemBuilder(b,
+				solvingDomain);
+		// The recursive strategy places the widening points by itself.
 		EquationSystem<StateType, Unit> system = systemBuilder
-				.build(useWidening);
-		system.resetBottom(domain); // Start analysis from bottom values.
-		ChaoticIterationSolver<StateType, Unit> solver = useWidening ? new WideningNarrowingSolver<StateType, Unit>()
-				: new ChaoticIterationSolver<StateType, Unit>();
-		solver.debug = this.debug;
-		solver.solve(system, domain);
-		Map<Equation<StateType>, Unit> equationToUnit = systemBuilder
-				.getEquationToUnit();
-		tagUnits(equationToUnit);
-		checkForErrors(b, equationToUnit);
+				.build(useWidening && !useRecursiveStrategy);
+		system.resetBottom(solvingDomain); // Start analysis from bottom values.
+		Solver<StateType, Unit> solver = createSolver();
+		if (debug && solverProfiler != null)
+			solver.listener = new CompositeSolverListener<StateType>(
+					new ConsoleSolverListener<StateType>(), solverProfiler);
+		else if (debug)
+			solver.listener = new ConsoleSolverListener<>();
+		else
+			solver.listener = solverProfiler;
+		solver.worklistStrategy = this.worklistStrategy;
+		solver.interner = this.interner;
+		solver.solve(system, solvingDomain);
+		totalNumberOfIterations += solver.getIterationCounter();
+		if (measureParallelSpeedup && solver instanceof ParallelSCCSolver)
+			compareWithSequentialSolver(b, solvingDomain);
+		tagUnits(systemBuilder);
+		checkForErrors(b, systemBuilder);
 	}
 
-	protected void checkForErrors(Body b,
-			Map<Equation<StateType>, Unit> equationToUnit) {
-		for (Map.Entry<Equation<StateType>, Unit> entry : equationToUnit
-				.entrySet()) {
-			Equation<StateType> equation = entry.getKey();
-			Unit u = entry.getValue();
-			if (u instanceof InvokeStmt) {
-				InvokeStmt invoke = (InvokeStmt) u;
-				if (invoke.getInvokeExpr().getMethod().getName()
-						.equals("error")
-						&& !equation.getLhs().value.equals(domain.getBottom())) {
-					errorUnits.add(u);
-					u.addTag(new StringTag("Possible error!", "WarningMessage"));
-				}
+	/**
+	 * Returns the domain used to solve the equation systems, building it on
+	 * the first call after the options change. The decorators are applied in
+	 * a fixed order, regardless of the order in which the options were set:
+	 * the caches intern their inputs with the interner of the analysis, and
+	 * the profiled domain wraps the caching one.
+	 */
+	protected synchronized AbstractDomain<StateType, Unit> getSolvingDomain() {
+		if (solvingDomain == null) {
+			solvingDomain = domain;
+			if (maxMemoizationEntries > 0) {
+				memoizingDomain = new MemoizingDomain<StateType, Unit>(
+						solvingDomain, maxMemoizationEntries, interner);
+				solvingDomain = memoizingDomain;
 			}
-
-			StateType state = equation.getLhs().value;
-			if (state instanceof ErrorState) {
-				errorUnits.add(u);
-				u.addTag(new StringTag("Possible error!", "WarningMessage"));
+			if (profileExporter != null) {
+				profilingDomain = new ProfilingDomain<StateType, Unit>(
+						solvingDomain);
+				solvingDomain = profilingDomain;
 			}
 		}
+		return solvingDomain;
+	}
+
+	/**
+	 * Discards the decorators of the domain, so that the next method body is
+	 * solved with decorators built according to the current options.
+	 */
+	protected synchronized void discardSolvingDomain() {
+		solvingDomain = null;
+		memoizingDomain = null;
+		profilingDomain = null;
+	}
+
+	/**
+	 * Creates the builder of the equation system of the given body, configured
+	 * according to the options of this analysis.
+	 */
+	protected BodyToEquationSystem<StateType> createSystemBuilder(Body b,
+			AbstractDomain<StateType, Unit> solvingDomain) {
+		BodyToEquationSystem<StateType> systemBuilder = new BodyToEquationSystem<>(
+				b, solvingDomain);
+		systemBuilder.setBlockLevel(useBlockEquations);
+		if (useLivenessProjection
+				&& solvingDomain.getTop() instanceof ConjunctiveState) {
+			LiveLocalsProjection projection = new LiveLocalsProjection(
+					systemBuilder.getUnitGraph());
+			systemBuilder.setProjections(projection
+					.<StateType> getProjections());
+			systemBuilder.setEdgeProjections(projection
+					.<StateType> getEdgeProjections());
+		}
+		return systemBuilder;
+	}
+
+	/**
+	 * Creates the solver used to solve the equation system of a method body.
+	 * The widening policy options (delay, loop heads only, localized and
+	 * bounded narrowing) are only supported by the widening/narrowing solver,
+	 * and are rejected in combination with the other solvers.
+	 * 
+	 * @return A solver configured according to the options of this analysis.
+	 */
+	protected Solver<StateType, Unit> createSolver() {
+		if ((useRecursiveStrategy || useParallelSolver || useCompiledSystem)
+				&& hasWideningPolicy())
+			throw new Error(
+					"The widening policy options are only supported by the widening/narrowing solver!");
+		if (useRecursiveStrategy) {
+			RecursiveIterationSolver<StateType, Unit> solver = new RecursiveIterationSolver<>();
+			solver.useWidening = useWidening;
+			solver.useNarrowing = useWidening;
+			return solver;
+		} else if (useParallelSolver) {
+			ParallelSCCSolver<StateType, Unit> solver = new ParallelSCCSolver<>();
+			solver.useNarrowing = useWidening;
+			return solver;
+		} else if (useCompiledSystem) {
+			CompiledChaoticIterationSolver<StateType, Unit> solver = new CompiledChaoticIterationSolver<>();
+			solver.useNarrowing = useWidening;
+			return solver;
+		} else if (useWidening) {
+			return createWideningNarrowingSolver();
+		} else {
+			return new ChaoticIterationSolver<StateType, Unit>();
+		}
+	}
+
+	/**
+	 * Determines whether any of the widening policy options differs from its
+	 * default.
+	 */
+	protected boolean hasWideningPolicy() {
+		return wideningDelay != 0 || widenAtLoopHeadsOnly
+				|| useLocalizedNarrowing || maxNarrowingIterations != 0;
+	}
+
+	/**
+	 * Creates a widening/narrowing solver configured according to the widening
+	 * policy of this analysis.
+	 */
+	protected WideningNarrowingSolver<StateType, Unit> createWideningNarrowingSolver() {
+		WideningNarrowingSolver<StateType, Unit> solver = new WideningNarrowingSolver<>();
+		solver.wideningDelay = wideningDelay;
+		solver.widenAtLoopHeadsOnly = widenAtLoopHeadsOnly;
+		solver.localizedNarrowing = useLocalizedNarrowing;
+		solver.maxDescendingIterations = maxNarrowingIterations;
+		return solver;
+	}
+
+	/**
+	 * Solves the equation system of the given body with both the parallel
+	 * solver and the sequential one and records their running times. Both
+	 * systems are built like the analyzed one and solved over the same domain
+	 * and interner, after the analysis itself has warmed them up. The order of
+	 * the two runs alternates from one body to the next, so that neither
+	 * solver consistently benefits from caches filled by the other.
+	 * 
+	 * @param b
+	 *            A method body.
+	 * @param solvingDomain
+	 *            The domain used to solve the analyzed system.
+	 */
+	protected void compareWithSequentialSolver(Body b,
+			AbstractDomain<StateType, Unit> solvingDomain) {
+		Solver<StateType, Unit> parallelSolver = createSolver();
+		Solver<StateType, Unit> sequentialSolver = useWidening ? createWideningNarrowingSolver()
+				: new ChaoticIterationSolver<StateType, Unit>();
+		long sequentialSolveTime;
+		long parallelSolveTime;
+		if (numberOfSpeedupMeasurements++ % 2 == 0) {
+			sequentialSolveTime = timeSolve(b, solvingDomain, sequentialSolver);
+			parallelSolveTime = timeSolve(b, solvingDomain, parallelSolver);
+		} else {
+			parallelSolveTime = timeSolve(b, solvingDomain, parallelSolver);
+			sequentialSolveTime = timeSolve(b, solvingDomain, sequentialSolver);
+		}
+
+		totalSequentialSolveTime += sequentialSolveTime;
+		totalParallelSolveTime += parallelSolveTime;
+		if (debug)
+			System.err.println(String.format(
+					"Solve time for %s: sequential %dus, parallel %dus", b
+							.getMethod().getName(), sequentialSolveTime / 1000,
+					parallelSolveTime / 1000));
+	}
+
+	/**
+	 * Builds a fresh equation system for the given body and returns the time,
+	 * in nanoseconds, taken by the given solver to solve it.
+	 */
+	protected long timeSolve(Body b,
+			AbstractDomain<StateType, Unit> solvingDomain,
+			Solver<StateType, Unit> solver) {
+		EquationSystem<StateType, Unit> system = createSystemBuilder(b,
+				solvingDomain).build(useWidening);
+		system.resetBottom(solvingDomain);
+		solver.worklistStrategy = this.worklistStrategy;
+		solver.interner = this.interner;
+		long solveStart = System.nanoTime();
+		solver.solve(system, solvingDomain);
+		return System.nanoTime() - solveStart;
+	}
+
+	/**
+	 * Checks the states of the units of the given body for possible errors.
+	 * The states of the units inside basic blocks are computed one at a time
+	 * (see {@link BodyToEquationSystem#getInnerUnitState}).
+	 */
+	protected void checkForErrors(Body b,
+			BodyToEquationSystem<StateType> systemBuilder) {
+		for (Map.Entry<Equation<StateType>, Unit> entry : systemBuilder
+				.getEquationToUnit().entrySet()) {
+			checkForError(entry.getValue(), entry.getKey().getLhs().value);
+		}
+		for (Unit u : systemBuilder.getInnerUnits()) {
+			checkForError(u, systemBuilder.getInnerUnitState(u));
+		}
 		if (debug) {
 			System.err.println(errorUnits.size() + " possible error(s) found.");
 			totalNumberOfErrors += errorUnits.size();
@@ -175,14 +613,43 @@ public class BaseAnalysis<StateType, DomType extends AbstractDomain<StateType, U
 		}
 	}
 
-	protected void tagUnits(Map<Equation<StateType>, Unit> equationToUnit) {
-		for (Map.Entry<Equation<StateType>, Unit> entry : equationToUnit
-				.entrySet()) {
+	/**
+	 * Marks the given unit as a possible error if the given state following
+	 * it indicates so.
+	 */
+	protected void checkForError(Unit u, StateType state) {
+		if (u instanceof InvokeStmt) {
+			InvokeStmt invoke = (InvokeStmt) u;
+			if (invoke.getInvokeExpr().getMethod().getName().equals("error")
+					&& !state.equals(domain.getBottom())) {
+				errorUnits.add(u);
+				u.addTag(new StringTag("Possible error!", "WarningMessage"));
+			}
+		}
+
+		if (state instanceof ErrorState) {
+			errorUnits.add(u);
+			u.addTag(new StringTag("Possible error!", "WarningMessage"));
+		}
+	}
+
+	/**
+	 * Tags the units of the given body with their equations and states. The
+	 * units inside basic blocks are tagged with their states only, since they
+	 * have no equations of their own.
+	 */
+	protected void tagUnits(BodyToEquationSystem<StateType> systemBuilder) {
+		for (Map.Entry<Equation<StateType>, Unit> entry : systemBuilder
+				.getEquationToUnit().entrySet()) {
 			Equation<StateType> equation = entry.getKey();
 			Unit u = entry.getValue();
 			u.addTag(new StringTag(equation.toString(), "AnalysisEquation"));
 			u.addTag(new StringTag(equation.getLhs() + " : "
 					+ equation.getLhs().value, "AnalysisResult"));
 		}
+		for (Unit u : systemBuilder.getInnerUnits()) {
+			u.addTag(new StringTag(systemBuilder.getOutVar(u) + " : "
+					+ systemBuilder.getInnerUnitState(u), "AnalysisResult"));
+		}
 	}
-}
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package bgu.cs.absint.soot;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -7,19 +8,29 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import bgu.cs.absint.AnalysisVar;
 import bgu.cs.absint.BinaryOperation;
+import bgu.cs.absint.ComposedOperation;
 import bgu.cs.absint.AbstractDomain;
 import bgu.cs.absint.Equation;
 import bgu.cs.absint.EquationSystem;
+import bgu.cs.absint.IdOperation;
 import bgu.cs.absint.Operation;
+import bgu.cs.absint.ProgramSpecificDomain;
+import bgu.cs.absint.ThresholdWidening;
 import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.WideningThresholds;
 import bgu.cs.absint.solver.PhasedOperation;
+import bgu.cs.absint.solver.WeakTopologicalOrder;
 import soot.Body;
 import soot.Unit;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
 import soot.jimple.GotoStmt;
 import soot.jimple.IfStmt;
+import soot.jimple.IntConstant;
 import soot.jimple.Stmt;
 import soot.jimple.toolkits.annotation.logic.Loop;
 import soot.jimple.toolkits.annotation.logic.LoopFinder;
@@ -51,9 +62,72 @@ public class BodyToEquationSystem<StateType> {
 
 	protected Map<Equation<StateType>, Unit> equationToUnit = new HashMap<>();
 
+	/**
+	 * Maps each unit to its position in a weak topological ordering of the
+	 * control-flow graph.
+	 */
+	protected Map<Unit, Integer> unitToPosition = new HashMap<>();
+
 	protected boolean useWidening;
 	protected Operation<StateType> wideningNarrowingOperation;
 
+	/**
+	 * Determines whether equations are created per basic block rather than
+	 * per unit. The transformers of the units in a block are composed into a
+	 * single operation, so only the variables at block boundaries take part in
+	 * the fixed-point computation.
+	 */
+	protected boolean useBlocks = false;
+
+	/**
+	 * The basic blocks of the body, in the order of the units, each given as
+	 * the list of its units. Only computed when {@link #useBlocks} is set.
+	 */
+	protected List<List<Unit>> blocks = new ArrayList<>();
+
+	/**
+	 * Maps the first unit of each basic block to the variable holding the
+	 * input state of the block.
+	 */
+	protected Map<Unit, AnalysisVar<StateType>> leaderToInputVar = new HashMap<>();
+
+	/**
+	 * The units inside basic blocks, i.e., all but the last unit of each
+	 * block, whose states are not held by the variables of the system.
+	 */
+	protected List<Unit> innerUnits = new ArrayList<>();
+
+	/**
+	 * Maps each inner unit to the unit preceding it in its block, or to null
+	 * for the first unit of a block.
+	 */
+	protected Map<Unit, Unit> innerUnitToPred = new HashMap<>();
+
+	/**
+	 * The inner unit whose state was computed last by
+	 * {@link #getInnerUnitState}, and its state.
+	 */
+	private Unit lastInnerUnit = null;
+	private StateType lastInnerState = null;
+
+	/**
+	 * Maps units to operations applied to the states following them, e.g., to
+	 * project out dead variables (see {@link LiveLocalsProjection}).
+	 */
+	protected Map<Unit, UnaryOperation<StateType>> unitToProjection = new HashMap<>();
+
+	/**
+	 * Maps conditions to maps from their successors to operations applied to
+	 * the states flowing along the corresponding edges instead of the
+	 * projections of the conditions.
+	 */
+	protected Map<Unit, Map<Unit, UnaryOperation<StateType>>> edgeToProjection = new HashMap<>();
+
+	/**
+	 * The constants of the body, used as widening thresholds.
+	 */
+	protected WideningThresholds thresholds = WideningThresholds.NONE;
+
 	private Set<Unit> loopHeads = new HashSet<>();
 
 	public BodyToEquationSystem(Body b, AbstractDomain<StateType, Unit> dom) {
@@ -62,24 +136,116 @@ public class BodyToEquationSystem<StateType> {
 		g = new ExceptionalUnitGraph(b);
 	}
 
+	/**
+	 * Determines whether the next call to {@link #build} creates equations
+	 * per basic block rather than per unit. The states of the units inside a
+	 * block can be recomputed after solving by {@link #getInnerUnitState}.
+	 */
+	public void setBlockLevel(boolean value) {
+		this.useBlocks = value;
+	}
+
 	public EquationSystem<StateType, Unit> build() {
 		return build(false);
 	}
 
 	public EquationSystem<StateType, Unit> build(boolean useWidening) {
 		this.useWidening = useWidening;
+		if (domain instanceof ProgramSpecificDomain) {
+			@SuppressWarnings("unchecked")
+			ProgramSpecificDomain<Unit> specificDomain = (ProgramSpecificDomain<Unit>) domain;
+			specificDomain.prepare(b.getUnits());
+		}
+		collectThresholds();
 		markLoopHeads();
 		assignPriorities();
 		allocateVars();
 		return createEquations();
 	}
 
+	/**
+	 * Returns the widening thresholds collected by the last call to
+	 * {@link #build}.
+	 */
+	public WideningThresholds getThresholds() {
+		return thresholds;
+	}
+
 	public Map<Equation<StateType>, Unit> getEquationToUnit() {
 		return equationToUnit;
 	}
 
+	/**
+	 * Returns the control-flow graph of the body.
+	 */
+	public UnitGraph getUnitGraph() {
+		return g;
+	}
+
+	/**
+	 * Sets operations to be applied to the states following the given units.
+	 * Should be called before {@link #build}.
+	 * 
+	 * @param projections
+	 *            A map from units to operations.
+	 */
+	public void setProjections(Map<Unit, UnaryOperation<StateType>> projections) {
+		this.unitToProjection = projections;
+	}
+
+	/**
+	 * Sets operations to be applied to the states flowing along the given
+	 * edges, instead of the projections of their source units (see
+	 * {@link #setProjections}). Only edges leaving conditions are projected,
+	 * since the states following other units flow to all of their
+	 * successors. Should be called before {@link #build}.
+	 * 
+	 * @param projections
+	 *            A map from units to maps from their successors to
+	 *            operations.
+	 */
+	public void setEdgeProjections(
+			Map<Unit, Map<Unit, UnaryOperation<StateType>>> projections) {
+		this.edgeToProjection = projections;
+	}
+
+	/**
+	 * Orders the units by a weak topological ordering of the control-flow
+	 * graph, which is later used to set the priorities of the equations. This
+	 * way the equations of an inner loop are processed before the ones
+	 * following the loop.
+	 */
 	protected void assignPriorities() {
-		// TODO: implement me!
+		List<Unit> roots = new ArrayList<>(g.getHeads());
+		roots.addAll(b.getUnits());
+		WeakTopologicalOrder<Unit> wto = new WeakTopologicalOrder<>(roots,
+				new WeakTopologicalOrder.SuccessorFunction<Unit>() {
+					@Override
+					public Collection<Unit> getSuccessors(Unit unit) {
+						return g.getSuccsOf(unit);
+					}
+				});
+		int position = 0;
+		for (Unit unit : wto.getNodes()) {
+			unitToPosition.put(unit, position++);
+		}
+	}
+
+	/**
+	 * Sets the priority of an equation according to the position of its unit.
+	 * The equations of a unit are ordered as follows: the join equation, the
+	 * widening equation, and then the equation(s) of the unit transformer.
+	 * 
+	 * @param equation
+	 *            An equation.
+	 * @param unit
+	 *            The unit from which the equation was created.
+	 * @param offset
+	 *            The order of the equation among the equations of the unit.
+	 */
+	protected void setPriority(Equation<StateType> equation, Unit unit,
+			int offset) {
+		equation.priority = 3 * (unitToPosition.get(unit) + 1) + offset;
 	}
 
 	protected EquationSystem<StateType, Unit> createEquations() {
@@ -88,88 +254,35 @@ public class BodyToEquationSystem<StateType> {
 		// Add an equation to initialize the entry variable to top.
 		Equation<StateType> setTopToEntryVar = new Equation<StateType>(entryVar, domain.getTopOperation(),
 				new ArrayList<AnalysisVar<StateType>>());
+		setTopToEntryVar.priority = 0;
 		system.addEquation(setTopToEntryVar);
 		equationToUnit.put(setTopToEntryVar, g.getHeads().get(0));
 
-		for (Unit unit : b.getUnits()) {
-			// Handle control-flow joins
-			List<AnalysisVar<StateType>> predVarsForUnit = unitToPredVars.get(unit);
-			if (predVarsForUnit.size() == 2) {
-				AnalysisVar<StateType> var1 = predVarsForUnit.get(0);
-				AnalysisVar<StateType> var2 = predVarsForUnit.get(1);
-				AnalysisVar<StateType> joinVar = unitToJoinVar.get(unit);
-				BinaryOperation<StateType> joinOperation = loopHeads.contains(unit) ? domain.getUBLoopOperation()
-						: domain.getUBOperation();
-				Equation<StateType> joinEquation = new Equation<StateType>(joinVar, joinOperation, var1, var2);
-				system.addEquation(joinEquation);
-				equationToUnit.put(joinEquation, unit);
-
-				if (useWidening && loopHeads.contains(unit)) {
-					AnalysisVar<StateType> boxVar = loopHeadUnitToBoxVar.get(unit);
-					PhasedOperation<StateType> boxOperation = new PhasedOperation<StateType>(
-							domain.getWideningOperation(), domain.getNarrowingOperation()) {
-						@Override
-						public String toString() {
-							return domain.getClass().getSimpleName() + "[Widening|Narrowing]";
-						}
-					};
-					Equation<StateType> wideningEquation = new Equation<StateType>(boxVar, boxOperation, boxVar,
-							joinVar);
-					system.addEquation(wideningEquation);
-					equationToUnit.put(wideningEquation, unit);
+		if (useBlocks) {
+			blocks = findBlocks();
+			for (List<Unit> block : blocks) {
+				Unit leader = block.get(0);
+				Unit last = block.get(block.size() - 1);
+				AnalysisVar<StateType> inputVar = createJoinEquations(system, leader);
+				leaderToInputVar.put(leader, inputVar);
+
+				// Compose the transformers of all units but the last one.
+				UnaryOperation<StateType> prefix = IdOperation.v();
+				StringBuilder prefixDescription = new StringBuilder();
+				Unit pred = null;
+				for (Unit unit : block.subList(0, block.size() - 1)) {
+					prefix = ComposedOperation.compose(prefix, getUnitTransformer(unit));
+					prefixDescription.append(unit).append("; ");
+					innerUnits.add(unit);
+					innerUnitToPred.put(unit, pred);
+					pred = unit;
 				}
-			} else if (predVarsForUnit.size() > 2) {
-				AnalysisVar<StateType> joinVar = unitToJoinVar.get(unit);
-				Operation<StateType> joinOperation = loopHeads.contains(unit)
-						? domain.getMultiUBLoopOperation((byte) predVarsForUnit.size())
-						: domain.getMultiUBOperation((byte) predVarsForUnit.size());
-				Equation<StateType> joinEquation = new Equation<StateType>(joinVar, joinOperation, predVarsForUnit);
-				system.addEquation(joinEquation);
-				equationToUnit.put(joinEquation, unit);
+				createUnitEquations(system, last, leader, inputVar, prefix, prefixDescription.toString());
 			}
-
-			AnalysisVar<StateType> inputVar = predVarsForUnit.size() == 1 ? predVarsForUnit.get(0)
-					: unitToJoinVar.get(unit);
-			if (useWidening) {
-				AnalysisVar<StateType> boxVar = loopHeadUnitToBoxVar.get(unit);
-				if (boxVar != null)
-					inputVar = boxVar;
-			}
-
-			if (unit instanceof IfStmt) {
-				IfStmt ifStmt = (IfStmt) unit;
-				Assume trueAssume = new Assume(ifStmt, true);
-				Assume falseAssume = new Assume(ifStmt, false);
-
-				// Add assume equation for true polarity.
-				AnalysisVar<StateType> assumeTrueVar = unitToOutVar.get(unit);
-				UnaryOperation<StateType> assumeTrueTransformer = domain.getTransformer(trueAssume);
-				assert assumeTrueTransformer != null : domain.getClass().getSimpleName()
-						+ ".assumeTrueTransformer return null for " + unit + "!";
-
-				Equation<StateType> assumeTrueEquation = new Equation<>(assumeTrueVar, assumeTrueTransformer, inputVar);
-				assumeTrueEquation.sourceDescription = "assume " + ifStmt.getCondition();
-				system.addEquation(assumeTrueEquation);
-				equationToUnit.put(assumeTrueEquation, unit);
-
-				// Add assume equation for false polarity.
-				AnalysisVar<StateType> assumeFalseVar = ifStmtToAssumeFalseVar.get(ifStmt);
-				UnaryOperation<StateType> assumeFalseTransformer = domain.getTransformer(falseAssume);
-				assert assumeFalseTransformer != null : domain.getClass().getSimpleName()
-						+ ".assumeFalseTransformer returned null for " + unit + "!";
-				Equation<StateType> assumeFalseEquation = new Equation<>(assumeFalseVar, assumeFalseTransformer,
-						inputVar);
-				assumeFalseEquation.sourceDescription = "assume !(" + ifStmt.getCondition() + ')';
-				system.addEquation(assumeFalseEquation);
-				equationToUnit.put(assumeFalseEquation, unit);
-			} else {
-				AnalysisVar<StateType> lhsVar = unitToOutVar.get(unit);
-				UnaryOperation<StateType> unitTransformer = domain.getTransformer((Stmt) unit);
-				assert unitTransformer != null : domain.getClass().getSimpleName()
-						+ ".getTransformer returned null for " + unit + "!";
-				Equation<StateType> unitEquation = new Equation<>(lhsVar, unitTransformer, inputVar);
-				system.addEquation(unitEquation);
-				equationToUnit.put(unitEquation, unit);
+		} else {
+			for (Unit unit : b.getUnits()) {
+				AnalysisVar<StateType> inputVar = createJoinEquations(system, unit);
+				createUnitEquations(system, unit, unit, inputVar, IdOperation.<StateType> v(), "");
 			}
 		}
 
@@ -183,6 +296,298 @@ public class BodyToEquationSystem<StateType> {
 		return system;
 	}
 
+	/**
+	 * Adds the equations joining the states flowing into the given unit and,
+	 * at loop heads, the widening equation.
+	 * 
+	 * @param system
+	 *            The system being built.
+	 * @param unit
+	 *            A unit.
+	 * @return The variable holding the input state of the unit.
+	 */
+	protected AnalysisVar<StateType> createJoinEquations(EquationSystem<StateType, Unit> system, Unit unit) {
+		List<AnalysisVar<StateType>> predVarsForUnit = unitToPredVars.get(unit);
+		if (predVarsForUnit.size() == 2) {
+			AnalysisVar<StateType> var1 = predVarsForUnit.get(0);
+			AnalysisVar<StateType> var2 = predVarsForUnit.get(1);
+			AnalysisVar<StateType> joinVar = unitToJoinVar.get(unit);
+			BinaryOperation<StateType> joinOperation = loopHeads.contains(unit) ? domain.getUBLoopOperation()
+					: domain.getUBOperation();
+			Equation<StateType> joinEquation = new Equation<StateType>(joinVar, joinOperation, var1, var2);
+			setPriority(joinEquation, unit, 0);
+			system.addEquation(joinEquation);
+			equationToUnit.put(joinEquation, unit);
+
+			if (useWidening && loopHeads.contains(unit)) {
+				AnalysisVar<StateType> boxVar = loopHeadUnitToBoxVar.get(unit);
+				PhasedOperation<StateType> boxOperation = new PhasedOperation<StateType>(
+						domain.getWideningOperation(), domain.getNarrowingOperation()) {
+					@Override
+					public String toString() {
+						return domain.getClass().getSimpleName() + "[Widening|Narrowing]";
+					}
+				};
+				Equation<StateType> wideningEquation = new Equation<StateType>(boxVar, boxOperation, boxVar,
+						joinVar);
+				setPriority(wideningEquation, unit, 1);
+				system.addEquation(wideningEquation);
+				equationToUnit.put(wideningEquation, unit);
+			}
+		} else if (predVarsForUnit.size() > 2) {
+			AnalysisVar<StateType> joinVar = unitToJoinVar.get(unit);
+			Operation<StateType> joinOperation = loopHeads.contains(unit)
+					? domain.getMultiUBLoopOperation((byte) predVarsForUnit.size())
+					: domain.getMultiUBOperation((byte) predVarsForUnit.size());
+			Equation<StateType> joinEquation = new Equation<StateType>(joinVar, joinOperation, predVarsForUnit);
+			setPriority(joinEquation, unit, 0);
+			system.addEquation(joinEquation);
+			equationToUnit.put(joinEquation, unit);
+		}
+
+		AnalysisVar<StateType> inputVar = predVarsForUnit.size() == 1 ? predVarsForUnit.get(0)
+				: unitToJoinVar.get(unit);
+		if (useWidening) {
+			AnalysisVar<StateType> boxVar = loopHeadUnitToBoxVar.get(unit);
+			if (boxVar != null)
+				inputVar = boxVar;
+		}
+		return inputVar;
+	}
+
+	/**
+	 * Adds the equation(s) applying the transformer of the given unit, after
+	 * the given prefix operation, to the given input variable.
+	 * 
+	 * @param system
+	 *            The system being built.
+	 * @param unit
+	 *            The unit whose transformer is applied.
+	 * @param priorityUnit
+	 *            The unit according to which the priorities are set.
+	 * @param inputVar
+	 *            The variable holding the input state.
+	 * @param prefix
+	 *            An operation applied before the transformer of the unit.
+	 * @param prefixDescription
+	 *            A description of the prefix operation, possibly empty.
+	 */
+	protected void createUnitEquations(EquationSystem<StateType, Unit> system, Unit unit, Unit priorityUnit,
+			AnalysisVar<StateType> inputVar, UnaryOperation<StateType> prefix, String prefixDescription) {
+		if (unit instanceof IfStmt) {
+			IfStmt ifStmt = (IfStmt) unit;
+			Assume trueAssume = new Assume(ifStmt, true);
+			Assume falseAssume = new Assume(ifStmt, false);
+			Unit trueTarget = ifStmt.getTarget();
+			Unit falseTarget = null;
+			for (Unit succ : g.getSuccsOf(unit)) {
+				if (succ != trueTarget)
+					falseTarget = succ;
+			}
+
+			// Add assume equation for true polarity.
+			AnalysisVar<StateType> assumeTrueVar = unitToOutVar.get(unit);
+			UnaryOperation<StateType> assumeTrueTransformer = domain.getTransformer(trueAssume);
+			assert assumeTrueTransformer != null : domain.getClass().getSimpleName()
+					+ ".assumeTrueTransformer return null for " + unit + "!";
+
+			Equation<StateType> assumeTrueEquation = new Equation<>(assumeTrueVar,
+					ComposedOperation.compose(prefix, project(unit, trueTarget, assumeTrueTransformer)), inputVar);
+			assumeTrueEquation.sourceDescription = prefixDescription + "assume " + ifStmt.getCondition();
+			setPriority(assumeTrueEquation, priorityUnit, 2);
+			system.addEquation(assumeTrueEquation);
+			equationToUnit.put(assumeTrueEquation, unit);
+
+			// Add assume equation for false polarity.
+			AnalysisVar<StateType> assumeFalseVar = ifStmtToAssumeFalseVar.get(ifStmt);
+			UnaryOperation<StateType> assumeFalseTransformer = domain.getTransformer(falseAssume);
+			assert assumeFalseTransformer != null : domain.getClass().getSimpleName()
+					+ ".assumeFalseTransformer returned null for " + unit + "!";
+			Equation<StateType> assumeFalseEquation = new Equation<>(assumeFalseVar,
+					ComposedOperation.compose(prefix, project(unit, falseTarget, assumeFalseTransformer)), inputVar);
+			assumeFalseEquation.sourceDescription = prefixDescription + "assume !(" + ifStmt.getCondition() + ')';
+			setPriority(assumeFalseEquation, priorityUnit, 2);
+			system.addEquation(assumeFalseEquation);
+			equationToUnit.put(assumeFalseEquation, unit);
+		} else {
+			AnalysisVar<StateType> lhsVar = unitToOutVar.get(unit);
+			Equation<StateType> unitEquation = new Equation<>(lhsVar,
+					ComposedOperation.compose(prefix, getUnitTransformer(unit)), inputVar);
+			if (!prefixDescription.isEmpty())
+				unitEquation.sourceDescription = prefixDescription + unit;
+			setPriority(unitEquation, priorityUnit, 2);
+			system.addEquation(unitEquation);
+			equationToUnit.put(unitEquation, unit);
+		}
+	}
+
+	/**
+	 * Returns the transformer of a unit that is not a condition, followed by
+	 * the projection of the unit, if there is one.
+	 */
+	protected UnaryOperation<StateType> getUnitTransformer(Unit unit) {
+		UnaryOperation<StateType> unitTransformer = domain.getTransformer((Stmt) unit);
+		assert unitTransformer != null : domain.getClass().getSimpleName() + ".getTransformer returned null for "
+				+ unit + "!";
+		return project(unit, unitTransformer);
+	}
+
+	/**
+	 * Composes the given transformer of a unit with the projection of the
+	 * unit, if there is one.
+	 */
+	protected UnaryOperation<StateType> project(Unit unit, UnaryOperation<StateType> transformer) {
+		UnaryOperation<StateType> projection = unitToProjection.get(unit);
+		if (projection == null)
+			return transformer;
+		return ComposedOperation.compose(transformer, projection);
+	}
+
+	/**
+	 * Composes the given transformer of a unit with the projection of the
+	 * edge from the unit to the given successor, if there is one, and with
+	 * the projection of the unit otherwise.
+	 */
+	protected UnaryOperation<StateType> project(Unit unit, Unit succ,
+			UnaryOperation<StateType> transformer) {
+		Map<Unit, UnaryOperation<StateType>> succToProjection = edgeToProjection
+				.get(unit);
+		UnaryOperation<StateType> projection = succToProjection == null ? null
+				: succToProjection.get(succ);
+		if (projection == null)
+			return project(unit, transformer);
+		return ComposedOperation.compose(transformer, projection);
+	}
+
+	/**
+	 * Partitions the units into basic blocks. A unit continues the block of
+	 * its predecessor if it is the only successor of its only predecessor, the
+	 * predecessor is not a condition, and the unit is not a loop head.
+	 * 
+	 * @return The list of basic blocks.
+	 */
+	protected List<List<Unit>> findBlocks() {
+		List<List<Unit>> result = new ArrayList<>();
+		Set<Unit> assigned = new HashSet<>();
+		// Start blocks at leaders first and then at units left on cycles that
+		// have no leader.
+		for (int pass = 0; pass < 2; ++pass) {
+			for (Unit unit : b.getUnits()) {
+				if (assigned.contains(unit) || (pass == 0 && continuesBlock(unit)))
+					continue;
+				List<Unit> block = new ArrayList<>();
+				Unit current = unit;
+				while (true) {
+					block.add(current);
+					assigned.add(current);
+					List<Unit> succs = g.getSuccsOf(current);
+					if (succs.size() != 1)
+						break;
+					Unit next = succs.get(0);
+					if (assigned.contains(next) || !continuesBlock(next))
+						break;
+					current = next;
+				}
+				result.add(block);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determines whether the given unit can be folded into the basic block of
+	 * its predecessor.
+	 */
+	protected boolean continuesBlock(Unit unit) {
+		if (loopHeads.contains(unit))
+			return false;
+		List<Unit> preds = g.getPredsOf(unit);
+		if (preds.size() != 1)
+			return false;
+		Unit pred = preds.get(0);
+		return pred != unit && !(pred instanceof IfStmt) && g.getSuccsOf(pred).size() == 1;
+	}
+
+	/**
+	 * Returns the units inside the basic blocks of a block-level system, in
+	 * the order of the blocks, or an empty list for a unit-level system.
+	 */
+	public List<Unit> getInnerUnits() {
+		return innerUnits;
+	}
+
+	/**
+	 * Computes the state following the given unit inside a basic block of a
+	 * solved block-level system, by applying the transformers of the units
+	 * preceding it in the block to the input state of the block.<br>
+	 * States are computed on demand and not retained, except for the last
+	 * one, so querying the inner units in order (see {@link #getInnerUnits})
+	 * applies the transformer of each unit once.
+	 */
+	public StateType getInnerUnitState(Unit unit) {
+		assert innerUnitToPred.containsKey(unit) : unit + " is not inside a block!";
+		ArrayDeque<Unit> chain = new ArrayDeque<>();
+		StateType state;
+		Unit current = unit;
+		while (true) {
+			chain.push(current);
+			Unit pred = innerUnitToPred.get(current);
+			if (pred == null) {
+				state = leaderToInputVar.get(current).value;
+				break;
+			} else if (pred == lastInnerUnit) {
+				state = lastInnerState;
+				break;
+			}
+			current = pred;
+		}
+		while (!chain.isEmpty()) {
+			state = getUnitTransformer(chain.pop()).apply(state);
+		}
+		lastInnerUnit = unit;
+		lastInnerState = state;
+		return state;
+	}
+
+	/**
+	 * Returns the variable allocated for the state following the given unit.
+	 * For an inner unit of a block-level system, the variable is not part of
+	 * the system and holds no value.
+	 */
+	public AnalysisVar<StateType> getOutVar(Unit unit) {
+		return unitToOutVar.get(unit);
+	}
+
+	/**
+	 * Collects the int constants appearing in the conditions of if statements,
+	 * along with their successors and predecessors to account for strict
+	 * comparisons, and in assignments. If the domain supports widening with
+	 * thresholds, the constants are passed to it.
+	 */
+	protected void collectThresholds() {
+		Set<Long> constants = new TreeSet<>();
+		for (Unit unit : b.getUnits()) {
+			if (unit instanceof IfStmt) {
+				for (ValueBox box : ((IfStmt) unit).getCondition().getUseBoxes()) {
+					if (box.getValue() instanceof IntConstant) {
+						long c = ((IntConstant) box.getValue()).value;
+						constants.add(c - 1);
+						constants.add(c);
+						constants.add(c + 1);
+					}
+				}
+			} else if (unit instanceof AssignStmt) {
+				for (ValueBox box : unit.getUseBoxes()) {
+					if (box.getValue() instanceof IntConstant)
+						constants.add((long) ((IntConstant) box.getValue()).value);
+				}
+			}
+		}
+		thresholds = new WideningThresholds(constants);
+		if (domain instanceof ThresholdWidening)
+			((ThresholdWidening) domain).setThresholds(thresholds);
+	}
+
 	/**
 	 * Store all units at loop heads in a specialized collection.
 	 */
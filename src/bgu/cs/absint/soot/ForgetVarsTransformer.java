@@ -0,0 +1,60 @@
+package bgu.cs.absint.soot;
+
+import java.util.Collection;
+
+import soot.Local;
+import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.constructor.ConjunctiveState;
+
+/**
+ * A transformer that removes all factoids containing any of a given set of
+ * variables, thereby projecting the variables out of the state. Unlike
+ * {@link ForgetVarTransformer}, the input state is returned as is when it does
+ * not contain any of the variables.
+ * 
+ * @author romanm
+ */
+public class ForgetVarsTransformer<F extends SootFactoid, StateType extends ConjunctiveState<Local, F>>
+		extends UnaryOperation<StateType> {
+	/**
+	 * The variables being projected out.
+	 */
+	protected Collection<Local> vars;
+
+	/**
+	 * Constructs a transformer for a specific set of local variables.
+	 * 
+	 * @param vars
+	 *            The variables being projected out.
+	 */
+	public ForgetVarsTransformer(Collection<Local> vars) {
+		this.vars = vars;
+	}
+
+	/**
+	 * Removes the variables from a copy of the input state, and returns the
+	 * input state itself if none of the variables appears in it, which is
+	 * the case for the bottom state. The state is only copied if some
+	 * variable appears in it.
+	 */
+	@Override
+	public StateType apply(StateType input) {
+		StateType result = null;
+		for (Local var : vars) {
+			if (input.hasVar(var)) {
+				if (result == null) {
+					@SuppressWarnings("unchecked")
+					StateType copy = (StateType) input.copy();
+					result = copy;
+				}
+				result.removeVar(var);
+			}
+		}
+		return result == null ? input : result;
+	}
+
+	@Override
+	public String toString() {
+		return "Forget" + vars;
+	}
+}
\ No newline at end of file
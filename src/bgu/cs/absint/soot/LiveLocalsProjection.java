@@ -0,0 +1,139 @@
+package bgu.cs.absint.soot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Local;
+import soot.Unit;
+import soot.ValueBox;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.SimpleLiveLocals;
+import bgu.cs.absint.UnaryOperation;
+import bgu.cs.absint.constructor.ConjunctiveState;
+
+/**
+ * A pre-pass that finds, for each unit, the local variables that die at it,
+ * i.e., the locals that are used or defined by the unit or live before it, but
+ * are not live after it. Projecting these locals out of the states following
+ * the unit keeps {@link ConjunctiveState}s from growing with every local ever
+ * assigned, without affecting the results for live locals.<br>
+ * A local may also die on a control-flow edge, when it is live after a unit
+ * with several successors but not live before the successor at the end of the
+ * edge, e.g., the counter of a loop on the edge leaving the loop. For each
+ * such edge, the pre-pass also finds the locals dying at the unit or on the
+ * edge.
+ * 
+ * @author romanm
+ */
+public class LiveLocalsProjection {
+	protected final Map<Unit, List<Local>> unitToDeadLocals = new HashMap<>();
+
+	/**
+	 * Maps each unit to its successors along edges on which some locals die,
+	 * and those to the locals dying at the unit or on the edge.
+	 */
+	protected final Map<Unit, Map<Unit, List<Local>>> edgeToDeadLocals = new HashMap<>();
+
+	/**
+	 * Computes the locals dying at each unit, and on each edge, of the given
+	 * control-flow graph.
+	 */
+	public LiveLocalsProjection(UnitGraph g) {
+		SimpleLiveLocals liveLocals = new SimpleLiveLocals(g);
+		for (Unit unit : g) {
+			Set<Local> dead = new HashSet<>(liveLocals.getLiveLocalsBefore(unit));
+			for (ValueBox box : unit.getDefBoxes()) {
+				if (box.getValue() instanceof Local)
+					dead.add((Local) box.getValue());
+			}
+			List<Local> liveAfter = liveLocals.getLiveLocalsAfter(unit);
+			Set<Local> mentioned = new HashSet<>(dead);
+			mentioned.addAll(liveAfter);
+			dead.removeAll(liveAfter);
+			if (!dead.isEmpty())
+				unitToDeadLocals.put(unit, new ArrayList<>(dead));
+
+			List<Unit> succs = g.getSuccsOf(unit);
+			if (succs.size() > 1) {
+				// The locals live after the unit are live before some
+				// successor, but not necessarily before all of them.
+				for (Unit succ : succs) {
+					Set<Local> edgeDead = new HashSet<>(mentioned);
+					edgeDead.removeAll(liveLocals.getLiveLocalsBefore(succ));
+					if (edgeDead.size() > dead.size()) {
+						Map<Unit, List<Local>> succToDeadLocals = edgeToDeadLocals
+								.get(unit);
+						if (succToDeadLocals == null) {
+							succToDeadLocals = new HashMap<>();
+							edgeToDeadLocals.put(unit, succToDeadLocals);
+						}
+						succToDeadLocals.put(succ, new ArrayList<>(edgeDead));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the locals that are not live after the given unit and may
+	 * appear in the state following it, or null if there are none.
+	 */
+	public List<Local> getDeadLocals(Unit unit) {
+		return unitToDeadLocals.get(unit);
+	}
+
+	/**
+	 * Returns the locals that die at the given unit or on the edge from it to
+	 * the given successor, or null if the edge has none beyond the locals
+	 * dying at the unit.
+	 */
+	public List<Local> getDeadLocals(Unit unit, Unit succ) {
+		Map<Unit, List<Local>> succToDeadLocals = edgeToDeadLocals.get(unit);
+		return succToDeadLocals == null ? null : succToDeadLocals.get(succ);
+	}
+
+	/**
+	 * Returns, for each unit where some locals die, a transformer projecting
+	 * those locals out of a state. The states must be
+	 * {@link ConjunctiveState}s over locals.
+	 * 
+	 * @return A map from units to projection transformers.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <StateType> Map<Unit, UnaryOperation<StateType>> getProjections() {
+		Map<Unit, UnaryOperation<StateType>> result = new HashMap<>();
+		for (Map.Entry<Unit, List<Local>> entry : unitToDeadLocals.entrySet()) {
+			result.put(entry.getKey(), new ForgetVarsTransformer(entry.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns, for each edge on which some locals die, a transformer
+	 * projecting out those locals along with the ones dying at the source of
+	 * the edge. The edges are given as maps from units to maps from their
+	 * successors. The states must be {@link ConjunctiveState}s over locals.
+	 * 
+	 * @return A map from units to maps from successors to projection
+	 *         transformers.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <StateType> Map<Unit, Map<Unit, UnaryOperation<StateType>>> getEdgeProjections() {
+		Map<Unit, Map<Unit, UnaryOperation<StateType>>> result = new HashMap<>();
+		for (Map.Entry<Unit, Map<Unit, List<Local>>> entry : edgeToDeadLocals
+				.entrySet()) {
+			Map<Unit, UnaryOperation<StateType>> succToProjection = new HashMap<>();
+			for (Map.Entry<Unit, List<Local>> succEntry : entry.getValue()
+					.entrySet()) {
+				succToProjection.put(succEntry.getKey(),
+						new ForgetVarsTransformer(succEntry.getValue()));
+			}
+			result.put(entry.getKey(), succToProjection);
+		}
+		return result;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package bgu.cs.absint.soot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.IfStmt;
+import soot.jimple.InvokeExpr;
+import bgu.cs.absint.constructor.PackedDomain;
+import bgu.cs.absint.constructor.VariablePacking;
+
+/**
+ * A pre-pass that partitions the locals of a method body into packs for a
+ * {@link PackedDomain}. Two locals belong to the same pack if they are
+ * (transitively) related by an assignment, i.e., they appear together in an
+ * assignment whose right-hand side is not a method invocation, or by the
+ * condition of an if statement.
+ *
+ * @author romanm
+ */
+public class LocalPacking implements VariablePacking<Unit> {
+	protected final List<Set<Local>> packs = new ArrayList<>();
+	protected final Map<Local, Integer> localToPack = new HashMap<>();
+
+	/**
+	 * Maps each local to its parent in the union-find forest used while
+	 * computing the packs.
+	 */
+	private final Map<Local, Local> parent = new HashMap<>();
+
+	/**
+	 * Computes the packs of the locals of the given body.
+	 */
+	public LocalPacking(Body b) {
+		for (Local local : b.getLocals()) {
+			parent.put(local, local);
+		}
+		List<Local> related = new ArrayList<>();
+		for (Unit unit : b.getUnits()) {
+			related.clear();
+			if (unit instanceof AssignStmt) {
+				AssignStmt assignStmt = (AssignStmt) unit;
+				if (!(assignStmt.getRightOp() instanceof InvokeExpr))
+					addLocals(unit, related);
+			} else if (unit instanceof IfStmt) {
+				addLocals(((IfStmt) unit).getCondition(), related);
+			}
+			for (int i = 1; i < related.size(); ++i) {
+				union(related.get(0), related.get(i));
+			}
+		}
+
+		Map<Local, Integer> rootToPack = new HashMap<>();
+		for (Local local : b.getLocals()) {
+			Local root = find(local);
+			Integer pack = rootToPack.get(root);
+			if (pack == null) {
+				pack = packs.size();
+				rootToPack.put(root, pack);
+				packs.add(new LinkedHashSet<Local>());
+			}
+			packs.get(pack).add(local);
+			localToPack.put(local, pack);
+		}
+		parent.clear();
+	}
+
+	@Override
+	public int getNumOfPacks() {
+		return packs.size();
+	}
+
+	/**
+	 * Returns the packs of the locals used or defined by the given unit. For
+	 * an {@link Assume}, these are the locals of its condition.
+	 */
+	@Override
+	public int[] getPacks(Unit unit) {
+		if (unit instanceof Assume)
+			unit = ((Assume) unit).stmt;
+		int[] result = new int[0];
+		for (ValueBox box : unit.getUseAndDefBoxes()) {
+			Integer pack = localToPack.get(box.getValue());
+			if (pack != null && !contains(result, pack)) {
+				result = Arrays.copyOf(result, result.length + 1);
+				result[result.length - 1] = pack;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the packs, indexed by pack number.
+	 */
+	public List<Set<Local>> getPacks() {
+		return packs;
+	}
+
+	/**
+	 * Returns the number of the pack of the given local, or -1 if the local
+	 * does not belong to the body.
+	 */
+	public int getPack(Local local) {
+		Integer result = localToPack.get(local);
+		return result == null ? -1 : result;
+	}
+
+	@Override
+	public String toString() {
+		return packs.toString();
+	}
+
+	private void addLocals(Unit unit, List<Local> result) {
+		for (ValueBox box : unit.getUseAndDefBoxes()) {
+			if (parent.containsKey(box.getValue()))
+				result.add((Local) box.getValue());
+		}
+	}
+
+	private void addLocals(Value value, List<Local> result) {
+		for (ValueBox box : value.getUseBoxes()) {
+			if (parent.containsKey(box.getValue()))
+				result.add((Local) box.getValue());
+		}
+	}
+
+	private Local find(Local local) {
+		Local root = local;
+		while (parent.get(root) != root) {
+			root = parent.get(root);
+		}
+		// Path compression.
+		while (local != root) {
+			Local next = parent.get(local);
+			parent.put(local, root);
+			local = next;
+		}
+		return root;
+	}
+
+	private void union(Local local1, Local local2) {
+		Local root1 = find(local1);
+		Local root2 = find(local2);
+		if (root1 != root2)
+			parent.put(root1, root2);
+	}
+
+	private static boolean contains(int[] array, int value) {
+		for (int element : array) {
+			if (element == value)
+				return true;
+		}
+		return false;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package bgu.cs.absint.soot;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import soot.Body;
+import bgu.cs.absint.Equation;
+import bgu.cs.absint.constructor.ProfilingDomain;
+import bgu.cs.absint.solver.SolverProfiler;
+
+/**
+ * Writes the profiles gathered by a {@link SolverProfiler} and a
+ * {@link ProfilingDomain} to files, either as comma-separated values or as
+ * JSON.<br>
+ * The equation profiles of each method body are appended to
+ * {@code <prefix>-equations.csv} (one row per equation) or
+ * {@code <prefix>-equations.json} (one object per line), which are truncated
+ * by the first export. The operation profiles, which accumulate over all
+ * bodies, are written to {@code <prefix>-operations.csv} or
+ * {@code <prefix>-operations.json}, which is replaced by each export.
+ * Histogram bucket i counts the operations that took less than 2^i ns (see
+ * {@link ProfilingDomain.OperationProfile}).
+ * 
+ * @author romanm
+ */
+public class ProfileExporter {
+	public static enum Format {
+		CSV, JSON
+	}
+
+	protected final String prefix;
+	protected final Format format;
+
+	/**
+	 * Becomes true when the equations file is created.
+	 */
+	protected boolean equationsStarted = false;
+
+	public ProfileExporter(String prefix, Format format) {
+		this.prefix = prefix;
+		this.format = format;
+	}
+
+	public String getEquationsFileName() {
+		return prefix + "-equations." + extension();
+	}
+
+	public String getOperationsFileName() {
+		return prefix + "-operations." + extension();
+	}
+
+	/**
+	 * Appends the profiles of the equations of the given body, which are
+	 * described by their source descriptions.
+	 */
+	public <StateType> void exportEquations(Body b,
+			SolverProfiler<StateType> profiler) {
+		String method = b.getMethod().getSignature();
+		try (PrintWriter out = new PrintWriter(new FileWriter(
+				getEquationsFileName(), equationsStarted))) {
+			if (!equationsStarted && format == Format.CSV)
+				out.println("method,variable,description,evaluations,time_ns,changes");
+			equationsStarted = true;
+			for (Equation<StateType> equation : profiler.getEquations()) {
+				SolverProfiler.EquationProfile profile = profiler
+						.getProfile(equation);
+				String variable = equation.getLhs().toString();
+				String description = equation.sourceDescription == null ? ""
+						: equation.sourceDescription;
+				if (format == Format.CSV) {
+					out.println(csv(method) + "," + csv(variable) + ","
+							+ csv(description) + "," + profile.getEvaluations()
+							+ "," + profile.getNanos() + ","
+							+ profile.getChanges());
+				} else {
+					out.println("{\"method\": " + json(method)
+							+ ", \"variable\": " + json(variable)
+							+ ", \"description\": " + json(description)
+							+ ", \"evaluations\": " + profile.getEvaluations()
+							+ ", \"time_ns\": " + profile.getNanos()
+							+ ", \"changes\": " + profile.getChanges() + "}");
+				}
+			}
+		} catch (IOException e) {
+			throw new Error(e);
+		}
+	}
+
+	/**
+	 * Writes the profiles of the operations of the given domain, replacing the
+	 * previous ones.
+	 */
+	public void exportOperations(ProfilingDomain<?, ?> domain) {
+		try (PrintWriter out = new PrintWriter(new FileWriter(
+				getOperationsFileName()))) {
+			if (format == Format.CSV) {
+				StringBuilder header = new StringBuilder(
+						"operation,calls,time_ns");
+				for (int i = 0; i < ProfilingDomain.OperationProfile.NUM_OF_BUCKETS; ++i) {
+					header.append(",lt_2^" + i + "ns");
+				}
+				out.println(header);
+			} else {
+				out.println("[");
+			}
+			boolean first = true;
+			for (ProfilingDomain.OperationProfile profile : domain
+					.getProfiles()) {
+				StringBuilder histogram = new StringBuilder();
+				for (long count : profile.getHistogram()) {
+					if (histogram.length() > 0)
+						histogram.append(format == Format.CSV ? "," : ", ");
+					histogram.append(count);
+				}
+				if (format == Format.CSV) {
+					out.println(profile.getName() + "," + profile.getCalls()
+							+ "," + profile.getTotalNanos() + "," + histogram);
+				} else {
+					out.print((first ? "" : ",\n") + "  {\"operation\": "
+							+ json(profile.getName()) + ", \"calls\": "
+							+ profile.getCalls() + ", \"time_ns\": "
+							+ profile.getTotalNanos() + ", \"histogram\": ["
+							+ histogram + "]}");
+				}
+				first = false;
+			}
+			if (format == Format.JSON) {
+				out.println();
+				out.println("]");
+			}
+		} catch (IOException e) {
+			throw new Error(e);
+		}
+	}
+
+	protected String extension() {
+		return format == Format.CSV ? "csv" : "json";
+	}
+
+	/**
+	 * Quotes the given string as a CSV field.
+	 */
+	protected static String csv(String s) {
+		return '"' + s.replace("\"", "\"\"") + '"';
+	}
+
+	/**
+	 * Quotes the given string as a JSON string.
+	 */
+	protected static String json(String s) {
+		StringBuilder result = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				result.append('\\').append(c);
+			else if (c < ' ')
+				result.append(String.format("\\u%04x", (int) c));
+			else
+				result.append(c);
+		}
+		return result.append('"').toString();
+	}
+}
\ No newline at end of file
@@ -9,7 +9,7 @@ import bgu.cs.absint.constructor.Factoid;
  * @author romanm
  *
  */
-public class SootFactoid extends Factoid<Local> {
+public abstract class SootFactoid extends Factoid<Local> {
 	@Override
 	public final boolean equalVars(Local v1, Local v2) {
 		return v1.equivTo(v2);